@@ -0,0 +1,190 @@
+package com.ivanmagda.yatranslate.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pragmas of the primary connection, and the history reads while the history is written.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TranslateDbConcurrencyTest {
+
+    private static final String LOG_TAG = TranslateDbConcurrencyTest.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "translate_concurrency_test.db";
+
+    private static final int READER_COUNT = 2;
+    private static final int WRITE_TRANSACTIONS = 100;
+    private static final int ROWS_PER_TRANSACTION = 20;
+
+    private static final String SQL_FIRST_PAGE = "SELECT * FROM " + HistoryEntry.TABLE_NAME +
+            " ORDER BY " + HistoryEntry.COLUMN_CREATED_AT + " DESC, " + HistoryEntry._ID +
+            " DESC LIMIT 50";
+
+    private Context mContext;
+    private TranslateDbHelper mDbHelper;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (mDbHelper != null) {
+            mDbHelper.close();
+        }
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void pragmas_appliedToPrimaryConnection() {
+        mDbHelper = new TranslateDbHelper(mContext, DATABASE_NAME, new TranslateDbHelper.Pragmas(
+                TranslateDbHelper.Pragmas.SYNCHRONOUS_FULL, 1024, 0));
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        // A transaction holds the primary connection, so the queries run on it.
+        database.beginTransaction();
+        try {
+            assertEquals(TranslateDbHelper.Pragmas.SYNCHRONOUS_FULL,
+                    queryPragma(database, "synchronous"));
+            assertEquals(-1024, queryPragma(database, "cache_size"));
+        } finally {
+            database.endTransaction();
+        }
+
+        assertTrue(database.isWriteAheadLoggingEnabled());
+    }
+
+    @Test
+    public void readsDuringWrites_benchmark() throws InterruptedException {
+        TranslateDbHelper.Pragmas[] configurations = {
+                TranslateDbHelper.Pragmas.DEFAULT,
+                new TranslateDbHelper.Pragmas(TranslateDbHelper.Pragmas.SYNCHRONOUS_FULL, 0, 0)
+        };
+
+        for (TranslateDbHelper.Pragmas aPragmas : configurations) {
+            mContext.deleteDatabase(DATABASE_NAME);
+            mDbHelper = new TranslateDbHelper(mContext, DATABASE_NAME, aPragmas);
+            runReadersAndWriter("synchronous=" + aPragmas.synchronous
+                    + ", cache_size=" + aPragmas.cacheSizeKib + "KiB");
+            mDbHelper.close();
+            mDbHelper = null;
+        }
+    }
+
+    private void runReadersAndWriter(String configuration) throws InterruptedException {
+        final SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        final AtomicBoolean isWriting = new AtomicBoolean(true);
+        final CountDownLatch readersStarted = new CountDownLatch(READER_COUNT);
+        final List<Long> readNanos = Collections.synchronizedList(new ArrayList<Long>());
+
+        List<Thread> readers = new ArrayList<>(READER_COUNT);
+        for (int i = 0; i < READER_COUNT; i++) {
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    readersStarted.countDown();
+                    while (isWriting.get()) {
+                        long start = System.nanoTime();
+                        Cursor cursor = database.rawQuery(SQL_FIRST_PAGE, null);
+                        try {
+                            cursor.getCount();
+                        } finally {
+                            cursor.close();
+                        }
+                        readNanos.add(System.nanoTime() - start);
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        readersStarted.await();
+
+        long writeStart = System.nanoTime();
+        HistoryUpserter upserter = new HistoryUpserter(database);
+        try {
+            for (int i = 0; i < WRITE_TRANSACTIONS; i++) {
+                database.beginTransaction();
+                try {
+                    for (int j = 0; j < ROWS_PER_TRANSACTION; j++) {
+                        upserter.write(buildHistoryValues(i * ROWS_PER_TRANSACTION + j));
+                    }
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+            }
+        } finally {
+            upserter.close();
+        }
+        long writeMillis = (System.nanoTime() - writeStart) / 1000000;
+
+        isWriting.set(false);
+        for (Thread aReader : readers) {
+            aReader.join();
+        }
+
+        List<Long> sortedReadNanos = new ArrayList<>(readNanos);
+        Collections.sort(sortedReadNanos);
+        int readCount = sortedReadNanos.size();
+
+        Log.i(LOG_TAG, configuration + ": " + WRITE_TRANSACTIONS + " write transactions in "
+                + writeMillis + "ms, " + readCount + " concurrent reads, read p50 "
+                + percentileMicros(sortedReadNanos, 50) + "us, p99 "
+                + percentileMicros(sortedReadNanos, 99) + "us, max "
+                + percentileMicros(sortedReadNanos, 100) + "us");
+
+        // WAL readers don't wait for the writer to finish.
+        assertTrue(readCount > 0);
+    }
+
+    private static ContentValues buildHistoryValues(int index) {
+        ContentValues values = new ContentValues(5);
+        values.put(HistoryEntry.COLUMN_TEXT_TO_TRANSLATE, "text " + index);
+        values.put(HistoryEntry.COLUMN_TEXT_TRANSLATED, "текст " + index);
+        values.put(HistoryEntry.COLUMN_LANG_TRANSLATE_FROM, "en");
+        values.put(HistoryEntry.COLUMN_LANG_TRANSLATE_TO, "ru");
+        values.put(HistoryEntry.COLUMN_FAVORITE, 0);
+        return values;
+    }
+
+    private static long percentileMicros(List<Long> sortedNanos, int percentile) {
+        if (sortedNanos.isEmpty()) return -1;
+
+        int index = Math.min(sortedNanos.size() - 1, sortedNanos.size() * percentile / 100);
+        return sortedNanos.get(index) / 1000;
+    }
+
+    private static long queryPragma(SQLiteDatabase database, String name) {
+        Cursor cursor = database.rawQuery("PRAGMA " + name, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.ivanmagda.yatranslate.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry;
+import static com.ivanmagda.yatranslate.data.TranslateContract.LanguageEntry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Upgrades a database of the last released schema, version 2, to the current one.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TranslateDbMigrationTest {
+
+    private static final String DATABASE_NAME = "translate_migration_test.db";
+
+    private static final long BACKFILL_TIMEOUT_MILLIS = 10000;
+
+    /* Schema of the version 2. */
+    private static final String SQL_CREATE_V2_LANGUAGES_TABLE = "CREATE TABLE languages (" +
+            "_id INTEGER PRIMARY KEY,translate_from_key TEXT NOT NULL, " +
+            "translate_to_key TEXT NOT NULL, translate_from_name TEXT NOT NULL, " +
+            "translate_to_name TEXT NOT NULL  );";
+    private static final String SQL_CREATE_V2_HISTORY_TABLE = "CREATE TABLE history (" +
+            "_id INTEGER PRIMARY KEY,text_translate TEXT NOT NULL, " +
+            "text_translated TEXT NOT NULL, translate_from TEXT NOT NULL, " +
+            "translate_to TEXT NOT NULL, favorite INTEGER DEFAULT 0, " +
+            "created_at DATETIME DEFAULT CURRENT_TIMESTAMP  );";
+
+    private Context mContext;
+    private TranslateDbHelper mDbHelper;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        // The databases directory doesn't exist until the first database is opened.
+        mContext.getDatabasePath(DATABASE_NAME).getParentFile().mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        if (mDbHelper != null) {
+            mDbHelper.close();
+        }
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void upgradeFromVersion2() throws InterruptedException {
+        createVersion2Database();
+
+        mDbHelper = new TranslateDbHelper(mContext, DATABASE_NAME,
+                TranslateDbHelper.Pragmas.DEFAULT);
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        assertEquals(TranslateDbHelper.DATABASE_VERSION, database.getVersion());
+        assertEquals(TranslateDbHelper.DATABASE_VERSION,
+                DatabaseUtils.longForQuery(database, "PRAGMA user_version", null));
+
+        // Favorite duplicate wins over the newer one, then the newest one is kept.
+        assertEquals("1,4,5", queryIds(database, HistoryEntry.TABLE_NAME));
+        assertEquals("кошка", queryString(database,
+                "SELECT text_translated FROM history WHERE _id = 4"));
+        // The latest duplicated direction is kept.
+        assertEquals("2,3", queryIds(database, LanguageEntry.TABLE_NAME));
+
+        assertIndex(database, "languages_direction_idx");
+        assertIndex(database, "history_translation_idx");
+        assertIndex(database, "history_created_at_idx");
+        assertIndex(database, "translation_cache_accessed_at_idx");
+
+        // Indexes serve the lookups instead of the table scans.
+        assertTrue(queryString(database, "EXPLAIN QUERY PLAN SELECT _id FROM history WHERE " +
+                "text_translate = 'cat' AND translate_from = 'en' AND translate_to = 'ru'", 3)
+                .contains("history_translation_idx"));
+        assertTrue(queryString(database, "EXPLAIN QUERY PLAN SELECT _id FROM history " +
+                "ORDER BY created_at DESC, _id DESC LIMIT 50", 3)
+                .contains("history_created_at_idx"));
+
+        awaitBackfill(database);
+
+        assertEquals("1", queryFtsIds(database, "cat*"));
+        assertEquals("4,5", queryFtsIds(database, "hello*"));
+        assertEquals("4", queryFtsIds(database, "кошка"));
+
+        // New rows are indexed by the triggers.
+        database.execSQL("INSERT INTO history (text_translate, text_translated, translate_from, " +
+                "translate_to) VALUES ('hello dog', 'привет пёс', 'en', 'ru')");
+        assertEquals("4,5,6", queryFtsIds(database, "hello*"));
+    }
+
+    @Test
+    public void unreleasedVersion_isRecreated() {
+        SQLiteDatabase database = SQLiteDatabase.openOrCreateDatabase(
+                mContext.getDatabasePath(DATABASE_NAME), null);
+        database.execSQL(SQL_CREATE_V2_HISTORY_TABLE);
+        database.execSQL("INSERT INTO history (text_translate, text_translated, translate_from, " +
+                "translate_to) VALUES ('cat', 'кот', 'en', 'ru')");
+        database.setVersion(5);
+        database.close();
+
+        mDbHelper = new TranslateDbHelper(mContext, DATABASE_NAME,
+                TranslateDbHelper.Pragmas.DEFAULT);
+        database = mDbHelper.getWritableDatabase();
+
+        assertEquals(TranslateDbHelper.DATABASE_VERSION, database.getVersion());
+        assertEquals(0, DatabaseUtils.queryNumEntries(database, HistoryEntry.TABLE_NAME));
+        assertIndex(database, "history_translation_idx");
+    }
+
+    private void createVersion2Database() {
+        SQLiteDatabase database = SQLiteDatabase.openOrCreateDatabase(
+                mContext.getDatabasePath(DATABASE_NAME), null);
+        try {
+            database.execSQL(SQL_CREATE_V2_LANGUAGES_TABLE);
+            database.execSQL(SQL_CREATE_V2_HISTORY_TABLE);
+
+            database.execSQL("INSERT INTO languages VALUES (1, 'en', 'ru', 'English', 'Russian')");
+            database.execSQL("INSERT INTO languages VALUES (2, 'en', 'ru', 'English', 'Russian')");
+            database.execSQL("INSERT INTO languages VALUES (3, 'ru', 'en', 'Russian', 'English')");
+
+            // 1 and 2 are duplicates, the older one is favorite.
+            // 3 and 4 are duplicates, neither is favorite.
+            database.execSQL("INSERT INTO history VALUES (1, 'cat', 'кот', 'en', 'ru', 1, " +
+                    "'2017-04-01 10:00:00')");
+            database.execSQL("INSERT INTO history VALUES (2, 'cat', 'кот', 'en', 'ru', 0, " +
+                    "'2017-04-02 10:00:00')");
+            database.execSQL("INSERT INTO history VALUES (3, 'hello kitty', 'привет котёнок', " +
+                    "'en', 'ru', 0, '2017-04-03 10:00:00')");
+            database.execSQL("INSERT INTO history VALUES (4, 'hello kitty', 'кошка', " +
+                    "'en', 'ru', 0, '2017-04-04 10:00:00')");
+            database.execSQL("INSERT INTO history VALUES (5, 'hello', 'привет', " +
+                    "'en', 'ru', 0, '2017-04-05 10:00:00')");
+
+            database.setVersion(2);
+        } finally {
+            database.close();
+        }
+    }
+
+    /**
+     * Waits for the background full-text index backfill, started on open.
+     */
+    private static void awaitBackfill(SQLiteDatabase database) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + BACKFILL_TIMEOUT_MILLIS;
+        while (DatabaseUtils.queryNumEntries(database, HistoryFtsBackfill.TABLE_NAME) > 0) {
+            assertTrue("Backfill timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    private static void assertIndex(SQLiteDatabase database, String name) {
+        assertEquals("Missing index " + name, 1, DatabaseUtils.longForQuery(database,
+                "SELECT count(*) FROM sqlite_master WHERE type = 'index' AND name = ?",
+                new String[]{name}));
+    }
+
+    private static String queryIds(SQLiteDatabase database, String table) {
+        return queryString(database, "SELECT group_concat(_id) FROM (SELECT _id FROM " + table +
+                " ORDER BY _id)");
+    }
+
+    private static String queryFtsIds(SQLiteDatabase database, String matchQuery) {
+        Cursor cursor = database.rawQuery("SELECT group_concat(docid) FROM (SELECT docid FROM " +
+                HistoryEntry.FTS_TABLE_NAME + " WHERE " + HistoryEntry.FTS_TABLE_NAME +
+                " MATCH ? ORDER BY docid)", new String[]{matchQuery});
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String queryString(SQLiteDatabase database, String sql) {
+        return queryString(database, sql, 0);
+    }
+
+    /**
+     * @return Values of the column, joined by the rows.
+     */
+    private static String queryString(SQLiteDatabase database, String sql, int column) {
+        StringBuilder builder = new StringBuilder();
+        Cursor cursor = database.rawQuery(sql, null);
+        try {
+            while (cursor.moveToNext()) {
+                builder.append(cursor.getString(column)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        return builder.toString().trim();
+    }
+}
@@ -0,0 +1,128 @@
+package com.ivanmagda.yatranslate.utilities.database;
+
+import android.content.Context;
+import android.database.MatrixCursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.ivanmagda.yatranslate.data.HistoryRows;
+import com.ivanmagda.yatranslate.model.core.TranslateItem;
+import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lang names lookup of the history rows and the bind-time cost with a warm index.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TranslateLangNameIndexTest {
+
+    private static final String LOG_TAG = TranslateLangNameIndexTest.class.getSimpleName();
+
+    private static final int ROW_COUNT = 5000;
+    private static final int BIND_PASSES = 20;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        TranslateLangNameIndex.clear();
+    }
+
+    @After
+    public void tearDown() {
+        TranslateLangNameIndex.clear();
+    }
+
+    @Test
+    public void getLoaded_coldIndex_returnsKeysWithoutNames() {
+        TranslateLangNameIndex index = TranslateLangNameIndex.getLoaded(mContext);
+
+        TranslateLangItem langItem = index.buildLangItem("en", "ru");
+        assertEquals("en", langItem.getFromLang());
+        assertEquals("ru", langItem.getToLang());
+        assertNull(langItem.getFromLangName());
+        assertNull(langItem.getToLangName());
+    }
+
+    @Test
+    public void getLoaded_updatedIndex_resolvesNames() {
+        TranslateLangNameIndex.update(Arrays.asList(
+                new TranslateLangItem("en", "ru", "English", "Russian")));
+
+        assertTrue(TranslateLangNameIndex.isLoaded());
+        TranslateLangItem langItem = TranslateLangNameIndex.getLoaded(mContext)
+                .buildLangItem("ru", "en");
+        assertEquals("Russian", langItem.getFromLangName());
+        assertEquals("English", langItem.getToLangName());
+    }
+
+    @Test
+    public void bindTime_warmIndex() {
+        TranslateLangNameIndex.update(Arrays.asList(
+                new TranslateLangItem("en", "ru", "English", "Russian")));
+        HistoryRows rows = HistoryRows.from(buildHistoryCursor(ROW_COUNT));
+        assertEquals(ROW_COUNT, rows.size());
+
+        // Reads every value a row binds, as the adapter does.
+        int checksum = 0;
+        long start = System.nanoTime();
+        for (int pass = 0; pass < BIND_PASSES; pass++) {
+            for (int i = 0; i < ROW_COUNT; i++) {
+                checksum += rows.getTextToTranslate(i).length()
+                        + rows.getTranslatedText(i).length()
+                        + rows.getFormattedLangKeys(i).length()
+                        + (rows.isFavorite(i) ? 1 : 0);
+            }
+        }
+        long bindNanos = (System.nanoTime() - start) / (BIND_PASSES * ROW_COUNT);
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROW_COUNT; i++) {
+            TranslateItem item = rows.buildItem(mContext, i);
+            checksum += item.getTranslateLangItem().getFromLangName().length();
+        }
+        long buildItemNanos = (System.nanoTime() - start) / ROW_COUNT;
+
+        Log.i(LOG_TAG, "Bind: " + bindNanos + " ns/row, build item: " + buildItemNanos
+                + " ns/row, checksum: " + checksum);
+        assertTrue(checksum > 0);
+    }
+
+    private static MatrixCursor buildHistoryCursor(int count) {
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                HistoryEntry._ID,
+                HistoryEntry.COLUMN_TEXT_TO_TRANSLATE,
+                HistoryEntry.COLUMN_TEXT_TRANSLATED,
+                HistoryEntry.COLUMN_LANG_TRANSLATE_FROM,
+                HistoryEntry.COLUMN_LANG_TRANSLATE_TO,
+                HistoryEntry.COLUMN_FAVORITE
+        }, count);
+
+        for (int i = 0; i < count; i++) {
+            boolean isEnglish = i % 2 == 0;
+            cursor.addRow(new Object[]{
+                    (long) (i + 1),
+                    "text " + i,
+                    "translation " + i,
+                    isEnglish ? "en" : "ru",
+                    isEnglish ? "ru" : "en",
+                    i % 3 == 0 ? 1 : 0
+            });
+        }
+
+        return cursor;
+    }
+}
@@ -0,0 +1,203 @@
+package com.ivanmagda.yatranslate.utilities.json;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.ivanmagda.yatranslate.model.core.TranslateItem;
+import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Pull-parsing of the recorded translate and getLangs responses, malformed and truncated ones.
+ * android.util.JsonReader is a framework class, so the test runs on a device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TranslateJsonUtilsTest {
+
+    private static final String LOG_TAG = TranslateJsonUtilsTest.class.getSimpleName();
+
+    private static final TranslateLangItem EN_RU =
+            new TranslateLangItem("en", "ru", "English", "Russian");
+
+    /* Recorded responses of the Yandex Translate API. */
+    private static final String TRANSLATE_RESPONSE =
+            "{\"code\":200,\"lang\":\"en-ru\",\"text\":[\"Привет, мир\"]}";
+    private static final String BATCH_TRANSLATE_RESPONSE =
+            "{\"code\":200,\"lang\":\"en-ru\",\"text\":[\"кот\",\"собака\",\"\\\"дом\\\"\"]}";
+    private static final String TRANSLATE_ERROR_RESPONSE =
+            "{\"code\":413,\"message\":\"Text size exceeds the maximum\"}";
+    private static final String LANGS_RESPONSE = "{\"dirs\":[\"az-ru\",\"en-ru\",\"ru-en\","
+            + "\"ru-uk\"],\"langs\":{\"az\":\"Азербайджанский\",\"en\":\"Английский\","
+            + "\"ru\":\"Русский\",\"uk\":\"Украинский\"}}";
+
+    private static final int BENCHMARK_LANGS_COUNT = 90;
+    private static final int BENCHMARK_PASSES = 50;
+
+    @Test
+    public void buildItems_recordedResponse() throws IOException {
+        List<TranslateItem> items = TranslateItemJsonUtils.buildItems("Hello, world", EN_RU,
+                new StringReader(TRANSLATE_RESPONSE));
+
+        assertEquals(1, items.size());
+        assertEquals("Hello, world", items.get(0).getTextToTranslate());
+        assertEquals("Привет, мир", items.get(0).getTranslatedText());
+        assertEquals(EN_RU, items.get(0).getTranslateLangItem());
+    }
+
+    @Test
+    public void buildBatchItems_recordedResponse_matchesSourceTexts() throws IOException {
+        List<TranslateItem> items = TranslateItemJsonUtils.buildBatchItems(
+                Arrays.asList("cat", "dog", "\"house\""), EN_RU,
+                new StringReader(BATCH_TRANSLATE_RESPONSE));
+
+        assertEquals(3, items.size());
+        assertEquals("cat", items.get(0).getTextToTranslate());
+        assertEquals("кот", items.get(0).getTranslatedText());
+        assertEquals("\"house\"", items.get(2).getTextToTranslate());
+        assertEquals("\"дом\"", items.get(2).getTranslatedText());
+    }
+
+    @Test
+    public void buildBatchItems_countMismatch_returnsNull() throws IOException {
+        assertNull(TranslateItemJsonUtils.buildBatchItems(Arrays.asList("cat", "dog"), EN_RU,
+                new StringReader(TRANSLATE_RESPONSE)));
+    }
+
+    @Test
+    public void buildItems_errorCode_returnsNull() throws IOException {
+        assertNull(TranslateItemJsonUtils.buildItems("Hello", EN_RU,
+                new StringReader(TRANSLATE_ERROR_RESPONSE)));
+    }
+
+    @Test
+    public void buildItems_unexpectedStructure_returnsNull() throws IOException {
+        assertNull(TranslateItemJsonUtils.buildItems("Hello", EN_RU,
+                new StringReader("[\"Привет\"]")));
+        assertNull(TranslateItemJsonUtils.buildItems("Hello", EN_RU,
+                new StringReader("{\"code\":\"OK\",\"text\":[\"Привет\"]}")));
+    }
+
+    @Test
+    public void buildItems_malformedResponse_throws() {
+        assertParseFails("{\"code\":200,\"text\":[\"Привет\"]]");
+        assertParseFails("<html><body>Bad Gateway</body></html>");
+    }
+
+    @Test
+    public void buildItems_truncatedResponse_throws() {
+        for (int length = 0; length < TRANSLATE_RESPONSE.length(); length++) {
+            assertParseFails(TRANSLATE_RESPONSE.substring(0, length));
+        }
+    }
+
+    @Test
+    public void buildFromResponse_recordedResponse() throws IOException {
+        List<TranslateLangItem> items = TranslateLangJsonUtils.buildFromResponse(
+                new StringReader(LANGS_RESPONSE));
+
+        assertEquals(4, items.size());
+        TranslateLangItem first = items.get(0);
+        assertEquals("az", first.getFromLang());
+        assertEquals("ru", first.getToLang());
+        assertEquals("Азербайджанский", first.getFromLangName());
+        assertEquals("Русский", first.getToLangName());
+        assertEquals("ru-uk", items.get(3).getLangString());
+    }
+
+    @Test
+    public void buildFromResponse_langsBeforeDirs() throws IOException {
+        List<TranslateLangItem> items = TranslateLangJsonUtils.buildFromResponse(
+                new StringReader("{\"langs\":{\"en\":\"English\",\"ru\":\"Russian\"},"
+                        + "\"dirs\":[\"en-ru\"]}"));
+
+        assertEquals(1, items.size());
+        assertEquals("English", items.get(0).getFromLangName());
+    }
+
+    @Test
+    public void buildFromResponse_skipsMalformedAndUnnamedDirections() throws IOException {
+        List<TranslateLangItem> items = TranslateLangJsonUtils.buildFromResponse(
+                new StringReader("{\"dirs\":[\"en\",\"-ru\",\"en-\",\"en-xx\",\"en-ru\"],"
+                        + "\"langs\":{\"en\":\"English\",\"ru\":\"Russian\"}}"));
+
+        assertEquals(1, items.size());
+        assertEquals("en-ru", items.get(0).getLangString());
+    }
+
+    @Test
+    public void buildFromResponse_missingKeys_returnsNull() throws IOException {
+        assertNull(TranslateLangJsonUtils.buildFromResponse(
+                new StringReader("{\"dirs\":[\"en-ru\"]}")));
+        assertNull(TranslateLangJsonUtils.buildFromResponse(new StringReader("{}")));
+    }
+
+    @Test
+    public void buildFromResponse_truncatedResponse_throws() {
+        for (int length = 0; length < LANGS_RESPONSE.length(); length++) {
+            try {
+                TranslateLangJsonUtils.buildFromResponse(
+                        new StringReader(LANGS_RESPONSE.substring(0, length)));
+                fail("Parsed a response truncated to " + length + " chars");
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void buildFromResponse_benchmark() throws IOException {
+        String response = buildLangsResponse(BENCHMARK_LANGS_COUNT);
+
+        // Warm up, so the first pass doesn't count the class loading.
+        TranslateLangJsonUtils.buildFromResponse(new StringReader(response));
+
+        long start = System.nanoTime();
+        int itemsCount = 0;
+        for (int i = 0; i < BENCHMARK_PASSES; i++) {
+            itemsCount = TranslateLangJsonUtils.buildFromResponse(new StringReader(response))
+                    .size();
+        }
+        long passMicros = (System.nanoTime() - start) / 1000 / BENCHMARK_PASSES;
+
+        Log.i(LOG_TAG, "Parsed " + response.length() + " chars, " + itemsCount
+                + " directions in " + passMicros + "us per pass");
+        assertEquals(BENCHMARK_LANGS_COUNT * (BENCHMARK_LANGS_COUNT - 1), itemsCount);
+    }
+
+    private static void assertParseFails(String response) {
+        try {
+            TranslateItemJsonUtils.buildItems("Hello", EN_RU, new StringReader(response));
+            fail("Parsed a malformed response: " + response);
+        } catch (IOException expected) {
+        }
+    }
+
+    /**
+     * @return getLangs response, that has all of the directions between the languages.
+     */
+    private static String buildLangsResponse(int langsCount) {
+        StringBuilder dirs = new StringBuilder("{\"dirs\":[");
+        StringBuilder langs = new StringBuilder("\"langs\":{");
+        for (int from = 0; from < langsCount; from++) {
+            for (int to = 0; to < langsCount; to++) {
+                if (from == to) continue;
+                if (dirs.length() > 9) dirs.append(',');
+                dirs.append("\"l").append(from).append("-l").append(to).append('"');
+            }
+            if (from > 0) langs.append(',');
+            langs.append("\"l").append(from).append("\":\"Язык ").append(from).append('"');
+        }
+
+        return dirs.append("],").append(langs).append("}}").toString();
+    }
+}
@@ -22,6 +22,7 @@
 
 package com.ivanmagda.yatranslate.activity;
 
+import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.os.Bundle;
@@ -31,6 +32,7 @@ import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.DividerItemDecoration;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.util.Log;
 import android.view.View;
 import android.widget.ProgressBar;
 
@@ -41,10 +43,12 @@ import com.ivanmagda.yatranslate.data.TranslateLangLoader;
 import com.ivanmagda.yatranslate.model.SelectLangListItem;
 import com.ivanmagda.yatranslate.model.SelectLangListItemComparator;
 import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
+import com.ivanmagda.yatranslate.sync.YaTranslateSyncUtils;
 import com.ivanmagda.yatranslate.utilities.ArrayUtils;
 import com.ivanmagda.yatranslate.utilities.MapUtils;
 import com.ivanmagda.yatranslate.utilities.MapUtils.OnFilterCondition;
 import com.ivanmagda.yatranslate.utilities.TranslateLangUtils;
+import com.ivanmagda.yatranslate.utilities.database.TranslateDbExecutor;
 import com.ivanmagda.yatranslate.utilities.database.TranslateLangDbUtils;
 
 import java.util.ArrayList;
@@ -148,22 +152,43 @@ public class SelectLanguageActivity extends AppCompatActivity implements ListIte
         mSwipeRefreshLayout.setOnRefreshListener(new SwipeRefreshLayout.OnRefreshListener() {
             @Override
             public void onRefresh() {
-                getSupportLoaderManager().restartLoader(TRANSLATE_LANGS_API_LOADER_ID, null, mLangApiLoader);
+                // Nothing is shown yet, so an unmodified response should be delivered too.
+                Bundle args = ArrayUtils.isEmpty(mSupportedLangs)
+                        ? null : YandexLangLoader.buildRefreshArgs();
+                getSupportLoaderManager().restartLoader(TRANSLATE_LANGS_API_LOADER_ID, args,
+                        mLangApiLoader);
             }
         });
 
         mLangApiLoader = new YandexLangLoader(this, this);
+
+        YaTranslateSyncUtils.installResponseCache(this);
         mLangDbLoader = new TranslateLangLoader(this, this);
     }
 
     @Override
-    public void onLangsLoadFinished(List<TranslateLangItem> translateLangItems) {
-        mSupportedLangs = translateLangItems;
-        TranslateLangDbUtils.persistLangs(this, mSupportedLangs);
-
+    public void onLangsLoadFinished(final List<TranslateLangItem> translateLangItems) {
         mProgressBar.setVisibility(View.GONE);
         mSwipeRefreshLayout.setRefreshing(false);
 
+        if (translateLangItems == null) {
+            Log.w(LOG_TAG, "Failed to load supported languages");
+            return;
+        }
+
+        // Refresh returns an empty list, when the languages are not modified.
+        if (translateLangItems.isEmpty()) return;
+
+        mSupportedLangs = translateLangItems;
+
+        final Context context = getApplicationContext();
+        TranslateDbExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                TranslateLangDbUtils.persistLangs(context, translateLangItems);
+            }
+        });
+
         onFetchSuccess();
     }
 
@@ -6,6 +6,7 @@ import android.support.v4.app.FragmentManager;
 import android.support.v4.app.FragmentPagerAdapter;
 
 import com.ivanmagda.yatranslate.R;
+import com.ivanmagda.yatranslate.data.ContentFilter;
 import com.ivanmagda.yatranslate.fragment.BookmarkListFragment;
 
 public final class BookmarkPagerAdapter extends FragmentPagerAdapter {
@@ -31,9 +32,9 @@ public final class BookmarkPagerAdapter extends FragmentPagerAdapter {
     public Fragment getItem(int position) {
         switch (position) {
             case HISTORY_PAGE:
-                return BookmarkListFragment.newInstance(BookmarkListFragment.ContentFilter.ALL);
+                return BookmarkListFragment.newInstance(ContentFilter.ALL);
             case FAVORITES_PAGE:
-                return BookmarkListFragment.newInstance(BookmarkListFragment.ContentFilter.FAVORITE);
+                return BookmarkListFragment.newInstance(ContentFilter.FAVORITE);
             default:
                 return null;
         }
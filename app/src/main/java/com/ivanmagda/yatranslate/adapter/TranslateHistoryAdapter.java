@@ -23,8 +23,12 @@ package com.ivanmagda.yatranslate.adapter;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.graphics.ColorFilter;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -33,8 +37,11 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import com.ivanmagda.yatranslate.R;
+import com.ivanmagda.yatranslate.data.HistoryCursor;
+import com.ivanmagda.yatranslate.data.HistoryPager;
+import com.ivanmagda.yatranslate.data.HistoryRowKeys;
+import com.ivanmagda.yatranslate.data.HistoryRows;
 import com.ivanmagda.yatranslate.model.core.TranslateItem;
-import com.ivanmagda.yatranslate.utilities.database.TranslateItemDbUtils;
 import com.ivanmagda.yatranslate.viewmodel.TranslateItemViewModel;
 
 import butterknife.BindView;
@@ -61,14 +68,32 @@ public class TranslateHistoryAdapter
     }
 
     private Cursor mCursor;
+
+    /**
+     * Snapshot of the cursor rows, the rows are bound from it instead of the cursor.
+     */
+    private HistoryRows mRows = HistoryRows.EMPTY;
+
+    /**
+     * Source of the browsed history, the cursor is used for the search results only.
+     */
+    private HistoryPager mPager;
     private TranslateHistoryAdapterOnClickListener mClickListener;
 
+    /*
+     * Created once and shared by the rows, ImageView#setColorFilter(int) allocates a filter
+     * on every call. Setting the same instance again doesn't invalidate the button.
+     */
+    private ColorFilter mFavoriteColorFilter;
+    private ColorFilter mNotFavoriteColorFilter;
+
     /**
      * Creates a TranslateHistoryAdapter.
      */
     public TranslateHistoryAdapter() {
         this.mCursor = null;
         this.mClickListener = null;
+        setHasStableIds(true);
     }
 
     /**
@@ -81,7 +106,9 @@ public class TranslateHistoryAdapter
     public TranslateHistoryAdapter(@Nullable final Cursor cursor,
                                    @Nullable final TranslateHistoryAdapterOnClickListener clickListener) {
         this.mCursor = cursor;
+        this.mRows = rowsOf(cursor);
         this.mClickListener = clickListener;
+        setHasStableIds(true);
     }
 
     public void setListItemClickListener(TranslateHistoryAdapterOnClickListener onClickListener) {
@@ -90,7 +117,17 @@ public class TranslateHistoryAdapter
 
     @Override
     public TranslateHistoryAdapterViewHolder onCreateViewHolder(ViewGroup viewGroup, int viewType) {
-        View listItem = LayoutInflater.from(viewGroup.getContext())
+        Context context = viewGroup.getContext();
+        if (mFavoriteColorFilter == null) {
+            mFavoriteColorFilter = new PorterDuffColorFilter(
+                    TranslateItemViewModel.getFavoriteColor(context, true),
+                    PorterDuff.Mode.SRC_ATOP);
+            mNotFavoriteColorFilter = new PorterDuffColorFilter(
+                    TranslateItemViewModel.getFavoriteColor(context, false),
+                    PorterDuff.Mode.SRC_ATOP);
+        }
+
+        View listItem = LayoutInflater.from(context)
                 .inflate(R.layout.fragment_bookmark_item, viewGroup, false);
         listItem.setFocusable(true);
 
@@ -104,19 +141,92 @@ public class TranslateHistoryAdapter
 
     @Override
     public int getItemCount() {
-        return (mCursor == null ? 0 : mCursor.getCount());
+        if (mPager != null) return mPager.getItemCount();
+        return mRows.size();
+    }
+
+    /**
+     * History row id is the stable id, so the changed rows are rebound in place.
+     */
+    @Override
+    public long getItemId(int position) {
+        if (mPager != null) return mPager.getItemId(position);
+        return mRows.getId(position);
     }
 
+    /**
+     * Swaps the cursor and dispatches only the changed rows, when it's delivered with a diff
+     * against the current one.
+     */
     public void swapCursor(Cursor cursor) {
         if (mCursor != null) {
             mCursor.close();
         }
 
+        HistoryRowKeys oldRowKeys = mPager == null ? mRows.getRowKeys() : null;
+        DiffUtil.DiffResult diffResult = null;
+
         mCursor = cursor;
+        mRows = rowsOf(cursor);
+        if (cursor != null) {
+            mPager = null;
+        }
+
+        if (cursor instanceof HistoryCursor) {
+            diffResult = ((HistoryCursor) cursor).getDiffResultFrom(oldRowKeys);
+        }
+
+        if (diffResult != null) {
+            diffResult.dispatchUpdatesTo(this);
+        } else {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Switches the adapter to the paged history, closes the current cursor if any.
+     * Changes of the pager are forwarded with the notify methods by the owner.
+     */
+    public void setPager(@Nullable HistoryPager pager) {
+        if (mCursor != null) {
+            mCursor.close();
+            mCursor = null;
+        }
+
+        mRows = HistoryRows.EMPTY;
+        mPager = pager;
 
         notifyDataSetChanged();
     }
 
+    public boolean isPaged() {
+        return mPager != null;
+    }
+
+    /**
+     * Loader delivers the rows prepared off the main thread, other cursors are read here.
+     */
+    @NonNull
+    private static HistoryRows rowsOf(@Nullable final Cursor cursor) {
+        if (cursor == null) return HistoryRows.EMPTY;
+        if (cursor instanceof HistoryCursor) return ((HistoryCursor) cursor).getRows();
+
+        return HistoryRows.from(cursor);
+    }
+
+    /**
+     * @return Rows that contain the item at the position, null if its page isn't loaded yet.
+     */
+    @Nullable
+    private HistoryRows getRowsAt(final int position) {
+        if (mPager != null) return mPager.getRows(position);
+        return position < mRows.size() ? mRows : null;
+    }
+
+    private int getRowIndex(final int position) {
+        return mPager != null ? HistoryPager.getRowIndex(position) : position;
+    }
+
     class TranslateHistoryAdapterViewHolder extends RecyclerView.ViewHolder
             implements View.OnClickListener {
         @BindView(R.id.bt_toggle_favorite) ImageButton mToggleFavoriteButton;
@@ -140,36 +250,48 @@ public class TranslateHistoryAdapter
             }
 
             int position = getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) return;
 
-            if (mCursor.moveToPosition(position)) {
-                TranslateItem translateItem = TranslateItemDbUtils
-                        .buildFromCursor(view.getContext(), mCursor);
+            HistoryRows rows = getRowsAt(position);
+            if (rows == null) return;
 
-                assert translateItem != null;
+            TranslateItem translateItem = rows.buildItem(view.getContext(), getRowIndex(position));
 
-                if (view.getId() == R.id.bt_toggle_favorite) {
-                    mClickListener.onToggleFavoriteClick(translateItem);
-                } else {
-                    mClickListener.onRowClick(position, translateItem);
-                }
+            if (view.getId() == R.id.bt_toggle_favorite) {
+                mClickListener.onToggleFavoriteClick(translateItem);
+            } else {
+                mClickListener.onRowClick(position, translateItem);
             }
         }
 
+        /**
+         * Reads the prepared values of the row, nothing is allocated.
+         */
         void bindAt(final int position) {
-            mCursor.moveToPosition(position);
+            HistoryRows rows = getRowsAt(position);
 
-            final Context context = itemView.getContext();
-            TranslateItem translateItem = TranslateItemDbUtils
-                    .buildFromCursor(itemView.getContext(), mCursor);
+            if (rows == null) {
+                bindPlaceholder();
+                return;
+            }
 
-            assert translateItem != null;
+            int index = getRowIndex(position);
 
-            TranslateItemViewModel viewModel = new TranslateItemViewModel(translateItem, context);
+            mToggleFavoriteButton.setColorFilter(
+                    rows.isFavorite(index) ? mFavoriteColorFilter : mNotFavoriteColorFilter);
+            mTextToTranslateTextView.setText(rows.getTextToTranslate(index));
+            mTranslatedTextView.setText(rows.getTranslatedText(index));
+            mTranslateLangsTextView.setText(rows.getFormattedLangKeys(index));
+        }
 
-            mToggleFavoriteButton.setColorFilter(viewModel.getFavoriteColor());
-            mTextToTranslateTextView.setText(translateItem.getTextToTranslate());
-            mTranslatedTextView.setText(translateItem.getTranslatedText());
-            mTranslateLangsTextView.setText(viewModel.getFormattedLangKeys());
+        /**
+         * Page of the item is loading, it's bound again once the page is delivered.
+         */
+        private void bindPlaceholder() {
+            mToggleFavoriteButton.clearColorFilter();
+            mTextToTranslateTextView.setText(null);
+            mTranslatedTextView.setText(null);
+            mTranslateLangsTextView.setText(null);
         }
     }
 }
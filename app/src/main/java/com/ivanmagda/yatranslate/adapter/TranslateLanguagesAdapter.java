@@ -22,8 +22,12 @@
 
 package com.ivanmagda.yatranslate.adapter;
 
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
@@ -61,6 +65,12 @@ public final class TranslateLanguagesAdapter
     private List<SelectLangListItem> mLangItems;
     private String mSelectedLangKey;
 
+    /**
+     * Diffs are calculated off the main thread, only the result of the latest update is applied.
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private int mUpdateGeneration;
+
     /**
      * Constructor for TranslateLanguagesAdapter that accepts a list of items to display
      * and the specification for the ListItemClickListener.
@@ -73,16 +83,24 @@ public final class TranslateLanguagesAdapter
         } else {
             mLangItems = items;
         }
+        setHasStableIds(true);
     }
 
     public TranslateLanguagesAdapter(@NonNull final ListItemClickListener listener) {
         mOnClickListener = listener;
         mLangItems = new ArrayList<>(30);
+        setHasStableIds(true);
     }
 
     public void setSelectedLangKey(String selectedLangKey) {
+        int oldPosition = indexOfLangKey(mSelectedLangKey);
         this.mSelectedLangKey = selectedLangKey;
-        notifyDataSetChanged();
+        int newPosition = indexOfLangKey(selectedLangKey);
+
+        if (oldPosition != RecyclerView.NO_POSITION) notifyItemChanged(oldPosition);
+        if (newPosition != RecyclerView.NO_POSITION && newPosition != oldPosition) {
+            notifyItemChanged(newPosition);
+        }
     }
 
     public List<SelectLangListItem> getLangItems() {
@@ -108,14 +126,89 @@ public final class TranslateLanguagesAdapter
         return mLangItems.size();
     }
 
+    /**
+     * Lang keys are short language codes, their hashes don't collide.
+     */
+    @Override
+    public long getItemId(int position) {
+        return mLangItems.get(position).getLangKey().hashCode();
+    }
+
+    /**
+     * Replaces the items, only the inserted, removed and renamed rows are updated.
+     */
     public void updateWithNewData(List<SelectLangListItem> newItems) {
-        mLangItems.clear();
+        final List<SelectLangListItem> oldItems = mLangItems;
+        final List<SelectLangListItem> items = ArrayUtils.isEmpty(newItems)
+                ? new ArrayList<SelectLangListItem>(30)
+                : new ArrayList<>(newItems);
+        final int generation = ++mUpdateGeneration;
 
-        if (!ArrayUtils.isEmpty(newItems)) {
-            mLangItems = newItems;
+        if (oldItems.isEmpty() || items.isEmpty()) {
+            mLangItems = items;
+            notifyDataSetChanged();
+            return;
         }
 
-        notifyDataSetChanged();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(
+                        new LangDiffCallback(oldItems, items));
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mUpdateGeneration) return;
+
+                        mLangItems = items;
+                        diffResult.dispatchUpdatesTo(TranslateLanguagesAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    private int indexOfLangKey(String langKey) {
+        if (TextUtils.isEmpty(langKey)) return RecyclerView.NO_POSITION;
+
+        for (int i = 0; i < mLangItems.size(); i++) {
+            if (langKey.equals(mLangItems.get(i).getLangKey())) return i;
+        }
+
+        return RecyclerView.NO_POSITION;
+    }
+
+    private static final class LangDiffCallback extends DiffUtil.Callback {
+        private final List<SelectLangListItem> mOldItems;
+        private final List<SelectLangListItem> mNewItems;
+
+        LangDiffCallback(List<SelectLangListItem> oldItems, List<SelectLangListItem> newItems) {
+            this.mOldItems = oldItems;
+            this.mNewItems = newItems;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldItems.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewItems.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldItems.get(oldItemPosition).getLangKey()
+                    .equals(mNewItems.get(newItemPosition).getLangKey());
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return TextUtils.equals(mOldItems.get(oldItemPosition).getLangName(),
+                    mNewItems.get(newItemPosition).getLangName());
+        }
     }
 
     class LangViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.yatranslate.api;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.StringRes;
+
+import com.ivanmagda.network.core.Result;
+import com.ivanmagda.yatranslate.R;
+
+/**
+ * Maps failed Yandex Translate API results to the messages shown to the user.
+ */
+public final class YandexApiErrors {
+
+    /* Status codes of the API errors. */
+    private static final int ERROR_KEY_INVALID = 401;
+    private static final int ERROR_KEY_BLOCKED = 402;
+    private static final int ERROR_DAILY_LIMIT_EXCEEDED = 404;
+    private static final int ERROR_TEXT_TOO_LONG = 413;
+    private static final int ERROR_CANNOT_TRANSLATE = 422;
+    private static final int ERROR_DIRECTION_NOT_SUPPORTED = 501;
+
+    private YandexApiErrors() {
+    }
+
+    /**
+     * @return Message describing why the translation has failed.
+     */
+    @StringRes
+    public static int getTranslateErrorMessage(@NonNull final Result<?> result) {
+        switch (result.getStatus()) {
+            case TIMEOUT:
+                return R.string.msg_translate_timeout;
+            case NETWORK_ERROR:
+                return R.string.msg_translate_network_error;
+            case CIRCUIT_OPEN:
+                return R.string.msg_translate_service_unavailable;
+            case PARSE_ERROR:
+                return R.string.msg_translate_unexpected_response;
+            case HTTP_ERROR:
+                return getHttpErrorMessage(result.getHttpStatusCode());
+            default:
+                return R.string.msg_failed_translate;
+        }
+    }
+
+    @StringRes
+    private static int getHttpErrorMessage(int statusCode) {
+        switch (statusCode) {
+            case ERROR_KEY_INVALID:
+            case ERROR_KEY_BLOCKED:
+                return R.string.msg_translate_invalid_api_key;
+            case ERROR_DAILY_LIMIT_EXCEEDED:
+                return R.string.msg_translate_limit_exceeded;
+            case ERROR_TEXT_TOO_LONG:
+                return R.string.msg_translate_text_too_long;
+            case ERROR_CANNOT_TRANSLATE:
+                return R.string.msg_failed_translate;
+            case ERROR_DIRECTION_NOT_SUPPORTED:
+                return R.string.msg_translate_direction_not_supported;
+            default:
+                return statusCode >= 500
+                        ? R.string.msg_translate_service_unavailable
+                        : R.string.msg_failed_translate;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.yatranslate.api;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import com.ivanmagda.network.core.Resource;
+import com.ivanmagda.network.core.Result;
+import com.ivanmagda.network.core.WebserviceClient;
+import com.ivanmagda.yatranslate.model.core.TranslateItem;
+import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
+import com.ivanmagda.yatranslate.utilities.database.TranslateItemDbUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Translates many texts at once, e.g. a pasted list of words, with the batch translation
+ * requests and stores the results into the history.
+ * <p>
+ * No screen takes a list of texts yet, so nothing in the app calls it for now. The batch
+ * requests are covered by the unit tests against a local server.
+ */
+public final class YandexBatchTranslator {
+
+    private static final String LOG_TAG = YandexBatchTranslator.class.getSimpleName();
+
+    private YandexBatchTranslator() {
+    }
+
+    /**
+     * Performs the batch requests one after another, so they reuse the same connection.
+     * The requests are executed at the low priority, behind the ones the user is waiting for.
+     * All of the received translations are added to the history with a single insert.
+     *
+     * @param texts         Texts to translate.
+     * @param translateLang Translate direction for all of the texts.
+     * @return Translated items in the order of the texts. Texts of the failed requests are
+     * missing from the result.
+     */
+    @WorkerThread
+    public static List<TranslateItem> translate(@NonNull final Context context,
+                                                @NonNull final List<String> texts,
+                                                @NonNull final TranslateLangItem translateLang) {
+        List<TranslateItem> translatedItems = new ArrayList<>(texts.size());
+
+        List<Resource<List<TranslateItem>>> resources = YandexTranslateApi
+                .getBatchTranslation(texts, translateLang);
+        WebserviceClient client = WebserviceClient.getDefault();
+        for (Resource<List<TranslateItem>> aResource : resources) {
+            Result<List<TranslateItem>> result = client.execute(aResource,
+                    WebserviceClient.Priority.LOW);
+            List<TranslateItem> items = result.getValue();
+            if (items == null) {
+                Log.w(LOG_TAG, "Failed to translate batch: " + result);
+                continue;
+            }
+
+            translatedItems.addAll(items);
+        }
+
+        int insertedCount = TranslateItemDbUtils.bulkAddToHistory(context, translatedItems);
+        Log.d(LOG_TAG, "Translated " + translatedItems.size() + " of " + texts.size()
+                + " texts with " + resources.size() + " requests, added to history: "
+                + insertedCount);
+
+        return translatedItems;
+    }
+}
@@ -43,6 +43,11 @@ public final class YandexLangLoader
         void onLangsLoaderReset();
     }
 
+    /**
+     * Loader argument, whether to return an empty list when the languages haven't changed.
+     */
+    private static final String ARG_SKIP_IF_NOT_MODIFIED = "skip_if_not_modified";
+
     private final Context mContext;
     private final CallbacksListener mCallbacksListener;
 
@@ -52,11 +57,23 @@ public final class YandexLangLoader
         this.mCallbacksListener = callbacksListener;
     }
 
+    /**
+     * Builds loader arguments for refreshing the already loaded languages.
+     * The loader delivers an empty list, when the languages are not modified.
+     */
+    public static Bundle buildRefreshArgs() {
+        Bundle args = new Bundle(1);
+        args.putBoolean(ARG_SKIP_IF_NOT_MODIFIED, true);
+        return args;
+    }
+
     @Override
     public Loader<List<TranslateLangItem>> onCreateLoader(int id, Bundle args) {
+        boolean skipIfNotModified = args != null && args.getBoolean(ARG_SKIP_IF_NOT_MODIFIED);
+
         return new GenericAsyncTaskLoader<>(
                 mContext,
-                YandexTranslateApi.getSupportedLanguages(),
+                YandexTranslateApi.getSupportedLanguages(skipIfNotModified),
                 new GenericAsyncTaskLoader.OnStartLoadingCondition() {
                     @Override
                     public boolean isMeetConditions(Resource<?> resource) {
@@ -24,18 +24,25 @@ package com.ivanmagda.yatranslate.api;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 
 import com.ivanmagda.network.core.Resource;
-import com.ivanmagda.network.core.Resource.Parse;
+import com.ivanmagda.network.core.Resource.NotModified;
+import com.ivanmagda.network.core.Resource.StreamParse;
+import com.ivanmagda.network.helper.FormBody;
 import com.ivanmagda.network.helper.MethodParameters;
+import com.ivanmagda.network.helper.ParameterList;
 import com.ivanmagda.network.helper.UrlBuilder;
-import com.ivanmagda.network.utils.Utils;
 import com.ivanmagda.yatranslate.model.core.TranslateItem;
 import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
 import com.ivanmagda.yatranslate.utilities.json.TranslateItemJsonUtils;
 import com.ivanmagda.yatranslate.utilities.json.TranslateLangJsonUtils;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public final class YandexTranslateApi {
@@ -46,6 +53,10 @@ public final class YandexTranslateApi {
     private static final String API_HOST = "translate.yandex.net";
     private static final String API_PATH = "api/v1.5/tr.json";
 
+    /* Replaced by the tests with a local server. */
+    private static String sApiScheme = API_SCHEME;
+    private static String sApiHost = API_HOST;
+
     private static final String API_KEY_PARAM = "key";
     private static final String UI_LANGUAGE_KEY_PARAM = "ui";
     private static final String TEXT_KEY_PARAM = "text";
@@ -54,37 +65,154 @@ public final class YandexTranslateApi {
     private static final String SUPPORTED_LANGUAGES_PATH = "getLangs";
     private static final String TRANSLATE_PATH = "translate";
 
+    private static final String HTTP_METHOD_POST = "POST";
+
+    /**
+     * Limit of the texts length in a single translate request, accepted by the API.
+     */
+    @VisibleForTesting
+    static final int MAX_TEXT_LENGTH = 10000;
+
+    /**
+     * Sends the requests to another server, the API one is restored with the null arguments.
+     *
+     * @param authority Host and optionally the port.
+     */
+    @VisibleForTesting
+    static void setApiEndpoint(@Nullable final String scheme, @Nullable final String authority) {
+        sApiScheme = scheme != null ? scheme : API_SCHEME;
+        sApiHost = authority != null ? authority : API_HOST;
+    }
+
     /**
      * @return The supported languages Resource.
      */
     public static Resource<List<TranslateLangItem>> getSupportedLanguages() {
+        return getSupportedLanguages(false);
+    }
+
+    /**
+     * The supported languages rarely change, so the response is cached and revalidated.
+     *
+     * @param skipIfNotModified Return an empty list instead of the cached languages, when
+     *                          they haven't changed since the last request.
+     * @return The supported languages Resource.
+     */
+    public static Resource<List<TranslateLangItem>> getSupportedLanguages(boolean skipIfNotModified) {
         MethodParameters parameters = getDefaultMethodParameters();
         parameters.put(UI_LANGUAGE_KEY_PARAM, "en");
 
         URL url = buildUrl(SUPPORTED_LANGUAGES_PATH, parameters);
 
-        return new Resource<>(url, new Parse<List<TranslateLangItem>>() {
-            @Override
-            public List<TranslateLangItem> parse(@Nullable String response) {
-                return TranslateLangJsonUtils.buildFromResponse(response);
-            }
-        });
+        Resource<List<TranslateLangItem>> resource = new Resource<>(url,
+                new StreamParse<List<TranslateLangItem>>() {
+                    @Override
+                    public List<TranslateLangItem> parse(@NonNull Reader reader) throws IOException {
+                        return TranslateLangJsonUtils.buildFromResponse(reader);
+                    }
+                });
+        resource.cacheable = true;
+        resource.coalesced = true;
+
+        if (skipIfNotModified) {
+            resource.notModifiedBlock = new NotModified<List<TranslateLangItem>>() {
+                @Override
+                public List<TranslateLangItem> notModified() {
+                    return Collections.emptyList();
+                }
+            };
+        }
+
+        return resource;
     }
 
+    /**
+     * The text is sent in the form-encoded POST body, so long texts don't bloat the URL.
+     *
+     * @return The single text translation Resource.
+     */
     public static Resource<List<TranslateItem>> getTranslation(@NonNull final String text,
                                                                @NonNull final TranslateLangItem translateLang) {
+        ParameterList bodyParameters = new ParameterList(1).add(TEXT_KEY_PARAM, text);
+
+        return buildTranslation(translateLang, bodyParameters,
+                new StreamParse<List<TranslateItem>>() {
+                    @Override
+                    public List<TranslateItem> parse(@NonNull Reader reader) throws IOException {
+                        return TranslateItemJsonUtils.buildItems(text, translateLang, reader);
+                    }
+                });
+    }
+
+    /**
+     * Builds resources to translate many texts with as few requests as possible. Texts are
+     * packed into a request body as repeated text parameters until the length limit is reached.
+     * Each resource maps the returned translations back to its source texts.
+     *
+     * @param texts         Texts to translate.
+     * @param translateLang Translate direction for all of the texts.
+     * @return Resources to be loaded, empty if there are no texts.
+     */
+    public static List<Resource<List<TranslateItem>>> getBatchTranslation(
+            @NonNull final List<String> texts,
+            @NonNull final TranslateLangItem translateLang) {
+        List<Resource<List<TranslateItem>>> resources = new ArrayList<>();
+        List<String> batchTexts = new ArrayList<>();
+        int batchLength = 0;
+
+        for (String aText : texts) {
+            if (!batchTexts.isEmpty() && batchLength + aText.length() > MAX_TEXT_LENGTH) {
+                resources.add(buildBatchTranslation(batchTexts, translateLang));
+                batchTexts = new ArrayList<>();
+                batchLength = 0;
+            }
+
+            batchTexts.add(aText);
+            batchLength += aText.length();
+        }
+
+        if (!batchTexts.isEmpty()) {
+            resources.add(buildBatchTranslation(batchTexts, translateLang));
+        }
+
+        return resources;
+    }
+
+    private static Resource<List<TranslateItem>> buildBatchTranslation(
+            @NonNull final List<String> texts,
+            @NonNull final TranslateLangItem translateLang) {
+        ParameterList bodyParameters = new ParameterList(texts.size());
+        for (String aText : texts) {
+            bodyParameters.add(TEXT_KEY_PARAM, aText);
+        }
+
+        return buildTranslation(translateLang, bodyParameters,
+                new StreamParse<List<TranslateItem>>() {
+                    @Override
+                    public List<TranslateItem> parse(@NonNull Reader reader) throws IOException {
+                        return TranslateItemJsonUtils.buildBatchItems(texts, translateLang, reader);
+                    }
+                });
+    }
+
+    private static Resource<List<TranslateItem>> buildTranslation(
+            @NonNull final TranslateLangItem translateLang,
+            @NonNull final ParameterList bodyParameters,
+            @NonNull final StreamParse<List<TranslateItem>> parse) {
         MethodParameters parameters = getDefaultMethodParameters();
-        parameters.put(TEXT_KEY_PARAM, Utils.urlEncode(text));
         parameters.put(TRANSLATE_DIR_KEY_PARAM, translateLang.getLangString());
 
         URL url = buildUrl(TRANSLATE_PATH, parameters);
 
-        return new Resource<>(url, new Parse<List<TranslateItem>>() {
-            @Override
-            public List<TranslateItem> parse(@Nullable String response) {
-                return TranslateItemJsonUtils.buildItems(text, translateLang, response);
-            }
-        });
+        Resource<List<TranslateItem>> resource = new Resource<>(url, HTTP_METHOD_POST, parse);
+        resource.body = FormBody.encode(bodyParameters);
+        resource.contentType = FormBody.CONTENT_TYPE;
+        // Translating is idempotent, so repeated taps could share the request in flight
+        // and failed requests could be retried.
+        resource.coalesced = true;
+        resource.idempotent = true;
+
+        return resource;
     }
 
     /**
@@ -105,6 +233,6 @@ public final class YandexTranslateApi {
      */
     private static URL buildUrl(@Nullable final String path,
                                 @NonNull final MethodParameters methodParameters) {
-        return UrlBuilder.buildUrl(API_SCHEME, API_HOST, API_PATH, path, methodParameters);
+        return UrlBuilder.buildUrl(sApiScheme, sApiHost, API_PATH, path, methodParameters);
     }
 }
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.yatranslate.data;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+
+/**
+ * History cursor delivered with its rows snapshot and the diff against the previous result,
+ * both prepared on the loader thread.
+ */
+public final class HistoryCursor extends CursorWrapper {
+
+    private final HistoryRows mRows;
+    private final HistoryRowKeys mDiffBase;
+    private final DiffUtil.DiffResult mDiffResult;
+
+    HistoryCursor(@NonNull final Cursor cursor, @NonNull final HistoryRows rows,
+                  @Nullable final HistoryRowKeys diffBase,
+                  @Nullable final DiffUtil.DiffResult diffResult) {
+        super(cursor);
+        this.mRows = rows;
+        this.mDiffBase = diffBase;
+        this.mDiffResult = diffResult;
+    }
+
+    @NonNull
+    public HistoryRows getRows() {
+        return mRows;
+    }
+
+    @NonNull
+    public HistoryRowKeys getRowKeys() {
+        return mRows.getRowKeys();
+    }
+
+    /**
+     * @param currentKeys Keys of the list on the screen.
+     * @return Diff that updates the list or null if it was calculated against another result.
+     */
+    @Nullable
+    public DiffUtil.DiffResult getDiffResultFrom(@Nullable final HistoryRowKeys currentKeys) {
+        return currentKeys != null && currentKeys == mDiffBase ? mDiffResult : null;
+    }
+}
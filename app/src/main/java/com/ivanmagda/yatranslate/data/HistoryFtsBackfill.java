@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.yatranslate.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Process;
+import android.util.Log;
+
+import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry;
+
+/**
+ * Indexes the existing history rows in the full-text index in small batches, in the background,
+ * so a schema upgrade doesn't have to index the whole history on the first launch.
+ * <p>
+ * While the backfill is pending, its table holds the last indexed history id. The full-text
+ * index triggers skip the rows above it, those rows are indexed by the backfill.
+ */
+final class HistoryFtsBackfill {
+
+    private static final String LOG_TAG = HistoryFtsBackfill.class.getSimpleName();
+
+    static final String TABLE_NAME = "history_fts_backfill";
+    static final String COLUMN_LAST_ID = "last_id";
+
+    private static final int BATCH_SIZE = 200;
+
+    /* Pause between the batches, lets the foreground writes through. */
+    private static final long BATCH_PAUSE_MILLIS = 50;
+
+    private static final String SQL_CREATE_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_NAME +
+            " (" + COLUMN_LAST_ID + " INTEGER NOT NULL);";
+
+    private static final String SQL_SELECT_LAST_ID = "SELECT " + COLUMN_LAST_ID +
+            " FROM " + TABLE_NAME + " LIMIT 1;";
+
+    private static final String SQL_SELECT_BATCH_END_ID = "SELECT max(" + HistoryEntry._ID +
+            ") FROM (SELECT " + HistoryEntry._ID + " FROM " + HistoryEntry.TABLE_NAME +
+            " WHERE " + HistoryEntry._ID + " > ? ORDER BY " + HistoryEntry._ID + " LIMIT " +
+            BATCH_SIZE + ");";
+
+    private static final String SQL_INDEX_BATCH = "INSERT INTO " + HistoryEntry.FTS_TABLE_NAME +
+            "(docid, " + HistoryEntry.COLUMN_TEXT_TO_TRANSLATE + ", " +
+            HistoryEntry.COLUMN_TEXT_TRANSLATED + ") SELECT " + HistoryEntry._ID + ", " +
+            HistoryEntry.COLUMN_TEXT_TO_TRANSLATE + ", " + HistoryEntry.COLUMN_TEXT_TRANSLATED +
+            " FROM " + HistoryEntry.TABLE_NAME + " WHERE " + HistoryEntry._ID + " > ? AND " +
+            HistoryEntry._ID + " <= ?;";
+
+    private static final String SQL_UPDATE_LAST_ID = "UPDATE " + TABLE_NAME +
+            " SET " + COLUMN_LAST_ID + " = ?;";
+
+    private static final String SQL_DELETE_STATE = "DELETE FROM " + TABLE_NAME + ";";
+
+    private HistoryFtsBackfill() {
+    }
+
+    /**
+     * @param row Trigger row reference, "new" or "old".
+     * @return Trigger WHEN condition, true when the row is (or going to be) in the index.
+     */
+    static String sqlIndexedRowCondition(String row) {
+        return "NOT EXISTS (SELECT 1 FROM " + TABLE_NAME + " WHERE " + row + "." +
+                HistoryEntry._ID + " > " + COLUMN_LAST_ID + ")";
+    }
+
+    static void createTable(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL(SQL_CREATE_TABLE);
+    }
+
+    /**
+     * Marks the whole history as not indexed. Should be called with the empty index.
+     */
+    static void schedule(SQLiteDatabase sqLiteDatabase) {
+        createTable(sqLiteDatabase);
+        sqLiteDatabase.execSQL(SQL_DELETE_STATE);
+        sqLiteDatabase.execSQL("INSERT INTO " + TABLE_NAME + " (" + COLUMN_LAST_ID + ") VALUES (0);");
+    }
+
+    /**
+     * Starts the backfill on a background thread, does nothing if it's already complete.
+     */
+    static void runAsync(final SQLiteOpenHelper openHelper) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    runToCompletion(openHelper.getWritableDatabase());
+                } catch (RuntimeException e) {
+                    // Will be resumed on the next database open.
+                    Log.e(LOG_TAG, "Full-text index backfill failed", e);
+                }
+            }
+        }, LOG_TAG);
+        thread.start();
+    }
+
+    private static void runToCompletion(SQLiteDatabase sqLiteDatabase) {
+        int batchCount = 0;
+        while (!indexNextBatch(sqLiteDatabase)) {
+            batchCount++;
+            try {
+                Thread.sleep(BATCH_PAUSE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        if (batchCount > 0) {
+            Log.d(LOG_TAG, "Full-text index backfill completed, batches: " + batchCount);
+        }
+    }
+
+    /**
+     * Indexes the next batch of rows in its own transaction. Checking for the rows left and
+     * finishing the backfill happen in the same transaction, so concurrent inserts are either
+     * picked up by a batch or indexed by the triggers.
+     *
+     * @return true if the backfill is complete.
+     */
+    private static boolean indexNextBatch(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.beginTransaction();
+        try {
+            Long lastId = queryLong(sqLiteDatabase, SQL_SELECT_LAST_ID, null);
+            if (lastId == null) {
+                sqLiteDatabase.setTransactionSuccessful();
+                return true;
+            }
+
+            String[] lastIdArgs = new String[]{String.valueOf(lastId)};
+            Long batchEndId = queryLong(sqLiteDatabase, SQL_SELECT_BATCH_END_ID, lastIdArgs);
+            if (batchEndId == null) {
+                sqLiteDatabase.execSQL(SQL_DELETE_STATE);
+                sqLiteDatabase.setTransactionSuccessful();
+                return true;
+            }
+
+            sqLiteDatabase.execSQL(SQL_INDEX_BATCH, new Object[]{lastId, batchEndId});
+            sqLiteDatabase.execSQL(SQL_UPDATE_LAST_ID, new Object[]{batchEndId});
+            sqLiteDatabase.setTransactionSuccessful();
+
+            return false;
+        } finally {
+            sqLiteDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * @return Value of the first column of the first row, null if there is no one or it's NULL.
+     */
+    private static Long queryLong(SQLiteDatabase sqLiteDatabase, String sql, String[] args) {
+        Cursor cursor = sqLiteDatabase.rawQuery(sql, args);
+        try {
+            if (!cursor.moveToFirst() || cursor.isNull(0)) return null;
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
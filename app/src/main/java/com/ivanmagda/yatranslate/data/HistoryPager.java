@@ -0,0 +1,542 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.yatranslate.data;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.support.v7.util.DiffUtil;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry;
+
+/**
+ * Loads the history in pages, newest first, as the list is scrolled.
+ * <p>
+ * Pages are queried by the (created_at, _id) key of the previous page last row. The key
+ * selection leads with a plain created_at bound, so the page query seeks into the created_at
+ * index instead of scanning it from the newest row, regardless of how deep the page is.
+ * Only a few pages are kept in memory, evicted pages are loaded again by their remembered
+ * start keys.
+ * <p>
+ * A history change reloads the pages in memory only. The items after them are dropped and
+ * appended again as the list is scrolled, the items before them are checked when their pages
+ * are loaded again.
+ * <p>
+ * All of the public methods must be called on the main thread.
+ */
+public final class HistoryPager {
+
+    private static final String LOG_TAG = HistoryPager.class.getSimpleName();
+
+    public static final int PAGE_SIZE = 50;
+
+    /* Number of the pages kept in memory. */
+    private static final int MAX_CACHED_PAGES = 5;
+
+    /* Loading of the adjacent page starts when that many items are left. */
+    private static final int PREFETCH_DISTANCE = PAGE_SIZE / 3;
+
+    private static final String SORT_ORDER = HistoryEntry.COLUMN_CREATED_AT + " DESC, " +
+            HistoryEntry._ID + " DESC";
+
+    /* The leading bound is redundant, but SQLite of the older platforms seeks only by it. */
+    private static final String KEYSET_SELECTION = HistoryEntry.COLUMN_CREATED_AT + " <= ? AND (" +
+            HistoryEntry.COLUMN_CREATED_AT + " < ? OR (" + HistoryEntry.COLUMN_CREATED_AT +
+            " = ? AND " + HistoryEntry._ID + " < ?))";
+
+    /**
+     * Receives the changes of the paged list on the main thread.
+     */
+    public interface Listener {
+
+        /**
+         * Items of the already counted range were loaded, e.g. an evicted page.
+         */
+        void onItemRangeLoaded(int positionStart, int itemCount);
+
+        /**
+         * Next page was loaded and appended to the end of the list.
+         */
+        void onItemRangeAppended(int positionStart, int itemCount);
+
+        /**
+         * Items after the reloaded pages were dropped, they're appended again on scroll.
+         * Called before the {@link #onRefreshed(int, DiffUtil.DiffResult)} of the same refresh.
+         */
+        void onItemRangeDropped(int positionStart, int itemCount);
+
+        /**
+         * Pages from the position were loaded again, the diff describes the changes of their
+         * items. Positions of the diff are relative to the position.
+         */
+        void onRefreshed(int positionStart, @NonNull DiffUtil.DiffResult diffResult);
+    }
+
+    /**
+     * Position of a row in the history order.
+     */
+    private static final class PageKey {
+        final String createdAt;
+        final long id;
+
+        PageKey(String createdAt, long id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+    }
+
+    private static final class Page {
+        final HistoryRows rows;
+
+        /* Key of the last row, null if the page is empty. */
+        final PageKey endKey;
+
+        /* The query failed, the page isn't known to be empty and is loaded again. */
+        final boolean failed;
+
+        Page(HistoryRows rows, PageKey endKey) {
+            this(rows, endKey, false);
+        }
+
+        private Page(HistoryRows rows, PageKey endKey, boolean failed) {
+            this.rows = rows;
+            this.endKey = endKey;
+            this.failed = failed;
+        }
+
+        static Page failed() {
+            return new Page(HistoryRows.EMPTY, null, true);
+        }
+
+        boolean isFull() {
+            return rows.size() == PAGE_SIZE;
+        }
+    }
+
+    private final Context mContext;
+    private final ContentFilter mContentFilter;
+    private final Listener mListener;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private ExecutorService mExecutor;
+
+    private final ContentObserver mContentObserver = new ContentObserver(mMainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            refresh();
+        }
+    };
+
+    /**
+     * Start key of every page reached so far, the first page starts from the newest row.
+     */
+    private ArrayList<PageKey> mPageStartKeys = new ArrayList<>();
+    private final LruCache<Integer, Page> mPages = new LruCache<>(MAX_CACHED_PAGES);
+    private final Set<Integer> mLoadingPages = new HashSet<>();
+
+    /**
+     * Keys of every counted item, including the evicted ones. Replaced, never mutated,
+     * on refresh, so the refresh diffs against it off the main thread.
+     */
+    private HistoryRowKeys mRowKeys = new HistoryRowKeys(PAGE_SIZE);
+
+    private int mItemCount;
+    private boolean mEndReached;
+    private boolean mLoaded;
+
+    /**
+     * Incremented on every refresh, so results of the outdated loads are dropped.
+     */
+    private int mGeneration;
+    private boolean mRefreshing;
+    private boolean mRefreshPending;
+
+    /* The last refresh failed, it's retried when the rows are requested again. */
+    private boolean mRefreshFailed;
+
+    /* The last requested position, the refresh reloads the pages around it. */
+    private int mLastRequestedPosition;
+
+    public HistoryPager(@NonNull final Context context,
+                        @NonNull final ContentFilter contentFilter,
+                        @NonNull final Listener listener) {
+        this.mContext = context.getApplicationContext();
+        this.mContentFilter = contentFilter;
+        this.mListener = listener;
+    }
+
+    /**
+     * Loads the first page and starts observing the history changes.
+     */
+    @MainThread
+    public void start() {
+        if (mExecutor != null) return;
+
+        mExecutor = Executors.newSingleThreadExecutor();
+        mContext.getContentResolver().registerContentObserver(HistoryEntry.CONTENT_URI, true,
+                mContentObserver);
+        refresh();
+    }
+
+    /**
+     * Stops observing the changes and drops the pending loads.
+     */
+    @MainThread
+    public void stop() {
+        if (mExecutor == null) return;
+
+        mContext.getContentResolver().unregisterContentObserver(mContentObserver);
+        mExecutor.shutdownNow();
+        mExecutor = null;
+        mGeneration++;
+        mLoadingPages.clear();
+        mRefreshing = false;
+        mRefreshPending = false;
+        mRefreshFailed = false;
+    }
+
+    /**
+     * @return Number of the items loaded so far, grows as the list is scrolled.
+     */
+    public int getItemCount() {
+        return mItemCount;
+    }
+
+    /**
+     * @return true once the first page is loaded.
+     */
+    public boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * @return Stable id of the item, known for the evicted items too.
+     */
+    public long getItemId(int position) {
+        return mRowKeys.getId(position);
+    }
+
+    /**
+     * @return Index of the item in the rows of its page.
+     */
+    public static int getRowIndex(int position) {
+        return position % PAGE_SIZE;
+    }
+
+    /**
+     * Returns the rows of the item page and schedules loading of the pages around it.
+     * The item is at the {@link #getRowIndex(int)} of the rows.
+     *
+     * @return Rows or null if the page isn't in memory yet, it's delivered with
+     * {@link Listener#onItemRangeLoaded(int, int)}.
+     */
+    @Nullable
+    @MainThread
+    public HistoryRows getRows(int position) {
+        if (mRefreshFailed) refresh();
+        if (position < 0 || position >= mItemCount) return null;
+        mLastRequestedPosition = position;
+
+        int pageIndex = position / PAGE_SIZE;
+        int pageOffset = position % PAGE_SIZE;
+
+        // Prefetch the adjacent pages in the scroll direction.
+        if (pageOffset >= PAGE_SIZE - PREFETCH_DISTANCE) {
+            loadPage(pageIndex + 1);
+        } else if (pageOffset < PREFETCH_DISTANCE && pageIndex > 0) {
+            loadPage(pageIndex - 1);
+        }
+
+        Page page = mPages.get(pageIndex);
+        if (page == null) {
+            loadPage(pageIndex);
+            return null;
+        }
+
+        return pageOffset < page.rows.size() ? page.rows : null;
+    }
+
+    private void loadPage(final int pageIndex) {
+        if (mExecutor == null || mRefreshing) return;
+        if (pageIndex >= mPageStartKeys.size()) return;
+        if (mLoadingPages.contains(pageIndex) || mPages.get(pageIndex) != null) return;
+
+        mLoadingPages.add(pageIndex);
+
+        final int generation = mGeneration;
+        final PageKey startKey = mPageStartKeys.get(pageIndex);
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Page page = queryPage(startKey);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(generation, pageIndex, page);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int generation, int pageIndex, Page page) {
+        if (generation != mGeneration) return;
+        mLoadingPages.remove(pageIndex);
+
+        // Neither cached nor counted, so the next request of the page loads it again.
+        if (page.failed) return;
+
+        int positionStart = pageIndex * PAGE_SIZE;
+        mPages.put(pageIndex, page);
+
+        if (positionStart < mItemCount) {
+            mListener.onItemRangeLoaded(positionStart,
+                    Math.min(page.rows.size(), mItemCount - positionStart));
+
+            // Evicted page, changed after the refresh that counted it.
+            if (!mRowKeys.regionMatches(positionStart, page.rows.getRowKeys())) {
+                refresh();
+            }
+            return;
+        }
+
+        mItemCount += page.rows.size();
+        mRowKeys.addAll(page.rows.getRowKeys());
+        if (page.isFull()) {
+            mPageStartKeys.add(page.endKey);
+        } else {
+            mEndReached = true;
+        }
+
+        if (page.rows.size() > 0) {
+            mListener.onItemRangeAppended(positionStart, page.rows.size());
+        }
+    }
+
+    /**
+     * Loads the pages in memory and the page of the last requested position again, at most
+     * {@link #MAX_CACHED_PAGES} of them, and drops the items after them. The pages before them
+     * keep their start keys, so the work is bounded by the page cache, not the scroll depth.
+     */
+    private void refresh() {
+        if (mExecutor == null) return;
+        if (mRefreshing) {
+            mRefreshPending = true;
+            return;
+        }
+
+        mRefreshing = true;
+        mRefreshFailed = false;
+        mGeneration++;
+        mLoadingPages.clear();
+
+        int targetPageIndex = Math.min(mLastRequestedPosition, Math.max(mItemCount - 1, 0))
+                / PAGE_SIZE;
+        targetPageIndex = Math.min(targetPageIndex, Math.max(mPageStartKeys.size() - 1, 0));
+
+        int firstPageIndex = targetPageIndex;
+        int lastPageIndex = targetPageIndex;
+        for (int aPageIndex : mPages.snapshot().keySet()) {
+            if (Math.abs(aPageIndex - targetPageIndex) >= MAX_CACHED_PAGES) continue;
+            firstPageIndex = Math.min(firstPageIndex, aPageIndex);
+            lastPageIndex = Math.max(lastPageIndex, aPageIndex);
+        }
+        if (lastPageIndex - firstPageIndex >= MAX_CACHED_PAGES) {
+            firstPageIndex = Math.max(firstPageIndex, targetPageIndex - MAX_CACHED_PAGES + 1);
+            lastPageIndex = firstPageIndex + MAX_CACHED_PAGES - 1;
+        }
+
+        final int generation = mGeneration;
+        final int pageCount = lastPageIndex - firstPageIndex + 1;
+        final int positionStart = firstPageIndex * PAGE_SIZE;
+        final int oldPositionEnd = Math.min(mItemCount, positionStart + pageCount * PAGE_SIZE);
+        final int droppedCount = mItemCount - oldPositionEnd;
+        final HistoryRowKeys oldRowKeys = mRowKeys;
+        final ArrayList<PageKey> startKeys = new ArrayList<>(firstPageIndex + pageCount + 1);
+        if (mPageStartKeys.isEmpty()) {
+            startKeys.add(null);
+        } else {
+            startKeys.addAll(mPageStartKeys.subList(0, firstPageIndex + 1));
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Page> pages = new ArrayList<>(pageCount);
+                final HistoryRowKeys pageRowKeys = new HistoryRowKeys(pageCount * PAGE_SIZE);
+                boolean endReached = false;
+
+                for (int i = 0; i < pageCount; i++) {
+                    if (Thread.currentThread().isInterrupted()) return;
+
+                    Page page = queryPage(startKeys.get(startKeys.size() - 1));
+                    if (page.failed) {
+                        mMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                onRefreshFailed(generation);
+                            }
+                        });
+                        return;
+                    }
+                    pages.add(page);
+                    pageRowKeys.addAll(page.rows.getRowKeys());
+
+                    if (!page.isFull()) {
+                        endReached = true;
+                        break;
+                    }
+                    startKeys.add(page.endKey);
+                }
+
+                HistoryRowKeys oldPageRowKeys = new HistoryRowKeys(oldPositionEnd - positionStart);
+                oldPageRowKeys.addAll(oldRowKeys, positionStart, oldPositionEnd);
+
+                final HistoryRowKeys rowKeys = new HistoryRowKeys(
+                        positionStart + pageRowKeys.size());
+                rowKeys.addAll(oldRowKeys, 0, positionStart);
+                rowKeys.addAll(pageRowKeys);
+
+                final boolean finalEndReached = endReached;
+                final DiffUtil.DiffResult diffResult = HistoryRowKeys.diff(oldPageRowKeys,
+                        pageRowKeys);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onRefreshed(generation, startKeys, pages, rowKeys, finalEndReached,
+                                positionStart, oldPositionEnd, droppedCount, diffResult);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onRefreshed(int generation, ArrayList<PageKey> startKeys, List<Page> pages,
+                             HistoryRowKeys rowKeys, boolean endReached, int positionStart,
+                             int oldPositionEnd, int droppedCount,
+                             DiffUtil.DiffResult diffResult) {
+        if (generation != mGeneration) return;
+
+        mRefreshing = false;
+        mPageStartKeys = startKeys;
+        mRowKeys = rowKeys;
+        mItemCount = rowKeys.size();
+        mEndReached = endReached;
+        mLoaded = true;
+
+        int firstPageIndex = positionStart / PAGE_SIZE;
+        mPages.evictAll();
+        for (int i = 0; i < pages.size(); i++) {
+            mPages.put(firstPageIndex + i, pages.get(i));
+        }
+
+        // The old items are dropped first, so the diff positions stay as calculated.
+        if (droppedCount > 0) {
+            mListener.onItemRangeDropped(oldPositionEnd, droppedCount);
+        }
+        mListener.onRefreshed(positionStart, diffResult);
+
+        if (mRefreshPending) {
+            mRefreshPending = false;
+            refresh();
+        }
+    }
+
+    /**
+     * Keeps the state of the previous refresh, the pages are loaded again on the next request
+     * of the rows or the next history change.
+     */
+    private void onRefreshFailed(int generation) {
+        if (generation != mGeneration) return;
+
+        mRefreshing = false;
+        if (mRefreshPending) {
+            mRefreshPending = false;
+            refresh();
+        } else {
+            mRefreshFailed = true;
+        }
+    }
+
+    @WorkerThread
+    private Page queryPage(@Nullable final PageKey startKey) {
+        List<String> selectionArgs = new ArrayList<>(4);
+        StringBuilder selection = new StringBuilder(128);
+
+        if (mContentFilter == ContentFilter.FAVORITE) {
+            selection.append(HistoryEntry.COLUMN_FAVORITE).append(" == 1");
+        }
+        if (startKey != null) {
+            if (selection.length() > 0) selection.append(" AND ");
+            selection.append(KEYSET_SELECTION);
+            selectionArgs.add(startKey.createdAt);
+            selectionArgs.add(startKey.createdAt);
+            selectionArgs.add(startKey.createdAt);
+            selectionArgs.add(String.valueOf(startKey.id));
+        }
+
+        Cursor cursor = null;
+        try {
+            cursor = mContext.getContentResolver().query(
+                    HistoryEntry.buildUriWithLimit(PAGE_SIZE),
+                    null,
+                    selection.length() == 0 ? null : selection.toString(),
+                    selectionArgs.isEmpty() ? null : selectionArgs.toArray(new String[selectionArgs.size()]),
+                    SORT_ORDER);
+            if (cursor == null) return Page.failed();
+
+            HistoryRows rows = HistoryRows.from(cursor);
+            if (!cursor.moveToLast()) return new Page(rows, null);
+
+            PageKey endKey = new PageKey(
+                    cursor.getString(cursor.getColumnIndexOrThrow(HistoryEntry.COLUMN_CREATED_AT)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(HistoryEntry._ID)));
+
+            return new Page(rows, endKey);
+        } catch (RuntimeException e) {
+            Log.e(LOG_TAG, "Failed to load history page", e);
+            return Page.failed();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+}
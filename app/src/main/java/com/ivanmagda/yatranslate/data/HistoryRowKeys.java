@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.yatranslate.data;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.support.v7.util.DiffUtil;
+
+import java.util.Arrays;
+
+import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry;
+
+/**
+ * Ids and content hashes of the history rows in the list order.
+ * <p>
+ * It's all the list diffing needs, so the rows aren't kept around to compare two results.
+ */
+public final class HistoryRowKeys {
+
+    private long[] mIds;
+    private int[] mContentHashes;
+    private int mSize;
+
+    public HistoryRowKeys(int capacity) {
+        this.mIds = new long[Math.max(capacity, 1)];
+        this.mContentHashes = new int[mIds.length];
+    }
+
+    /**
+     * Hash of every column except the id, so the favorite flag, the translation and the search
+     * snippets are all accounted for.
+     */
+    static int hashRow(@NonNull final Cursor cursor, final int idColumnIndex) {
+        int result = 17;
+        for (int i = 0, count = cursor.getColumnCount(); i < count; i++) {
+            if (i == idColumnIndex) continue;
+
+            String value = cursor.getString(i);
+            result = 31 * result + (value == null ? 0 : value.hashCode());
+        }
+
+        return result;
+    }
+
+    /**
+     * Calculates the updates that turn the old list into the new one.
+     * Rows are matched by the id and rebound only if their content has changed.
+     */
+    @WorkerThread
+    @NonNull
+    public static DiffUtil.DiffResult diff(@NonNull final HistoryRowKeys oldKeys,
+                                           @NonNull final HistoryRowKeys newKeys) {
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldKeys.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newKeys.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return oldKeys.getId(oldItemPosition) == newKeys.getId(newItemPosition);
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return oldKeys.mContentHashes[oldItemPosition]
+                        == newKeys.mContentHashes[newItemPosition];
+            }
+        }, false);
+    }
+
+    public void add(long id, int contentHash) {
+        if (mSize == mIds.length) {
+            mIds = Arrays.copyOf(mIds, mSize * 2);
+            mContentHashes = Arrays.copyOf(mContentHashes, mSize * 2);
+        }
+
+        mIds[mSize] = id;
+        mContentHashes[mSize] = contentHash;
+        mSize++;
+    }
+
+    public void addAll(@Nullable HistoryRowKeys keys) {
+        if (keys == null) return;
+        addAll(keys, 0, keys.mSize);
+    }
+
+    /**
+     * Adds the keys from the start position, inclusive, to the end position, exclusive.
+     */
+    public void addAll(@NonNull HistoryRowKeys keys, int start, int end) {
+        for (int i = start; i < end; i++) {
+            add(keys.mIds[i], keys.mContentHashes[i]);
+        }
+    }
+
+    /**
+     * @return true if the keys are the same as the ones starting from the position.
+     */
+    public boolean regionMatches(int position, @NonNull HistoryRowKeys keys) {
+        if (position < 0 || position + keys.mSize > mSize) return false;
+
+        for (int i = 0; i < keys.mSize; i++) {
+            if (mIds[position + i] != keys.mIds[i]
+                    || mContentHashes[position + i] != keys.mContentHashes[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public long getId(int position) {
+        return mIds[position];
+    }
+
+    public int size() {
+        return mSize;
+    }
+}
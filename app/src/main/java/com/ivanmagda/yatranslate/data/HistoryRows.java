@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.yatranslate.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.ivanmagda.yatranslate.model.core.TranslateItem;
+import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
+import com.ivanmagda.yatranslate.utilities.SnippetUtils;
+import com.ivanmagda.yatranslate.utilities.database.TranslateLangNameIndex;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry;
+
+/**
+ * Immutable snapshot of the history rows, one array per column.
+ * <p>
+ * Everything a list row displays is prepared while reading the cursor, off the main thread:
+ * the formatted translate direction and the highlighted search snippets. Binding a row then
+ * only reads the arrays and allocates nothing. A {@link TranslateItem} is built on demand,
+ * e.g. when the row is clicked.
+ */
+public final class HistoryRows {
+
+    public static final HistoryRows EMPTY = new HistoryRows(0);
+
+    /**
+     * Column indices of the history cursor, resolved once per cursor.
+     */
+    private static final class Columns {
+        final int id;
+        final int favorite;
+        final int textToTranslate;
+        final int translatedText;
+        final int fromLang;
+        final int toLang;
+        final int textToTranslateSnippet;
+        final int translatedTextSnippet;
+
+        Columns(@NonNull final Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(HistoryEntry._ID);
+            favorite = cursor.getColumnIndexOrThrow(HistoryEntry.COLUMN_FAVORITE);
+            textToTranslate = cursor.getColumnIndexOrThrow(HistoryEntry.COLUMN_TEXT_TO_TRANSLATE);
+            translatedText = cursor.getColumnIndexOrThrow(HistoryEntry.COLUMN_TEXT_TRANSLATED);
+            fromLang = cursor.getColumnIndexOrThrow(HistoryEntry.COLUMN_LANG_TRANSLATE_FROM);
+            toLang = cursor.getColumnIndexOrThrow(HistoryEntry.COLUMN_LANG_TRANSLATE_TO);
+            textToTranslateSnippet = cursor.getColumnIndex(
+                    HistoryEntry.COLUMN_SNIPPET_TEXT_TO_TRANSLATE);
+            translatedTextSnippet = cursor.getColumnIndex(
+                    HistoryEntry.COLUMN_SNIPPET_TEXT_TRANSLATED);
+        }
+    }
+
+    private final int mSize;
+    private final long[] mIds;
+    private final boolean[] mFavorites;
+    private final String[] mTextsToTranslate;
+    private final String[] mTranslatedTexts;
+    private final String[] mFromLangs;
+    private final String[] mToLangs;
+    private final String[] mFormattedLangKeys;
+
+    /* Search results only, null elements fall back to the plain text. */
+    private final CharSequence[] mTextToTranslateSnippets;
+    private final CharSequence[] mTranslatedTextSnippets;
+
+    private final HistoryRowKeys mRowKeys;
+
+    private HistoryRows(int size) {
+        mSize = size;
+        mIds = new long[size];
+        mFavorites = new boolean[size];
+        mTextsToTranslate = new String[size];
+        mTranslatedTexts = new String[size];
+        mFromLangs = new String[size];
+        mToLangs = new String[size];
+        mFormattedLangKeys = new String[size];
+        mTextToTranslateSnippets = new CharSequence[size];
+        mTranslatedTextSnippets = new CharSequence[size];
+        mRowKeys = new HistoryRowKeys(size);
+    }
+
+    /**
+     * Reads every row of the cursor, leaves the cursor before the first row.
+     */
+    @WorkerThread
+    @NonNull
+    public static HistoryRows from(@NonNull final Cursor cursor) {
+        int count = cursor.getCount();
+        if (count <= 0) return EMPTY;
+
+        HistoryRows rows = new HistoryRows(count);
+        Columns columns = new Columns(cursor);
+
+        // Rows share few distinct directions, keep a single string per direction.
+        Map<String, String> langKeysPool = new HashMap<>();
+
+        cursor.moveToPosition(-1);
+        for (int i = 0; i < count && cursor.moveToNext(); i++) {
+            rows.mIds[i] = cursor.getLong(columns.id);
+            rows.mFavorites[i] = cursor.getInt(columns.favorite) != 0;
+            rows.mTextsToTranslate[i] = cursor.getString(columns.textToTranslate);
+            rows.mTranslatedTexts[i] = cursor.getString(columns.translatedText);
+            rows.mFromLangs[i] = pooled(langKeysPool, cursor.getString(columns.fromLang));
+            rows.mToLangs[i] = pooled(langKeysPool, cursor.getString(columns.toLang));
+            rows.mFormattedLangKeys[i] = pooled(langKeysPool,
+                    rows.mFromLangs[i] + " - " + rows.mToLangs[i]);
+            rows.mTextToTranslateSnippets[i] = highlight(cursor, columns.textToTranslateSnippet);
+            rows.mTranslatedTextSnippets[i] = highlight(cursor, columns.translatedTextSnippet);
+            rows.mRowKeys.add(rows.mIds[i], HistoryRowKeys.hashRow(cursor, columns.id));
+        }
+        cursor.moveToPosition(-1);
+
+        return rows;
+    }
+
+    private static String pooled(Map<String, String> pool, String value) {
+        if (value == null) return null;
+
+        String pooledValue = pool.get(value);
+        if (pooledValue != null) return pooledValue;
+
+        pool.put(value, value);
+        return value;
+    }
+
+    @Nullable
+    private static CharSequence highlight(Cursor cursor, int columnIndex) {
+        if (columnIndex == -1 || cursor.isNull(columnIndex)) return null;
+        return SnippetUtils.highlight(cursor.getString(columnIndex));
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    @NonNull
+    public HistoryRowKeys getRowKeys() {
+        return mRowKeys;
+    }
+
+    public long getId(int index) {
+        return mIds[index];
+    }
+
+    public boolean isFavorite(int index) {
+        return mFavorites[index];
+    }
+
+    /**
+     * @return Highlighted search snippet or the plain text.
+     */
+    public CharSequence getTextToTranslate(int index) {
+        CharSequence snippet = mTextToTranslateSnippets[index];
+        return snippet != null ? snippet : mTextsToTranslate[index];
+    }
+
+    /**
+     * @return Highlighted search snippet or the plain text.
+     */
+    public CharSequence getTranslatedText(int index) {
+        CharSequence snippet = mTranslatedTextSnippets[index];
+        return snippet != null ? snippet : mTranslatedTexts[index];
+    }
+
+    /**
+     * @return Translate direction formatted as "from - to".
+     */
+    public String getFormattedLangKeys(int index) {
+        return mFormattedLangKeys[index];
+    }
+
+    /**
+     * Language names are resolved from the in-memory {@link TranslateLangNameIndex},
+     * they are omitted if the index isn't loaded yet.
+     */
+    @NonNull
+    public TranslateItem buildItem(@NonNull final Context context, int index) {
+        TranslateLangItem langItem = TranslateLangNameIndex.getLoaded(context)
+                .buildLangItem(mFromLangs[index], mToLangs[index]);
+
+        return new TranslateItem(mIds[index], mFavorites[index], mTextsToTranslate[index],
+                mTranslatedTexts[index], langItem);
+    }
+}
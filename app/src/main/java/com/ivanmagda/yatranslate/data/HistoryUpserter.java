@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.ivanmagda.yatranslate.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry;
+
+/**
+ * Upserts the history rows with compiled statements, that are reused across a batch.
+ * <p>
+ * A translation with the same text and direction is stored once, by the unique translation
+ * index. A new translation is inserted, an existing one gets its translated text updated.
+ * SQLite 3.24 and later do both in a single INSERT ... ON CONFLICT DO UPDATE statement,
+ * the earlier versions use an INSERT OR IGNORE and UPDATE pair.
+ * <p>
+ * The row id is never taken from the values, the row of a translation is found by its text
+ * and direction. Not thread safe, an instance should be used by a single transaction.
+ */
+final class HistoryUpserter {
+
+    /* Android 11 bundles SQLite 3.28, the first one with UPSERT is 3.24. */
+    private static final int UPSERT_MIN_SDK = 30;
+
+    private static final String TRANSLATION_SELECTION =
+            HistoryEntry.COLUMN_TEXT_TO_TRANSLATE + " = ? AND " +
+                    HistoryEntry.COLUMN_LANG_TRANSLATE_FROM + " = ? AND " +
+                    HistoryEntry.COLUMN_LANG_TRANSLATE_TO + " = ?";
+
+    private static final String SQL_SELECT_ID = "SELECT " + HistoryEntry._ID + " FROM " +
+            HistoryEntry.TABLE_NAME + " WHERE " + TRANSLATION_SELECTION + ";";
+
+    /* Skips the write, and the FTS triggers, when the translation is the same. */
+    private static final String SQL_UPDATE_TRANSLATED_TEXT = "UPDATE " + HistoryEntry.TABLE_NAME +
+            " SET " + HistoryEntry.COLUMN_TEXT_TRANSLATED + " = ? WHERE " +
+            TRANSLATION_SELECTION + " AND " + HistoryEntry.COLUMN_TEXT_TRANSLATED + " != ?;";
+
+    private static final String SQL_UPSERT_CONFLICT_CLAUSE = " ON CONFLICT (" +
+            HistoryEntry.COLUMN_TEXT_TO_TRANSLATE + ", " +
+            HistoryEntry.COLUMN_LANG_TRANSLATE_FROM + ", " +
+            HistoryEntry.COLUMN_LANG_TRANSLATE_TO + ") DO UPDATE SET " +
+            HistoryEntry.COLUMN_TEXT_TRANSLATED + " = excluded." +
+            HistoryEntry.COLUMN_TEXT_TRANSLATED + " WHERE " +
+            HistoryEntry.COLUMN_TEXT_TRANSLATED + " != excluded." +
+            HistoryEntry.COLUMN_TEXT_TRANSLATED;
+
+    private final SQLiteDatabase mDatabase;
+    private final boolean mHasUpsert;
+
+    /* Insert statements by their columns, the rows of a batch usually share them. */
+    private final Map<List<String>, SQLiteStatement> mInsertStatements = new HashMap<>(2);
+    private SQLiteStatement mSelectIdStatement;
+    private SQLiteStatement mUpdateStatement;
+
+    HistoryUpserter(@NonNull final SQLiteDatabase database) {
+        this(database, Build.VERSION.SDK_INT >= UPSERT_MIN_SDK);
+    }
+
+    @VisibleForTesting
+    HistoryUpserter(@NonNull final SQLiteDatabase database, boolean hasUpsert) {
+        this.mDatabase = database;
+        this.mHasUpsert = hasUpsert;
+    }
+
+    /**
+     * Upserts the row and looks up its id.
+     *
+     * @return Row id of the inserted or existing row, -1 on failure.
+     */
+    long upsert(@NonNull final ContentValues values) {
+        String[] translationArgs = getTranslationArgs(values);
+        if (translationArgs == null) return -1;
+
+        if (mHasUpsert) {
+            // The id of an updated row isn't reported, so it's looked up.
+            executeInsert(values);
+            return selectId(translationArgs);
+        }
+
+        long id = executeInsert(values);
+        if (id != -1) return id;
+
+        updateTranslatedText(values, translationArgs);
+        return selectId(translationArgs);
+    }
+
+    /**
+     * Upserts the row, when its id isn't needed.
+     *
+     * @return Whether the row is stored.
+     */
+    boolean write(@NonNull final ContentValues values) {
+        String[] translationArgs = getTranslationArgs(values);
+        if (translationArgs == null) return false;
+
+        if (executeInsert(values) == -1 && !mHasUpsert) {
+            updateTranslatedText(values, translationArgs);
+        }
+        return true;
+    }
+
+    /**
+     * Releases the compiled statements.
+     */
+    void close() {
+        for (SQLiteStatement aStatement : mInsertStatements.values()) {
+            aStatement.close();
+        }
+        mInsertStatements.clear();
+
+        if (mSelectIdStatement != null) {
+            mSelectIdStatement.close();
+            mSelectIdStatement = null;
+        }
+        if (mUpdateStatement != null) {
+            mUpdateStatement.close();
+            mUpdateStatement = null;
+        }
+    }
+
+    /**
+     * @return The row id of an inserted row, -1 when the row exists already.
+     */
+    private long executeInsert(@NonNull final ContentValues values) {
+        List<String> columns = new ArrayList<>(values.size());
+        for (String aColumn : values.keySet()) {
+            if (!HistoryEntry._ID.equals(aColumn)) columns.add(aColumn);
+        }
+        Collections.sort(columns);
+
+        SQLiteStatement statement = mInsertStatements.get(columns);
+        if (statement == null) {
+            statement = mDatabase.compileStatement(buildInsertSql(columns));
+            mInsertStatements.put(columns, statement);
+        }
+
+        statement.clearBindings();
+        for (int i = 0; i < columns.size(); i++) {
+            DatabaseUtils.bindObjectToProgram(statement, i + 1, values.get(columns.get(i)));
+        }
+
+        return statement.executeInsert();
+    }
+
+    private String buildInsertSql(@NonNull final List<String> columns) {
+        StringBuilder sql = new StringBuilder(256)
+                .append(mHasUpsert ? "INSERT INTO " : "INSERT OR IGNORE INTO ")
+                .append(HistoryEntry.TABLE_NAME).append(" (");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i > 0 ? ", " : "").append(columns.get(i));
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+        sql.append(")");
+
+        if (mHasUpsert) {
+            sql.append(SQL_UPSERT_CONFLICT_CLAUSE);
+        }
+
+        return sql.append(";").toString();
+    }
+
+    private void updateTranslatedText(@NonNull final ContentValues values,
+                                      @NonNull final String[] translationArgs) {
+        String translatedText = values.getAsString(HistoryEntry.COLUMN_TEXT_TRANSLATED);
+        if (translatedText == null) return;
+
+        if (mUpdateStatement == null) {
+            mUpdateStatement = mDatabase.compileStatement(SQL_UPDATE_TRANSLATED_TEXT);
+        }
+        mUpdateStatement.bindString(1, translatedText);
+        for (int i = 0; i < translationArgs.length; i++) {
+            mUpdateStatement.bindString(i + 2, translationArgs[i]);
+        }
+        mUpdateStatement.bindString(translationArgs.length + 2, translatedText);
+        mUpdateStatement.executeUpdateDelete();
+    }
+
+    private long selectId(@NonNull final String[] translationArgs) {
+        if (mSelectIdStatement == null) {
+            mSelectIdStatement = mDatabase.compileStatement(SQL_SELECT_ID);
+        }
+        mSelectIdStatement.bindAllArgsAsStrings(translationArgs);
+
+        try {
+            return mSelectIdStatement.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return Text and direction of the translation or null if any of them is missing.
+     */
+    private static String[] getTranslationArgs(@NonNull final ContentValues values) {
+        String[] translationArgs = new String[]{
+                values.getAsString(HistoryEntry.COLUMN_TEXT_TO_TRANSLATE),
+                values.getAsString(HistoryEntry.COLUMN_LANG_TRANSLATE_FROM),
+                values.getAsString(HistoryEntry.COLUMN_LANG_TRANSLATE_TO)
+        };
+        for (String anArg : translationArgs) {
+            if (anArg == null) return null;
+        }
+
+        return translationArgs;
+    }
+}
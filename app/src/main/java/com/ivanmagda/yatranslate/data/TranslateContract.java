@@ -54,6 +54,9 @@ public final class TranslateContract {
      */
     public static final String PATH_LANGUAGES = "languages";
     public static final String PATH_HISTORY = "history";
+    public static final String PATH_TRANSLATION = "translation";
+    public static final String PATH_SEARCH = "search";
+    public static final String PATH_TRANSLATION_CACHE = "translation_cache";
 
     /* Inner class that defines the table contents of the languages table */
     public static final class LanguageEntry implements BaseColumns {
@@ -205,6 +208,46 @@ public final class TranslateContract {
          */
         public static final String COLUMN_CREATED_AT = "created_at";
 
+        /**
+         * Full-text index over the history texts. An external content FTS4 table,
+         * that is kept in sync with the history table by triggers.
+         */
+        public static final String FTS_TABLE_NAME = "history_fts";
+
+        /**
+         * Search results only. Highlighted snippet of the text to translate.
+         * Matched terms are wrapped with {@link #SNIPPET_MATCH_START} and {@link #SNIPPET_MATCH_END}.
+         * <p>
+         * TYPE: TEXT
+         */
+        public static final String COLUMN_SNIPPET_TEXT_TO_TRANSLATE = "snippet_text_translate";
+
+        /**
+         * Search results only. Highlighted snippet of the translated text.
+         * <p>
+         * TYPE: TEXT
+         */
+        public static final String COLUMN_SNIPPET_TEXT_TRANSLATED = "snippet_text_translated";
+
+        /**
+         * Search results only. Relevance of the row, the greater the better.
+         * <p>
+         * TYPE: INTEGER
+         */
+        public static final String COLUMN_SEARCH_RANK = "search_rank";
+
+        /**
+         * Markers that surround matched terms in the snippet columns.
+         */
+        public static final String SNIPPET_MATCH_START = "\u0002";
+        public static final String SNIPPET_MATCH_END = "\u0003";
+        public static final String SNIPPET_ELLIPSIS = "\u2026";
+
+        /**
+         * Optional query parameter of the {@link #CONTENT_URI}, limits the number of rows.
+         */
+        public static final String QUERY_PARAMETER_LIMIT = "limit";
+
         public static String getTranslateTextFromUri(@NonNull final Uri uri) {
             return uri.getPathSegments().get(1);
         }
@@ -216,5 +259,129 @@ public final class TranslateContract {
         public static Uri buildUriWithId(final long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
+
+        /**
+         * Builds URI for at most limit rows of history, used for paging.
+         * <p>
+         * E.g. content://com.ivanmagda.yatranslate/history?limit=50
+         */
+        public static Uri buildUriWithLimit(final int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        /**
+         * Builds URI for an exact translation lookup, that is backed by the unique
+         * (text_translate, translate_from, translate_to) index.
+         * <p>
+         * E.g. content://com.ivanmagda.yatranslate/translation/en/ru/hello
+         */
+        public static Uri buildTranslationUri(@NonNull final String text,
+                                              @NonNull final String fromLang,
+                                              @NonNull final String toLang) {
+            return BASE_CONTENT_URI.buildUpon()
+                    .appendPath(PATH_TRANSLATION)
+                    .appendPath(fromLang)
+                    .appendPath(toLang)
+                    .appendPath(text)
+                    .build();
+        }
+
+        /**
+         * Builds URI for the full-text search over history. Every word of the query is
+         * matched as a prefix, results are ordered by relevance.
+         * <p>
+         * E.g. content://com.ivanmagda.yatranslate/search/hel
+         */
+        public static Uri buildSearchUri(@NonNull final String query) {
+            return BASE_CONTENT_URI.buildUpon()
+                    .appendPath(PATH_SEARCH)
+                    .appendPath(query)
+                    .build();
+        }
+
+        public static String getQueryFromSearchUri(@NonNull final Uri uri) {
+            return uri.getPathSegments().get(1);
+        }
+
+        public static String getFromLangFromTranslationUri(@NonNull final Uri uri) {
+            return uri.getPathSegments().get(1);
+        }
+
+        public static String getToLangFromTranslationUri(@NonNull final Uri uri) {
+            return uri.getPathSegments().get(2);
+        }
+
+        public static String getTextFromTranslationUri(@NonNull final Uri uri) {
+            return uri.getPathSegments().get(3);
+        }
+    }
+
+    /**
+     * Inner class that defines the table contents of the translation cache table.
+     * <p>
+     * Cached translations are kept apart from the history: clearing the history doesn't
+     * clear the cache, and cached translations never show up in the history lists.
+     */
+    public static final class TranslationCacheEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_TRANSLATION_CACHE).build();
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of cached translations.
+         */
+        public static final String CONTENT_LIST_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE +
+                "/" + CONTENT_AUTHORITY + "/" + PATH_TRANSLATION_CACHE;
+
+        /**
+         * Table name.
+         */
+        public static final String TABLE_NAME = "translation_cache";
+
+        /**
+         * The source language key string.
+         * <p>
+         * TYPE: TEXT
+         */
+        public static final String COLUMN_LANG_TRANSLATE_FROM = "translate_from";
+
+        /**
+         * The destination language key string.
+         * <p>
+         * TYPE: TEXT
+         */
+        public static final String COLUMN_LANG_TRANSLATE_TO = "translate_to";
+
+        /**
+         * The normalized text to translate, the key of the cached translation.
+         * <p>
+         * TYPE: TEXT
+         */
+        public static final String COLUMN_TEXT_KEY = "text_key";
+
+        /**
+         * The translated texts, separated by {@link #TRANSLATIONS_SEPARATOR}.
+         * <p>
+         * TYPE: TEXT
+         */
+        public static final String COLUMN_TRANSLATIONS = "translations";
+
+        /**
+         * When the translation was received, milliseconds since the epoch.
+         * <p>
+         * TYPE: INTEGER
+         */
+        public static final String COLUMN_CREATED_AT = "created_at";
+
+        /**
+         * When the translation was read the last time, milliseconds since the epoch.
+         * <p>
+         * TYPE: INTEGER
+         */
+        public static final String COLUMN_ACCESSED_AT = "accessed_at";
+
+        public static final String TRANSLATIONS_SEPARATOR = "\u001F";
     }
 }
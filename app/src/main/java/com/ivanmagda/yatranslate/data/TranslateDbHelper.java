@@ -23,12 +23,19 @@
 package com.ivanmagda.yatranslate.data;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry;
 import static com.ivanmagda.yatranslate.data.TranslateContract.LanguageEntry;
+import static com.ivanmagda.yatranslate.data.TranslateContract.TranslationCacheEntry;
 
 /**
  * Manages a local database for translate data.
@@ -38,7 +45,8 @@ public final class TranslateDbHelper extends SQLiteOpenHelper {
     /**
      * If database schema changed, we must increment the database version.
      */
-    private static final int DATABASE_VERSION = 2;
+    @VisibleForTesting
+    static final int DATABASE_VERSION = 8;
 
     /**
      * Name of the database file.
@@ -54,6 +62,27 @@ public final class TranslateDbHelper extends SQLiteOpenHelper {
             LanguageEntry.COLUMN_TRANSLATE_TO_NAME + " TEXT NOT NULL " +
             " );";
 
+    /**
+     * Every translate direction is stored once, concurrent syncs replace the row instead of
+     * duplicating it.
+     */
+    private static final String INDEX_LANGUAGES_DIRECTION = "languages_direction_idx";
+
+    private static final String SQL_CREATE_LANGUAGES_DIRECTION_INDEX = "CREATE UNIQUE INDEX " +
+            INDEX_LANGUAGES_DIRECTION + " ON " + LanguageEntry.TABLE_NAME + " (" +
+            LanguageEntry.COLUMN_TRANSLATE_FROM_KEY + ", " +
+            LanguageEntry.COLUMN_TRANSLATE_TO_KEY +
+            ");";
+
+    /**
+     * Removes duplicated directions before creating the unique index, the latest row is kept.
+     */
+    private static final String SQL_DELETE_DUPLICATED_LANGUAGES = "DELETE FROM " +
+            LanguageEntry.TABLE_NAME + " WHERE " + LanguageEntry._ID + " NOT IN (SELECT MAX(" +
+            LanguageEntry._ID + ") FROM " + LanguageEntry.TABLE_NAME + " GROUP BY " +
+            LanguageEntry.COLUMN_TRANSLATE_FROM_KEY + ", " +
+            LanguageEntry.COLUMN_TRANSLATE_TO_KEY + ");";
+
     private static final String SQL_CREATE_HISTORY_TABLE = "CREATE TABLE " +
             HistoryEntry.TABLE_NAME + " (" +
             HistoryEntry._ID + " INTEGER PRIMARY KEY," +
@@ -65,10 +94,230 @@ public final class TranslateDbHelper extends SQLiteOpenHelper {
             HistoryEntry.COLUMN_CREATED_AT + " DATETIME DEFAULT CURRENT_TIMESTAMP " +
             " );";
 
-    private static final String SQL_DROP_LANGUAGES_TABLE =
-            "DROP TABLE IF EXISTS " + LanguageEntry.TABLE_NAME;
-    private static final String SQL_DROP_HISTORY_TABLE =
-            "DROP TABLE IF EXISTS " + HistoryEntry.TABLE_NAME;
+    /**
+     * Unique index that serves exact translation lookups before every translate request.
+     */
+    private static final String INDEX_HISTORY_TRANSLATION = "history_translation_idx";
+
+    private static final String SQL_CREATE_HISTORY_TRANSLATION_INDEX = "CREATE UNIQUE INDEX " +
+            INDEX_HISTORY_TRANSLATION + " ON " + HistoryEntry.TABLE_NAME + " (" +
+            HistoryEntry.COLUMN_TEXT_TO_TRANSLATE + ", " +
+            HistoryEntry.COLUMN_LANG_TRANSLATE_FROM + ", " +
+            HistoryEntry.COLUMN_LANG_TRANSLATE_TO +
+            ");";
+
+    /**
+     * Index that serves the keyset paged history, in the (created_at, _id) descending order.
+     */
+    private static final String INDEX_HISTORY_CREATED_AT = "history_created_at_idx";
+
+    private static final String SQL_CREATE_HISTORY_CREATED_AT_INDEX = "CREATE INDEX " +
+            INDEX_HISTORY_CREATED_AT + " ON " + HistoryEntry.TABLE_NAME + " (" +
+            HistoryEntry.COLUMN_CREATED_AT + " DESC, " +
+            HistoryEntry._ID + " DESC" +
+            ");";
+
+    /**
+     * Every translation is cached once per text and direction, the latest one replaces it.
+     */
+    private static final String SQL_CREATE_TRANSLATION_CACHE_TABLE = "CREATE TABLE " +
+            TranslationCacheEntry.TABLE_NAME + " (" +
+            TranslationCacheEntry._ID + " INTEGER PRIMARY KEY," +
+            TranslationCacheEntry.COLUMN_LANG_TRANSLATE_FROM + " TEXT NOT NULL, " +
+            TranslationCacheEntry.COLUMN_LANG_TRANSLATE_TO + " TEXT NOT NULL, " +
+            TranslationCacheEntry.COLUMN_TEXT_KEY + " TEXT NOT NULL, " +
+            TranslationCacheEntry.COLUMN_TRANSLATIONS + " TEXT NOT NULL, " +
+            TranslationCacheEntry.COLUMN_CREATED_AT + " INTEGER NOT NULL, " +
+            TranslationCacheEntry.COLUMN_ACCESSED_AT + " INTEGER NOT NULL, " +
+            "UNIQUE (" + TranslationCacheEntry.COLUMN_TEXT_KEY + ", " +
+            TranslationCacheEntry.COLUMN_LANG_TRANSLATE_FROM + ", " +
+            TranslationCacheEntry.COLUMN_LANG_TRANSLATE_TO + ") ON CONFLICT REPLACE" +
+            " );";
+
+    /**
+     * Serves the eviction of the least recently used translations.
+     */
+    private static final String INDEX_TRANSLATION_CACHE_ACCESSED_AT =
+            "translation_cache_accessed_at_idx";
+
+    private static final String SQL_CREATE_TRANSLATION_CACHE_ACCESSED_AT_INDEX = "CREATE INDEX " +
+            INDEX_TRANSLATION_CACHE_ACCESSED_AT + " ON " + TranslationCacheEntry.TABLE_NAME + " (" +
+            TranslationCacheEntry.COLUMN_ACCESSED_AT +
+            ");";
+
+    /**
+     * Removes duplicated translations before creating the unique index.
+     * For every text and direction keeps the favorite row, and then the most recent one.
+     */
+    private static final String SQL_DELETE_DUPLICATED_TRANSLATIONS = "DELETE FROM " +
+            HistoryEntry.TABLE_NAME + " WHERE EXISTS (SELECT 1 FROM " +
+            HistoryEntry.TABLE_NAME + " other WHERE " +
+            "other." + HistoryEntry.COLUMN_TEXT_TO_TRANSLATE + " = " +
+            HistoryEntry.TABLE_NAME + "." + HistoryEntry.COLUMN_TEXT_TO_TRANSLATE + " AND " +
+            "other." + HistoryEntry.COLUMN_LANG_TRANSLATE_FROM + " = " +
+            HistoryEntry.TABLE_NAME + "." + HistoryEntry.COLUMN_LANG_TRANSLATE_FROM + " AND " +
+            "other." + HistoryEntry.COLUMN_LANG_TRANSLATE_TO + " = " +
+            HistoryEntry.TABLE_NAME + "." + HistoryEntry.COLUMN_LANG_TRANSLATE_TO + " AND " +
+            "(other." + HistoryEntry.COLUMN_FAVORITE + " > " +
+            HistoryEntry.TABLE_NAME + "." + HistoryEntry.COLUMN_FAVORITE + " OR " +
+            "(other." + HistoryEntry.COLUMN_FAVORITE + " = " +
+            HistoryEntry.TABLE_NAME + "." + HistoryEntry.COLUMN_FAVORITE + " AND " +
+            "other." + HistoryEntry._ID + " > " + HistoryEntry.TABLE_NAME + "." + HistoryEntry._ID +
+            ")));";
+
+    /**
+     * External content FTS4 table: only the full-text index is stored, texts are read
+     * from the history table.
+     */
+    private static final String SQL_CREATE_HISTORY_FTS_TABLE = "CREATE VIRTUAL TABLE " +
+            HistoryEntry.FTS_TABLE_NAME + " USING fts4(" +
+            "content=\"" + HistoryEntry.TABLE_NAME + "\", " +
+            HistoryEntry.COLUMN_TEXT_TO_TRANSLATE + ", " +
+            HistoryEntry.COLUMN_TEXT_TRANSLATED +
+            ");";
+
+    /**
+     * Triggers that keep the full-text index in sync with the history table.
+     * Old index entries must be removed before the content row changes. Rows that are
+     * waiting for the {@link HistoryFtsBackfill} are skipped.
+     */
+    private static final String[] HISTORY_FTS_TRIGGERS = {
+            "history_fts_before_update",
+            "history_fts_before_delete",
+            "history_fts_after_update",
+            "history_fts_after_insert"
+    };
+
+    private static final String[] SQL_CREATE_HISTORY_FTS_TRIGGERS = {
+            "CREATE TRIGGER " + HISTORY_FTS_TRIGGERS[0] + " BEFORE UPDATE OF " +
+                    HistoryEntry.COLUMN_TEXT_TO_TRANSLATE + ", " +
+                    HistoryEntry.COLUMN_TEXT_TRANSLATED + " ON " + HistoryEntry.TABLE_NAME +
+                    " WHEN " + HistoryFtsBackfill.sqlIndexedRowCondition("old") +
+                    " BEGIN " + sqlDeleteFromHistoryFts() + " END;",
+            "CREATE TRIGGER " + HISTORY_FTS_TRIGGERS[1] + " BEFORE DELETE ON " +
+                    HistoryEntry.TABLE_NAME +
+                    " WHEN " + HistoryFtsBackfill.sqlIndexedRowCondition("old") +
+                    " BEGIN " + sqlDeleteFromHistoryFts() + " END;",
+            "CREATE TRIGGER " + HISTORY_FTS_TRIGGERS[2] + " AFTER UPDATE OF " +
+                    HistoryEntry.COLUMN_TEXT_TO_TRANSLATE + ", " +
+                    HistoryEntry.COLUMN_TEXT_TRANSLATED + " ON " + HistoryEntry.TABLE_NAME +
+                    " WHEN " + HistoryFtsBackfill.sqlIndexedRowCondition("new") +
+                    " BEGIN " + sqlInsertIntoHistoryFts() + " END;",
+            "CREATE TRIGGER " + HISTORY_FTS_TRIGGERS[3] + " AFTER INSERT ON " +
+                    HistoryEntry.TABLE_NAME +
+                    " WHEN " + HistoryFtsBackfill.sqlIndexedRowCondition("new") +
+                    " BEGIN " + sqlInsertIntoHistoryFts() + " END;"
+    };
+
+    /**
+     * Schema migrations from the released versions. Version 2 is the last released one, the
+     * versions up to the current one were never released, so it's upgraded in a single step.
+     * Databases of the other versions are recreated.
+     */
+    private static final Migration[] MIGRATIONS = {
+            new Migration(2, 8) {
+                @Override
+                void migrate(SQLiteDatabase sqLiteDatabase) {
+                    sqLiteDatabase.execSQL(SQL_DELETE_DUPLICATED_LANGUAGES);
+                    sqLiteDatabase.execSQL(SQL_CREATE_LANGUAGES_DIRECTION_INDEX);
+
+                    sqLiteDatabase.execSQL(SQL_DELETE_DUPLICATED_TRANSLATIONS);
+                    sqLiteDatabase.execSQL(SQL_CREATE_HISTORY_TRANSLATION_INDEX);
+                    sqLiteDatabase.execSQL(SQL_CREATE_HISTORY_CREATED_AT_INDEX);
+
+                    // Existing history is indexed in the background after the upgrade.
+                    HistoryFtsBackfill.schedule(sqLiteDatabase);
+                    sqLiteDatabase.execSQL(SQL_CREATE_HISTORY_FTS_TABLE);
+                    createHistoryFtsTriggers(sqLiteDatabase);
+
+                    createTranslationCache(sqLiteDatabase);
+                }
+            }
+    };
+
+    /**
+     * Single schema upgrade step.
+     */
+    private static abstract class Migration {
+        final int startVersion;
+        final int endVersion;
+
+        Migration(int startVersion, int endVersion) {
+            this.startVersion = startVersion;
+            this.endVersion = endVersion;
+        }
+
+        abstract void migrate(SQLiteDatabase sqLiteDatabase);
+    }
+
+    /* Dropping a table drops its indexes and triggers as well. */
+    private static final String[] SQL_DROP_TABLES = {
+            "DROP TABLE IF EXISTS " + LanguageEntry.TABLE_NAME,
+            "DROP TABLE IF EXISTS " + HistoryEntry.TABLE_NAME,
+            "DROP TABLE IF EXISTS " + HistoryEntry.FTS_TABLE_NAME,
+            "DROP TABLE IF EXISTS " + HistoryFtsBackfill.TABLE_NAME,
+            "DROP TABLE IF EXISTS " + TranslationCacheEntry.TABLE_NAME
+    };
+
+    /**
+     * Connection pragmas, applied every time the database is opened.
+     * <p>
+     * Pragmas are per connection, but the framework offers no hook for the connections of
+     * the WAL reader pool, so they are applied to the primary connection only. It runs all
+     * of the writes and the reads inside of the write transactions, e.g. upsert lookups and
+     * the FTS backfill. The reader connections of the loaders keep the SQLite defaults.
+     */
+    public static final class Pragmas {
+
+        /* PRAGMA synchronous levels. */
+        public static final int SYNCHRONOUS_OFF = 0;
+        public static final int SYNCHRONOUS_NORMAL = 1;
+        public static final int SYNCHRONOUS_FULL = 2;
+
+        /**
+         * NORMAL is durable enough in WAL mode, only the last commits could be lost on a power
+         * failure. 2 MiB page cache, 8 MiB memory-mapped I/O where it's supported.
+         */
+        public static final Pragmas DEFAULT = new Pragmas(SYNCHRONOUS_NORMAL, 2048, 8 * 1024 * 1024);
+
+        /**
+         * Only affects the commits, so applies in full.
+         */
+        public final int synchronous;
+
+        /**
+         * Page cache size in KiB of the primary connection, 0 keeps the SQLite default.
+         */
+        public final int cacheSizeKib;
+
+        /**
+         * Memory-mapped I/O size in bytes of the primary connection, 0 disables it.
+         * Applied on Lollipop and later only, the earlier bundled SQLite versions don't
+         * support it.
+         */
+        public final long mmapSizeBytes;
+
+        public Pragmas(int synchronous, int cacheSizeKib, long mmapSizeBytes) {
+            if (synchronous < SYNCHRONOUS_OFF || synchronous > SYNCHRONOUS_FULL) {
+                throw new IllegalArgumentException("Unknown synchronous level: " + synchronous);
+            }
+            if (cacheSizeKib < 0) {
+                throw new IllegalArgumentException("cacheSizeKib < 0: " + cacheSizeKib);
+            }
+            if (mmapSizeBytes < 0) {
+                throw new IllegalArgumentException("mmapSizeBytes < 0: " + mmapSizeBytes);
+            }
+
+            this.synchronous = synchronous;
+            this.cacheSizeKib = cacheSizeKib;
+            this.mmapSizeBytes = mmapSizeBytes;
+        }
+    }
+
+    private final Pragmas mPragmas;
+
+    /* Backfill is started once, on the first writable open. */
+    private boolean mBackfillStarted;
 
     /**
      * Constructs a new instance of {@link SQLiteOpenHelper}.
@@ -76,7 +325,47 @@ public final class TranslateDbHelper extends SQLiteOpenHelper {
      * @param context of the app
      */
     public TranslateDbHelper(@NonNull final Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, Pragmas.DEFAULT);
+    }
+
+    /**
+     * @param context of the app
+     * @param pragmas Connection pragmas to apply.
+     */
+    public TranslateDbHelper(@NonNull final Context context, @NonNull final Pragmas pragmas) {
+        this(context, DATABASE_NAME, pragmas);
+    }
+
+    /**
+     * @param name Name of the database file, tests use their own.
+     */
+    @VisibleForTesting
+    TranslateDbHelper(@NonNull final Context context, @NonNull final String name,
+                      @NonNull final Pragmas pragmas) {
+        super(context, name, null, DATABASE_VERSION);
+        this.mPragmas = pragmas;
+    }
+
+    /**
+     * Enables write-ahead logging, so loaders could read while history and languages are being
+     * written. In WAL mode the framework also keeps a pool of reader connections.
+     * The {@link Pragmas} are applied to the primary connection only, see there.
+     *
+     * @param sqLiteDatabase The database.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase sqLiteDatabase) {
+        super.onConfigure(sqLiteDatabase);
+        sqLiteDatabase.enableWriteAheadLogging();
+
+        setPragma(sqLiteDatabase, "synchronous", mPragmas.synchronous);
+        if (mPragmas.cacheSizeKib > 0) {
+            // Negative value is the size in KiB, instead of pages.
+            setPragma(sqLiteDatabase, "cache_size", -mPragmas.cacheSizeKib);
+        }
+        if (mPragmas.mmapSizeBytes > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            setPragma(sqLiteDatabase, "mmap_size", mPragmas.mmapSizeBytes);
+        }
     }
 
     /**
@@ -88,15 +377,33 @@ public final class TranslateDbHelper extends SQLiteOpenHelper {
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
         sqLiteDatabase.execSQL(SQL_CREATE_LANGUAGES_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_LANGUAGES_DIRECTION_INDEX);
         sqLiteDatabase.execSQL(SQL_CREATE_HISTORY_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_HISTORY_TRANSLATION_INDEX);
+        sqLiteDatabase.execSQL(SQL_CREATE_HISTORY_CREATED_AT_INDEX);
+        createHistoryFts(sqLiteDatabase);
+        createTranslationCache(sqLiteDatabase);
     }
 
     /**
-     * This database is for a cache of the online data and user history,
-     * so its upgrade policy is simply to discard the data of the languages table
-     * and call through to onCreate to recreate the table.
-     * While we in a development we could simply drop tables, but for a production we need to
-     * write migrations for history table.
+     * Starts indexing the history rows left by an upgrade, if there are any.
+     *
+     * @param sqLiteDatabase The database.
+     */
+    @Override
+    public void onOpen(SQLiteDatabase sqLiteDatabase) {
+        super.onOpen(sqLiteDatabase);
+
+        if (!sqLiteDatabase.isReadOnly() && !mBackfillStarted) {
+            mBackfillStarted = true;
+            HistoryFtsBackfill.runAsync(this);
+        }
+    }
+
+    /**
+     * This database is for a cache of the online data and user history.
+     * Released versions are migrated in place by the {@link #MIGRATIONS}, databases of
+     * the other versions are simply dropped and recreated.
      * <p>
      * This only fires we change the version number database (in our case, DATABASE_VERSION).
      *
@@ -106,8 +413,78 @@ public final class TranslateDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        sqLiteDatabase.execSQL(SQL_DROP_LANGUAGES_TABLE);
-        sqLiteDatabase.execSQL(SQL_DROP_HISTORY_TABLE);
-        onCreate(sqLiteDatabase);
+        List<Migration> migrations = findMigrations(oldVersion, newVersion);
+        if (migrations == null) {
+            for (String aDropTable : SQL_DROP_TABLES) {
+                sqLiteDatabase.execSQL(aDropTable);
+            }
+            onCreate(sqLiteDatabase);
+            return;
+        }
+
+        for (Migration aMigration : migrations) {
+            aMigration.migrate(sqLiteDatabase);
+        }
+    }
+
+    /**
+     * @return Ordered migrations from the old version to the new one, null if there is no path.
+     */
+    private static List<Migration> findMigrations(int oldVersion, int newVersion) {
+        List<Migration> migrations = new ArrayList<>(MIGRATIONS.length);
+
+        int version = oldVersion;
+        for (Migration aMigration : MIGRATIONS) {
+            if (aMigration.startVersion == version && aMigration.endVersion <= newVersion) {
+                migrations.add(aMigration);
+                version = aMigration.endVersion;
+            }
+        }
+
+        return version == newVersion ? migrations : null;
+    }
+
+    /**
+     * Some pragmas return the new value as a row, so they are executed as queries.
+     * Outside of a transaction the statement is prepared on the primary connection,
+     * SQLite applies these pragmas while preparing.
+     */
+    private static void setPragma(SQLiteDatabase sqLiteDatabase, String name, long value) {
+        Cursor cursor = sqLiteDatabase.rawQuery("PRAGMA " + name + " = " + value, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void createHistoryFts(SQLiteDatabase sqLiteDatabase) {
+        HistoryFtsBackfill.createTable(sqLiteDatabase);
+        sqLiteDatabase.execSQL(SQL_CREATE_HISTORY_FTS_TABLE);
+        createHistoryFtsTriggers(sqLiteDatabase);
+    }
+
+    private static void createHistoryFtsTriggers(SQLiteDatabase sqLiteDatabase) {
+        for (String aTrigger : SQL_CREATE_HISTORY_FTS_TRIGGERS) {
+            sqLiteDatabase.execSQL(aTrigger);
+        }
+    }
+
+    private static void createTranslationCache(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL(SQL_CREATE_TRANSLATION_CACHE_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_TRANSLATION_CACHE_ACCESSED_AT_INDEX);
+    }
+
+    private static String sqlDeleteFromHistoryFts() {
+        return "DELETE FROM " + HistoryEntry.FTS_TABLE_NAME +
+                " WHERE docid = old." + HistoryEntry._ID + ";";
+    }
+
+    private static String sqlInsertIntoHistoryFts() {
+        return "INSERT INTO " + HistoryEntry.FTS_TABLE_NAME + "(docid, " +
+                HistoryEntry.COLUMN_TEXT_TO_TRANSLATE + ", " +
+                HistoryEntry.COLUMN_TEXT_TRANSLATED + ") VALUES (new." + HistoryEntry._ID + ", " +
+                "new." + HistoryEntry.COLUMN_TEXT_TO_TRANSLATE + ", " +
+                "new." + HistoryEntry.COLUMN_TEXT_TRANSLATED + ");";
     }
 }
@@ -29,10 +29,9 @@ import android.support.annotation.NonNull;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
+import android.support.v7.util.DiffUtil;
 import android.text.TextUtils;
 
-import com.ivanmagda.yatranslate.fragment.BookmarkListFragment;
-
 import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry;
 
 public final class TranslateHistoryLoader implements LoaderManager.LoaderCallbacks<Cursor> {
@@ -45,12 +44,18 @@ public final class TranslateHistoryLoader implements LoaderManager.LoaderCallbac
 
     private final Context mContext;
     private final CallbacksListener mCallbacksListener;
-    private final BookmarkListFragment.ContentFilter mContentFilter;
+    private final ContentFilter mContentFilter;
 
     private String mQueryText = null;
 
+    /**
+     * Keys of the delivered results, the next results are diffed against them.
+     * Written on the main thread, read on the loader thread.
+     */
+    private volatile HistoryRowKeys mDeliveredRowKeys = null;
+
     public TranslateHistoryLoader(@NonNull final Context context,
-                                  @NonNull final BookmarkListFragment.ContentFilter contentFilter,
+                                  @NonNull final ContentFilter contentFilter,
                                   @NonNull final CallbacksListener callbacksListener) {
         this.mContext = context;
         this.mContentFilter = contentFilter;
@@ -70,19 +75,21 @@ public final class TranslateHistoryLoader implements LoaderManager.LoaderCallbac
         /* URI for all rows of translate history data in our history table */
         Uri historyQueryUri;
 
+        /* Sort order: Descending by creation date, search results are sorted by relevance */
+        String sortOrder;
+
         if (!TextUtils.isEmpty(mQueryText)) {
-            historyQueryUri = HistoryEntry.buildUriWithText(mQueryText);
+            historyQueryUri = HistoryEntry.buildSearchUri(mQueryText);
+            sortOrder = null;
         } else {
             historyQueryUri = HistoryEntry.CONTENT_URI;
+            sortOrder = HistoryEntry.COLUMN_CREATED_AT + " DESC";
         }
 
-        /* Sort order: Descending by creation date */
-        String sortOrder = HistoryEntry.COLUMN_CREATED_AT + " DESC";
-
         /*A SELECTION that declares which rows we'd like to return. */
         String selection = null;
 
-        if (mContentFilter == BookmarkListFragment.ContentFilter.FAVORITE) {
+        if (mContentFilter == ContentFilter.FAVORITE) {
             selection = HistoryEntry.COLUMN_FAVORITE + " == 1";
         }
 
@@ -93,16 +100,34 @@ public final class TranslateHistoryLoader implements LoaderManager.LoaderCallbac
                 selection,
                 null,
                 sortOrder
-        );
+        ) {
+            @Override
+            public Cursor loadInBackground() {
+                Cursor cursor = super.loadInBackground();
+                if (cursor == null) return null;
+
+                HistoryRowKeys diffBase = mDeliveredRowKeys;
+                HistoryRows rows = HistoryRows.from(cursor);
+                DiffUtil.DiffResult diffResult = diffBase == null
+                        ? null
+                        : HistoryRowKeys.diff(diffBase, rows.getRowKeys());
+
+                return new HistoryCursor(cursor, rows, diffBase, diffResult);
+            }
+        };
     }
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+        mDeliveredRowKeys = data instanceof HistoryCursor
+                ? ((HistoryCursor) data).getRowKeys()
+                : null;
         mCallbacksListener.onHistoryLoadFinished(data);
     }
 
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
+        mDeliveredRowKeys = null;
         mCallbacksListener.onHistoryLoaderReset();
     }
 }
@@ -1,21 +1,37 @@
 package com.ivanmagda.yatranslate.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.os.CancellationSignal;
 import android.support.annotation.NonNull;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 import static com.ivanmagda.yatranslate.data.TranslateContract.CONTENT_AUTHORITY;
 import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry;
 import static com.ivanmagda.yatranslate.data.TranslateContract.LanguageEntry;
 import static com.ivanmagda.yatranslate.data.TranslateContract.PATH_HISTORY;
 import static com.ivanmagda.yatranslate.data.TranslateContract.PATH_LANGUAGES;
+import static com.ivanmagda.yatranslate.data.TranslateContract.PATH_SEARCH;
+import static com.ivanmagda.yatranslate.data.TranslateContract.PATH_TRANSLATION;
+import static com.ivanmagda.yatranslate.data.TranslateContract.PATH_TRANSLATION_CACHE;
+import static com.ivanmagda.yatranslate.data.TranslateContract.TranslationCacheEntry;
 
 /**
  * {@link ContentProvider} for YaTranslate app.
@@ -52,6 +68,22 @@ public class TranslateProvider extends ContentProvider {
      */
     private static final int HISTORY_WITH_TEXT = 202;
 
+    /**
+     * URI matcher code for the content URI for a history item with exactly the same text
+     * and translate direction.
+     */
+    private static final int HISTORY_TRANSLATION = 203;
+
+    /**
+     * URI matcher code for the content URI for the full-text search over the history table.
+     */
+    private static final int HISTORY_SEARCH = 204;
+
+    /**
+     * Cached translations, selection and arguments are passed through.
+     */
+    private static final int TRANSLATION_CACHE = 300;
+
     /**
      * UriMatcher object to match a content URI to a corresponding code.
      * The input passed into the constructor represents the code to return for the root URI.
@@ -68,6 +100,10 @@ public class TranslateProvider extends ContentProvider {
         sUriMatcher.addURI(CONTENT_AUTHORITY, PATH_HISTORY, HISTORY);
         sUriMatcher.addURI(CONTENT_AUTHORITY, PATH_HISTORY + "/#", HISTORY_ID);
         sUriMatcher.addURI(CONTENT_AUTHORITY, PATH_HISTORY + "/*", HISTORY_WITH_TEXT);
+        sUriMatcher.addURI(CONTENT_AUTHORITY, PATH_TRANSLATION + "/*/*/*", HISTORY_TRANSLATION);
+        sUriMatcher.addURI(CONTENT_AUTHORITY, PATH_SEARCH + "/*", HISTORY_SEARCH);
+
+        sUriMatcher.addURI(CONTENT_AUTHORITY, PATH_TRANSLATION_CACHE, TRANSLATION_CACHE);
     }
 
     /**
@@ -75,6 +111,18 @@ public class TranslateProvider extends ContentProvider {
      */
     private TranslateDbHelper mTranslateDbHelper;
 
+    /**
+     * Change notifications collected while applying a batch on the current thread,
+     * null outside of a batch.
+     */
+    private final ThreadLocal<Set<Uri>> mBatchNotifications = new ThreadLocal<>();
+
+    /**
+     * History upserter shared by the inserts of the batch on the current thread,
+     * null outside of a batch.
+     */
+    private final ThreadLocal<HistoryUpserter> mBatchHistoryUpserter = new ThreadLocal<>();
+
     @SuppressWarnings("ConstantConditions")
     @Override
     public boolean onCreate() {
@@ -85,21 +133,32 @@ public class TranslateProvider extends ContentProvider {
     @Override
     public Cursor query(@NonNull Uri uri, String[] projection, String selection,
                         String[] selectionArgs, String sortOrder) {
+        return query(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * Supports cancellation, so CursorLoader could abort stale queries (e.g. search queries,
+     * that were outdated by the next typed character).
+     */
+    @Override
+    public Cursor query(@NonNull Uri uri, String[] projection, String selection,
+                        String[] selectionArgs, String sortOrder,
+                        CancellationSignal cancellationSignal) {
         SQLiteDatabase database = mTranslateDbHelper.getReadableDatabase();
         Cursor cursor;
 
         int match = sUriMatcher.match(uri);
         switch (match) {
             case LANGUAGES:
-                cursor = database.query(LanguageEntry.TABLE_NAME, projection, selection,
-                        selectionArgs, null, null, sortOrder);
+                cursor = database.query(false, LanguageEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder, null, cancellationSignal);
                 break;
             case LANGUAGE_ID:
                 selection = LanguageEntry._ID + "=?";
                 selectionArgs = new String[]{idStringFrom(uri)};
 
-                cursor = database.query(LanguageEntry.TABLE_NAME, projection, selection,
-                        selectionArgs, null, null, sortOrder);
+                cursor = database.query(false, LanguageEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder, null, cancellationSignal);
 
                 break;
             case LANGUAGE_WITH_TEXT:
@@ -110,20 +169,20 @@ public class TranslateProvider extends ContentProvider {
                         LanguageEntry.COLUMN_TRANSLATE_TO_KEY + " LIKE ?";
                 selectionArgs = new String[]{langKeyArg, langKeyArg};
 
-                cursor = database.query(LanguageEntry.TABLE_NAME, projection, selection,
-                        selectionArgs, null, null, sortOrder);
+                cursor = database.query(false, LanguageEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder, null, cancellationSignal);
 
                 break;
             case HISTORY:
-                cursor = database.query(HistoryEntry.TABLE_NAME, projection, selection,
-                        selectionArgs, null, null, sortOrder);
+                cursor = database.query(false, HistoryEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder, limitFrom(uri), cancellationSignal);
                 break;
             case HISTORY_ID:
                 selection = HistoryEntry._ID + "=?";
                 selectionArgs = new String[]{idStringFrom(uri)};
 
-                cursor = database.query(HistoryEntry.TABLE_NAME, projection, selection,
-                        selectionArgs, null, null, sortOrder);
+                cursor = database.query(false, HistoryEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder, null, cancellationSignal);
 
                 break;
             case HISTORY_WITH_TEXT:
@@ -134,10 +193,39 @@ public class TranslateProvider extends ContentProvider {
                         HistoryEntry.COLUMN_TEXT_TRANSLATED + " LIKE ?";
                 selectionArgs = new String[]{textArg, textArg};
 
-                cursor = database.query(HistoryEntry.TABLE_NAME, projection, selection,
-                        selectionArgs, null, null, sortOrder);
+                cursor = database.query(false, HistoryEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder, null, cancellationSignal);
+
+                break;
+            case HISTORY_TRANSLATION:
+                // Exact match, served by the unique translation index.
+                selection = HistoryEntry.COLUMN_TEXT_TO_TRANSLATE + "=? AND " +
+                        HistoryEntry.COLUMN_LANG_TRANSLATE_FROM + "=? AND " +
+                        HistoryEntry.COLUMN_LANG_TRANSLATE_TO + "=?";
+                selectionArgs = new String[]{
+                        HistoryEntry.getTextFromTranslationUri(uri),
+                        HistoryEntry.getFromLangFromTranslationUri(uri),
+                        HistoryEntry.getToLangFromTranslationUri(uri)
+                };
+
+                cursor = database.query(false, HistoryEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, null, null, cancellationSignal);
+
+                // History changes are notified on the history URI, listen to them.
+                uri = HistoryEntry.CONTENT_URI;
 
                 break;
+            case HISTORY_SEARCH:
+                cursor = searchHistory(database, HistoryEntry.getQueryFromSearchUri(uri),
+                        selection, selectionArgs, sortOrder, cancellationSignal);
+                uri = HistoryEntry.CONTENT_URI;
+
+                break;
+            case TRANSLATION_CACHE:
+                cursor = database.query(false, TranslationCacheEntry.TABLE_NAME, projection,
+                        selection, selectionArgs, null, null, sortOrder, null,
+                        cancellationSignal);
+                break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -158,9 +246,13 @@ public class TranslateProvider extends ContentProvider {
             case LANGUAGE_ID:
                 return LanguageEntry.CONTENT_ITEM_TYPE;
             case HISTORY:
+            case HISTORY_SEARCH:
                 return HistoryEntry.CONTENT_LIST_TYPE;
             case HISTORY_ID:
+            case HISTORY_TRANSLATION:
                 return HistoryEntry.CONTENT_ITEM_TYPE;
+            case TRANSLATION_CACHE:
+                return TranslationCacheEntry.CONTENT_LIST_TYPE;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -168,23 +260,34 @@ public class TranslateProvider extends ContentProvider {
 
     @Override
     public Uri insert(@NonNull Uri uri, ContentValues values) {
+        String tableName;
         switch (sUriMatcher.match(uri)) {
+            case TRANSLATION_CACHE:
+                return insertIntoTranslationCache(uri, values);
+            case LANGUAGES:
+                tableName = LanguageEntry.TABLE_NAME;
+                break;
             case HISTORY:
-                SQLiteDatabase database = mTranslateDbHelper.getWritableDatabase();
-                long id = database.insert(HistoryEntry.TABLE_NAME, null, values);
-
-                if (id > 0) {
-                    // Notify all listeners that the data has changed for the content URI.
-                    notifyChangeWithUri(uri);
-
-                    // Return the new URI with the ID (of the newly inserted row) appended at the end.
-                    return ContentUris.withAppendedId(uri, id);
-                } else {
-                    throw new SQLException("Failed to insert row into " + uri);
-                }
+                tableName = HistoryEntry.TABLE_NAME;
+                break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
+
+        SQLiteDatabase database = mTranslateDbHelper.getWritableDatabase();
+        long id = HistoryEntry.TABLE_NAME.equals(tableName)
+                ? upsertHistory(database, values)
+                : replaceLanguage(database, values);
+
+        if (id > 0) {
+            // Notify all listeners that the data has changed for the content URI.
+            notifyChangeWithUri(uri);
+
+            // Return the new URI with the ID (of the newly inserted row) appended at the end.
+            return ContentUris.withAppendedId(uri, id);
+        } else {
+            throw new SQLException("Failed to insert row into " + uri);
+        }
     }
 
     @Override
@@ -211,6 +314,10 @@ public class TranslateProvider extends ContentProvider {
                 selectionArgs = new String[]{idStringFrom(uri)};
                 rowsDeleted = database.delete(HistoryEntry.TABLE_NAME, selection, selectionArgs);
                 break;
+            case TRANSLATION_CACHE:
+                // Nothing observes the cache, it's read on demand.
+                return database.delete(TranslationCacheEntry.TABLE_NAME, selection,
+                        selectionArgs);
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -241,37 +348,241 @@ public class TranslateProvider extends ContentProvider {
                 }
 
                 return rowsUpdated;
+            case TRANSLATION_CACHE:
+                return mTranslateDbHelper.getWritableDatabase().update(
+                        TranslationCacheEntry.TABLE_NAME, values, selection, selectionArgs);
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
     }
 
+    /**
+     * Inserts all of the rows in a single transaction with a single change notification.
+     * History rows are upserted by the {@link HistoryUpserter}, languages replace the stored rows
+     * of the same direction.
+     */
     @Override
     public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
-        switch (sUriMatcher.match(uri)) {
-            case LANGUAGES:
-                final SQLiteDatabase database = mTranslateDbHelper.getWritableDatabase();
-                database.beginTransaction();
-
-                int returnCount = 0;
-                try {
-                    for (ContentValues value : values) {
-                        long _id = database.insert(LanguageEntry.TABLE_NAME, null, value);
-                        if (_id != -1) {
-                            returnCount++;
-                        }
-                    }
-                    database.setTransactionSuccessful();
-                } finally {
-                    database.endTransaction();
+        int match = sUriMatcher.match(uri);
+        if (match != LANGUAGES && match != HISTORY) {
+            return super.bulkInsert(uri, values);
+        }
+
+        final SQLiteDatabase database = mTranslateDbHelper.getWritableDatabase();
+        HistoryUpserter historyUpserter = match == HISTORY ? new HistoryUpserter(database) : null;
+        database.beginTransaction();
+
+        int returnCount = 0;
+        try {
+            for (ContentValues value : values) {
+                boolean isStored = historyUpserter != null
+                        ? historyUpserter.write(value)
+                        : replaceLanguage(database, value) != -1;
+                if (isStored) {
+                    returnCount++;
                 }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            if (historyUpserter != null) {
+                historyUpserter.close();
+            }
+        }
 
-                notifyChangeWithUri(uri);
+        if (returnCount > 0) {
+            notifyChangeWithUri(uri);
+        }
 
-                return returnCount;
-            default:
-                return super.bulkInsert(uri, values);
+        return returnCount;
+    }
+
+    /**
+     * Upserts the history row with the upserter of the current batch, if there is one.
+     *
+     * @return Row id of the inserted or existing row, -1 on failure.
+     */
+    private long upsertHistory(SQLiteDatabase database, ContentValues values) {
+        HistoryUpserter batchUpserter = mBatchHistoryUpserter.get();
+        if (batchUpserter != null) {
+            return batchUpserter.upsert(values);
+        }
+
+        HistoryUpserter historyUpserter = new HistoryUpserter(database);
+        try {
+            return historyUpserter.upsert(values);
+        } finally {
+            historyUpserter.close();
+        }
+    }
+
+    /**
+     * Inserts the language or replaces the stored row of the same translate direction, so
+     * the concurrent syncs don't duplicate the directions.
+     *
+     * @return Row id of the inserted row, -1 on failure.
+     */
+    private static long replaceLanguage(SQLiteDatabase database, ContentValues values) {
+        return database.insertWithOnConflict(LanguageEntry.TABLE_NAME, null, values,
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Applies all of the operations in a single transaction. Change notifications are
+     * deferred until the transaction is committed and sent once per table. History inserts
+     * reuse the compiled statements of a single {@link HistoryUpserter}.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase database = mTranslateDbHelper.getWritableDatabase();
+        Set<Uri> notifications = new LinkedHashSet<>();
+
+        HistoryUpserter historyUpserter = new HistoryUpserter(database);
+
+        ContentProviderResult[] results;
+        mBatchNotifications.set(notifications);
+        mBatchHistoryUpserter.set(historyUpserter);
+        database.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            mBatchNotifications.remove();
+            mBatchHistoryUpserter.remove();
+            historyUpserter.close();
+        }
+
+        for (Uri anUri : notifications) {
+            notifyChangeWithUri(anUri);
+        }
+
+        return results;
+    }
+
+    /**
+     * Full-text search over the history texts.
+     * <p>
+     * Every word of the query is matched as a prefix. Rows are ranked by the number of
+     * matched terms, then by creation date. Additional selection must reference only
+     * the history table columns.
+     */
+    private Cursor searchHistory(SQLiteDatabase database, String query, String selection,
+                                 String[] selectionArgs, String sortOrder,
+                                 CancellationSignal cancellationSignal) {
+        String matchQuery = buildFtsMatchQuery(query);
+        if (matchQuery == null) {
+            return database.query(false, HistoryEntry.TABLE_NAME, null, selection, selectionArgs,
+                    null, null, HistoryEntry.COLUMN_CREATED_AT + " DESC", null, cancellationSignal);
+        }
+
+        // offsets() returns 4 integers per matched term.
+        String offsets = "offsets(" + HistoryEntry.FTS_TABLE_NAME + ")";
+        String rank = "((length(" + offsets + ") - length(replace(" + offsets + ", ' ', '')) + 1) / 4)";
+        String snippet = "snippet(" + HistoryEntry.FTS_TABLE_NAME + ", ?, ?, ?, %d, 32)";
+
+        StringBuilder sql = new StringBuilder(512)
+                .append("SELECT h.*, ")
+                .append(String.format(Locale.US, snippet, 0)).append(" AS ")
+                .append(HistoryEntry.COLUMN_SNIPPET_TEXT_TO_TRANSLATE).append(", ")
+                .append(String.format(Locale.US, snippet, 1)).append(" AS ")
+                .append(HistoryEntry.COLUMN_SNIPPET_TEXT_TRANSLATED).append(", ")
+                .append(rank).append(" AS ").append(HistoryEntry.COLUMN_SEARCH_RANK)
+                .append(" FROM ").append(HistoryEntry.FTS_TABLE_NAME)
+                .append(" JOIN ").append(HistoryEntry.TABLE_NAME).append(" h ON h.")
+                .append(HistoryEntry._ID).append(" = ").append(HistoryEntry.FTS_TABLE_NAME)
+                .append(".docid WHERE ").append(HistoryEntry.FTS_TABLE_NAME).append(" MATCH ?");
+
+        if (!TextUtils.isEmpty(selection)) {
+            sql.append(" AND (").append(selection).append(")");
+        }
+
+        sql.append(" ORDER BY ").append(TextUtils.isEmpty(sortOrder)
+                ? HistoryEntry.COLUMN_SEARCH_RANK + " DESC, h." + HistoryEntry.COLUMN_CREATED_AT + " DESC"
+                : sortOrder);
+
+        List<String> args = new ArrayList<>(8);
+        for (int i = 0; i < 2; i++) {
+            args.add(HistoryEntry.SNIPPET_MATCH_START);
+            args.add(HistoryEntry.SNIPPET_MATCH_END);
+            args.add(HistoryEntry.SNIPPET_ELLIPSIS);
         }
+        args.add(matchQuery);
+        if (selectionArgs != null) {
+            Collections.addAll(args, selectionArgs);
+        }
+
+        return database.rawQuery(sql.toString(), args.toArray(new String[args.size()]),
+                cancellationSignal);
+    }
+
+    /**
+     * Builds FTS MATCH expression from the user input: every word becomes a quoted prefix term,
+     * so the FTS query syntax characters in the input are treated as plain text.
+     *
+     * @return MATCH expression or null if the input has no words.
+     */
+    private static String buildFtsMatchQuery(String query) {
+        if (TextUtils.isEmpty(query)) return null;
+
+        StringBuilder matchQuery = new StringBuilder(query.length() + 16);
+        for (String aWord : query.trim().split("\\s+")) {
+            String term = aWord.replace("\"", "");
+            if (term.isEmpty()) continue;
+
+            if (matchQuery.length() > 0) matchQuery.append(' ');
+            matchQuery.append('"').append(term).append("\"*");
+        }
+
+        return matchQuery.length() == 0 ? null : matchQuery.toString();
+    }
+
+    /**
+     * Replaces the cached translation of the same text and direction. No change is notified,
+     * nothing observes the cache.
+     */
+    private Uri insertIntoTranslationCache(Uri uri, ContentValues values) {
+        long id = mTranslateDbHelper.getWritableDatabase().insertWithOnConflict(
+                TranslationCacheEntry.TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        if (id == -1) {
+            throw new SQLException("Failed to insert row into " + uri);
+        }
+
+        return ContentUris.withAppendedId(uri, id);
+    }
+
+    /**
+     * @return Content URI of the table, that the given URI refers to.
+     */
+    private static Uri tableUriFrom(Uri uri) {
+        List<String> pathSegments = uri.getPathSegments();
+        if (pathSegments.isEmpty()) return uri;
+
+        return new Uri.Builder()
+                .scheme(uri.getScheme())
+                .authority(uri.getAuthority())
+                .appendPath(pathSegments.get(0))
+                .build();
+    }
+
+    /**
+     * @return Validated limit query parameter or null if there is no one.
+     */
+    private static String limitFrom(Uri uri) {
+        String limit = uri.getQueryParameter(HistoryEntry.QUERY_PARAMETER_LIMIT);
+        if (limit == null) return null;
+
+        try {
+            if (Integer.parseInt(limit) < 0) {
+                throw new IllegalArgumentException("Negative limit: " + uri);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid limit: " + uri, e);
+        }
+
+        return limit;
     }
 
     private String idStringFrom(Uri uri) {
@@ -279,6 +590,12 @@ public class TranslateProvider extends ContentProvider {
     }
 
     private void notifyChangeWithUri(Uri uri) {
+        Set<Uri> batchNotifications = mBatchNotifications.get();
+        if (batchNotifications != null) {
+            batchNotifications.add(tableUriFrom(uri));
+            return;
+        }
+
         Context context = getContext();
         if (context != null) {
             context.getContentResolver().notifyChange(uri, null);
@@ -26,9 +26,13 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.database.Cursor;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.v4.app.Fragment;
 import android.support.v4.view.MenuItemCompat;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.widget.DividerItemDecoration;
 import android.support.v7.widget.LinearLayoutManager;
@@ -45,17 +49,22 @@ import android.widget.TextView;
 
 import com.ivanmagda.yatranslate.R;
 import com.ivanmagda.yatranslate.adapter.TranslateHistoryAdapter;
+import com.ivanmagda.yatranslate.data.ContentFilter;
+import com.ivanmagda.yatranslate.data.HistoryPager;
 import com.ivanmagda.yatranslate.data.TranslateHistoryLoader;
 import com.ivanmagda.yatranslate.model.core.TranslateItem;
+import com.ivanmagda.yatranslate.utilities.database.TranslateDbExecutor;
+import com.ivanmagda.yatranslate.utilities.database.TranslateLangNameIndex;
 import com.ivanmagda.yatranslate.utilities.database.TranslateItemDbUtils;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
 
-import static com.ivanmagda.yatranslate.fragment.BookmarkListFragment.ContentFilter.ALL;
+import static com.ivanmagda.yatranslate.data.ContentFilter.ALL;
 
 public class BookmarkListFragment extends Fragment implements TranslateHistoryLoader.CallbacksListener,
-        TranslateHistoryAdapter.TranslateHistoryAdapterOnClickListener, SearchView.OnQueryTextListener {
+        HistoryPager.Listener, TranslateHistoryAdapter.TranslateHistoryAdapterOnClickListener,
+        SearchView.OnQueryTextListener {
 
     /**
      * This interface must be implemented by activities that contain this
@@ -67,14 +76,6 @@ public class BookmarkListFragment extends Fragment implements TranslateHistoryLo
         void onListFragmentInteraction(TranslateItem selectedItem);
     }
 
-    /**
-     * Defines what kind of history items to present: all or favorites.
-     */
-    public enum ContentFilter {
-        ALL,
-        FAVORITE
-    }
-
     /**
      * This ID will be used to identify the Loader responsible for loading our translate history
      */
@@ -95,6 +96,11 @@ public class BookmarkListFragment extends Fragment implements TranslateHistoryLo
      */
     private TranslateHistoryLoader mTranslateHistoryLoader;
 
+    /**
+     * HistoryPager loads the browsed history page by page, the loader is used for the search.
+     */
+    private HistoryPager mHistoryPager;
+
     /**
      * The TranslateHistoryAdapter is responsible for linking our translate history data with
      * the Views that will end up displaying our history data.
@@ -106,6 +112,19 @@ public class BookmarkListFragment extends Fragment implements TranslateHistoryLo
      */
     private OnListFragmentInteractionListener mListener;
 
+    /**
+     * Delays search queries while the user is typing, so only the last one is executed.
+     */
+    private final Handler mSearchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            queryForText(mPendingQuery);
+        }
+    };
+    private String mPendingQuery;
+    private long mSearchDebounceMillis;
+
     /**
      * Mandatory empty constructor for the fragment manager to instantiate the
      * fragment (e.g. upon screen orientation changes).
@@ -131,8 +150,16 @@ public class BookmarkListFragment extends Fragment implements TranslateHistoryLo
             mContentFilter = (ContentFilter) getArguments().get(ARG_CONTENT_FILTER);
         }
 
+        mSearchDebounceMillis = getResources().getInteger(R.integer.search_debounce_millis);
+
         mTranslateHistoryLoader = new TranslateHistoryLoader(getContext(), mContentFilter, this);
-        getLoaderManager().initLoader(ID_HISTORY_LOADER, null, mTranslateHistoryLoader);
+        mTranslateHistoryLoader.setQuery(null);
+
+        // Items built on click resolve lang names from the index, it's loaded off the main thread.
+        TranslateLangNameIndex.warmUp(getContext());
+
+        mHistoryPager = new HistoryPager(getContext(), mContentFilter, this);
+        mHistoryPager.start();
     }
 
     @Override
@@ -152,6 +179,9 @@ public class BookmarkListFragment extends Fragment implements TranslateHistoryLo
         mRecyclerView.setLayoutManager(layoutManager);
 
         mTranslateHistoryAdapter = new TranslateHistoryAdapter(null, this);
+        if (isBrowsing()) {
+            mTranslateHistoryAdapter.setPager(mHistoryPager);
+        }
         mRecyclerView.setAdapter(mTranslateHistoryAdapter);
 
         return view;
@@ -179,6 +209,7 @@ public class BookmarkListFragment extends Fragment implements TranslateHistoryLo
             @Override
             public boolean onMenuItemActionCollapse(MenuItem item) {
                 setItemsVisibility(menu, menuItem, true);
+                cancelPendingQuery();
                 queryForText(null);
                 return true;
             }
@@ -213,22 +244,23 @@ public class BookmarkListFragment extends Fragment implements TranslateHistoryLo
         mListener = null;
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        cancelPendingQuery();
+        mHistoryPager.stop();
+    }
+
     // TranslateHistoryLoader.CallbacksListener.
 
     @Override
     public void onHistoryLoadFinished(Cursor cursor) {
+        // Results of the abandoned search may still arrive, the pager owns the list then.
+        if (mTranslateHistoryAdapter == null || isBrowsing()) return;
+
         // Call mTranslateHistoryAdapter's swapCursor method and pass in the new Cursor
         mTranslateHistoryAdapter.swapCursor(cursor);
-
-        mEmptyTextView.setVisibility(cursor.getCount() == 0 ? View.VISIBLE : View.INVISIBLE);
-        if (TextUtils.isEmpty(mTranslateHistoryLoader.getQuery())) {
-            mEmptyTextView.setText((mContentFilter == ContentFilter.ALL
-                    ? R.string.tv_empty_history
-                    : R.string.tv_empty_favorite)
-            );
-        } else {
-            mEmptyTextView.setText(R.string.tv_empty_history_search);
-        }
+        updateEmptyView(cursor.getCount() == 0);
     }
 
     /**
@@ -237,9 +269,60 @@ public class BookmarkListFragment extends Fragment implements TranslateHistoryLo
      */
     @Override
     public void onHistoryLoaderReset() {
+        if (mTranslateHistoryAdapter == null || mTranslateHistoryAdapter.isPaged()) return;
         mTranslateHistoryAdapter.swapCursor(null);
     }
 
+    // HistoryPager.Listener.
+
+    @Override
+    public void onItemRangeLoaded(int positionStart, int itemCount) {
+        if (mTranslateHistoryAdapter == null || !mTranslateHistoryAdapter.isPaged()) return;
+        mTranslateHistoryAdapter.notifyItemRangeChanged(positionStart, itemCount);
+    }
+
+    @Override
+    public void onItemRangeAppended(int positionStart, int itemCount) {
+        if (mTranslateHistoryAdapter == null || !mTranslateHistoryAdapter.isPaged()) return;
+        mTranslateHistoryAdapter.notifyItemRangeInserted(positionStart, itemCount);
+        updateEmptyView(false);
+    }
+
+    @Override
+    public void onItemRangeDropped(int positionStart, int itemCount) {
+        if (mTranslateHistoryAdapter == null || !mTranslateHistoryAdapter.isPaged()) return;
+        mTranslateHistoryAdapter.notifyItemRangeRemoved(positionStart, itemCount);
+    }
+
+    @Override
+    public void onRefreshed(final int positionStart, @NonNull DiffUtil.DiffResult diffResult) {
+        if (mTranslateHistoryAdapter == null || !mTranslateHistoryAdapter.isPaged()) return;
+
+        final TranslateHistoryAdapter adapter = mTranslateHistoryAdapter;
+        diffResult.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                adapter.notifyItemRangeInserted(positionStart + position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                adapter.notifyItemRangeRemoved(positionStart + position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                adapter.notifyItemMoved(positionStart + fromPosition, positionStart + toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                adapter.notifyItemRangeChanged(positionStart + position, count, payload);
+            }
+        });
+        updateEmptyView(mHistoryPager.getItemCount() == 0);
+    }
+
     // TranslateHistoryAdapterOnClickListener.
 
     @Override
@@ -248,22 +331,38 @@ public class BookmarkListFragment extends Fragment implements TranslateHistoryLo
     }
 
     @Override
-    public void onToggleFavoriteClick(@NonNull TranslateItem selectedItem) {
-        TranslateItemDbUtils.toggleFavorite(getContext(), selectedItem);
+    public void onToggleFavoriteClick(@NonNull final TranslateItem selectedItem) {
+        final Context context = getContext().getApplicationContext();
+        TranslateDbExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                TranslateItemDbUtils.toggleFavorite(context, selectedItem);
+            }
+        });
     }
 
     @Override
     public boolean onQueryTextSubmit(String query) {
+        cancelPendingQuery();
         queryForText(query);
         return false;
     }
 
     @Override
     public boolean onQueryTextChange(String newText) {
-        queryForText(newText);
+        scheduleQueryForText(newText);
         return false;
     }
 
+    /**
+     * Sets the delay between the last query text change and the query execution.
+     *
+     * @param debounceMillis Delay in milliseconds, 0 executes queries immediately.
+     */
+    public void setSearchDebounceMillis(long debounceMillis) {
+        this.mSearchDebounceMillis = debounceMillis;
+    }
+
     private void setItemsVisibility(Menu menu, MenuItem exception, boolean visible) {
         for (int i = 0; i < menu.size(); ++i) {
             MenuItem item = menu.getItem(i);
@@ -271,6 +370,22 @@ public class BookmarkListFragment extends Fragment implements TranslateHistoryLo
         }
     }
 
+    private boolean isBrowsing() {
+        return TextUtils.isEmpty(mTranslateHistoryLoader.getQuery());
+    }
+
+    private void updateEmptyView(boolean isEmpty) {
+        mEmptyTextView.setVisibility(isEmpty ? View.VISIBLE : View.INVISIBLE);
+        if (isBrowsing()) {
+            mEmptyTextView.setText((mContentFilter == ContentFilter.ALL
+                    ? R.string.tv_empty_history
+                    : R.string.tv_empty_favorite)
+            );
+        } else {
+            mEmptyTextView.setText(R.string.tv_empty_history_search);
+        }
+    }
+
     private void clearHistory() {
         if (mTranslateHistoryAdapter.getItemCount() == 0) return;
 
@@ -279,7 +394,13 @@ public class BookmarkListFragment extends Fragment implements TranslateHistoryLo
                 .setMessage(R.string.msg_clear_history)
                 .setPositiveButton(android.R.string.yes, new DialogInterface.OnClickListener() {
                     public void onClick(DialogInterface dialog, int which) {
-                        TranslateItemDbUtils.clearHistory(getContext());
+                        final Context context = getContext().getApplicationContext();
+                        TranslateDbExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                TranslateItemDbUtils.clearHistory(context);
+                            }
+                        });
                     }
                 })
                 .setNegativeButton(android.R.string.no, null)
@@ -287,8 +408,38 @@ public class BookmarkListFragment extends Fragment implements TranslateHistoryLo
                 .show();
     }
 
+    private void scheduleQueryForText(String queryString) {
+        cancelPendingQuery();
+
+        if (mSearchDebounceMillis <= 0) {
+            queryForText(queryString);
+        } else {
+            mPendingQuery = queryString;
+            mSearchHandler.postDelayed(mSearchRunnable, mSearchDebounceMillis);
+        }
+    }
+
+    private void cancelPendingQuery() {
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        mPendingQuery = null;
+    }
+
+    /**
+     * Restarting the loader cancels the in-flight query, if any. Empty query returns the list
+     * to the paged history.
+     */
     private void queryForText(String queryString) {
-        mTranslateHistoryLoader.setQuery(queryString);
-        getLoaderManager().restartLoader(ID_HISTORY_LOADER, null, mTranslateHistoryLoader);
+        String query = TextUtils.isEmpty(queryString) ? "" : queryString;
+        if (query.equals(mTranslateHistoryLoader.getQuery())) return;
+
+        mTranslateHistoryLoader.setQuery(query);
+
+        if (query.isEmpty()) {
+            getLoaderManager().destroyLoader(ID_HISTORY_LOADER);
+            mTranslateHistoryAdapter.setPager(mHistoryPager);
+            updateEmptyView(mHistoryPager.isLoaded() && mHistoryPager.getItemCount() == 0);
+        } else {
+            getLoaderManager().restartLoader(ID_HISTORY_LOADER, null, mTranslateHistoryLoader);
+        }
     }
 }
@@ -27,6 +27,7 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.StringRes;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.app.ShareCompat;
@@ -47,12 +48,14 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import com.ivanmagda.network.core.Resource;
+import com.ivanmagda.network.core.Result;
 import com.ivanmagda.network.helper.GenericAsyncTaskLoader;
 import com.ivanmagda.network.helper.GenericAsyncTaskLoader.OnStartLoadingCondition;
 import com.ivanmagda.network.utils.Utils;
 import com.ivanmagda.yatranslate.R;
 import com.ivanmagda.yatranslate.TranslateTextToSpeech;
 import com.ivanmagda.yatranslate.activity.SelectLanguageActivity;
+import com.ivanmagda.yatranslate.api.YandexApiErrors;
 import com.ivanmagda.yatranslate.api.YandexTranslateApi;
 import com.ivanmagda.yatranslate.model.TranslateFragmentState;
 import com.ivanmagda.yatranslate.model.core.TranslateItem;
@@ -60,7 +63,9 @@ import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
 import com.ivanmagda.yatranslate.utilities.AlertUtils;
 import com.ivanmagda.yatranslate.utilities.ArrayUtils;
 import com.ivanmagda.yatranslate.utilities.FragmentUtils;
+import com.ivanmagda.yatranslate.utilities.database.TranslateDbExecutor;
 import com.ivanmagda.yatranslate.utilities.database.TranslateItemDbUtils;
+import com.ivanmagda.yatranslate.utilities.database.TranslationCache;
 import com.ivanmagda.yatranslate.viewmodel.TranslateItemViewModel;
 
 import java.util.ArrayList;
@@ -127,6 +132,11 @@ public class TranslateFragment extends Fragment
      */
     private TranslateFragmentState mState;
 
+    /**
+     * Incremented on every history lookup, only the result of the latest one is applied.
+     */
+    private int mDbQueryGeneration;
+
     /**
      * Listener that helps save TranslateFragment state when it's
      * about to be destroyed.
@@ -261,13 +271,29 @@ public class TranslateFragment extends Fragment
     }
 
     @Override
-    public void onLoadFinished(Loader<List<TranslateItem>> loader, List<TranslateItem> translateItems) {
+    public void onLoadFinished(Loader<List<TranslateItem>> loader,
+                               final List<TranslateItem> translateItems) {
         setLoadingIndicatorVisible(false);
-        onTranslateResults(translateItems);
+
+        Result<List<TranslateItem>> result =
+                ((GenericAsyncTaskLoader<List<TranslateItem>>) loader).getResult();
+        onTranslateResults(translateItems, result != null
+                ? YandexApiErrors.getTranslateErrorMessage(result)
+                : R.string.msg_failed_translate);
 
         if (!ArrayUtils.isEmpty(translateItems)) {
-            mState.setTranslateResults(
-                    TranslateItemDbUtils.addToHistory(getContext(), translateItems));
+            // Sets the history ids of the items, tasks submitted later see them.
+            final Context context = getContext().getApplicationContext();
+            TranslateDbExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    TranslateItemDbUtils.addToHistory(context, translateItems);
+
+                    TranslateItem anItem = translateItems.get(0);
+                    TranslationCache.getInstance(context).put(anItem.getTextToTranslate(),
+                            anItem.getTranslateLangItem(), translateItems);
+                }
+            });
         }
     }
 
@@ -303,8 +329,16 @@ public class TranslateFragment extends Fragment
 
     @OnClick(R.id.bt_toggle_favorite)
     public void onToggleFavoriteClick() {
-        TranslateItemDbUtils.toggleFavorite(getContext(), mState.getTranslateResults().get(0));
-        performDbQuery();
+        final Context context = getContext().getApplicationContext();
+        final TranslateItem translateItem = mState.getTranslateResults().get(0);
+
+        TranslateDbExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                TranslateItemDbUtils.toggleFavorite(context, translateItem);
+            }
+        });
+        performDbQuery(false);
     }
 
     @OnClick(R.id.bt_speech_text)
@@ -351,7 +385,7 @@ public class TranslateFragment extends Fragment
             }
         });
 
-        performDbQuery();
+        performDbQuery(false);
         updateLangButtons();
         updateTranslateResultsContent();
     }
@@ -376,9 +410,15 @@ public class TranslateFragment extends Fragment
         startActivityForResult(selectLangIntent, SELECT_LANGUAGE_REQUEST);
     }
 
+    /**
+     * Looks up the history and then the translation cache, the translation is requested
+     * only if nothing is found.
+     */
     private void queryForTranslate() {
-        if (performDbQuery()) return;
+        performDbQuery(true);
+    }
 
+    private void requestTranslation() {
         if (!Utils.isOnline(getContext())) {
             AlertUtils.showToast(getActivity(), R.string.msg_no_internet_connection);
         } else if (!mState.getTranslateLangs().isValid()) {
@@ -391,24 +431,72 @@ public class TranslateFragment extends Fragment
         }
     }
 
-    private boolean performDbQuery() {
-        TranslateItem fromDB = TranslateItemDbUtils.searchForTranslation(
-                getContext(), mState.getTextToTranslate(), mState.getTranslateLangs());
+    /**
+     * Looks up the history for the current text and languages off the main thread.
+     * A cached translation is added to the history, as the received one would be.
+     *
+     * @param translateIfNotFound Consults the translation cache and then requests
+     *                            the translation if the history has no such item.
+     */
+    private void performDbQuery(final boolean translateIfNotFound) {
+        final Context context = getContext().getApplicationContext();
+        final String textToTranslate = mState.getTextToTranslate();
+        final TranslateLangItem langItem = copyOf(mState.getTranslateLangs());
+        final int generation = ++mDbQueryGeneration;
 
-        if (fromDB != null) {
-            onTranslateResults(ArrayUtils.putIntoList(fromDB));
-            return true;
-        }
+        TranslateDbExecutor.execute(new TranslateDbExecutor.Task<List<TranslateItem>>() {
+            @Override
+            public List<TranslateItem> run() {
+                TranslateItem fromDB = TranslateItemDbUtils.searchForTranslation(context,
+                        textToTranslate, langItem);
+                if (fromDB != null) return ArrayUtils.putIntoList(fromDB);
+                if (!translateIfNotFound) return null;
 
-        return false;
+                List<TranslateItem> cached = TranslationCache.getInstance(context)
+                        .get(textToTranslate, langItem);
+                if (cached == null) return null;
+
+                return TranslateItemDbUtils.addToHistory(context, cached);
+            }
+        }, new TranslateDbExecutor.Callback<List<TranslateItem>>() {
+            @Override
+            public void onResult(@Nullable List<TranslateItem> translateItems) {
+                if (!isAdded() || generation != mDbQueryGeneration) return;
+
+                if (translateItems != null) {
+                    onTranslateResults(translateItems);
+                } else if (translateIfNotFound) {
+                    requestTranslation();
+                }
+            }
+        });
+    }
+
+    /**
+     * The state is changed on the main thread, the lookup gets its own copy of the languages.
+     */
+    @Nullable
+    private static TranslateLangItem copyOf(@Nullable TranslateLangItem langItem) {
+        if (langItem == null || !langItem.isValid()) return null;
+
+        return new TranslateLangItem(langItem.getFromLang(), langItem.getToLang(),
+                langItem.getFromLangName(), langItem.getToLangName());
     }
 
     private void onTranslateResults(@Nullable List<TranslateItem> translateItems) {
+        onTranslateResults(translateItems, R.string.msg_failed_translate);
+    }
+
+    /**
+     * @param failureMessage Shown if there are no results.
+     */
+    private void onTranslateResults(@Nullable List<TranslateItem> translateItems,
+                                    @StringRes int failureMessage) {
         mState.setTranslateResults(translateItems);
         updateTranslateResultsContent();
 
         if (ArrayUtils.isEmpty(mState.getTranslateResults())) {
-            AlertUtils.showToast(getActivity(), R.string.msg_failed_translate);
+            AlertUtils.showToast(getActivity(), failureMessage);
         }
     }
 
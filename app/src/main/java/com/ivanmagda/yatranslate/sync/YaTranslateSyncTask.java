@@ -27,6 +27,7 @@ import android.support.annotation.NonNull;
 import com.ivanmagda.network.core.Webservice;
 import com.ivanmagda.yatranslate.api.YandexTranslateApi;
 import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
+import com.ivanmagda.yatranslate.utilities.ArrayUtils;
 import com.ivanmagda.yatranslate.utilities.database.TranslateLangDbUtils;
 
 import java.util.List;
@@ -40,7 +41,17 @@ public final class YaTranslateSyncTask {
      * @param context Used to access utility methods and the ContentResolver.
      */
     synchronized public static void syncLanguages(@NonNull final Context context) {
-        List<TranslateLangItem> langs = Webservice.load(YandexTranslateApi.getSupportedLanguages());
+        YaTranslateSyncUtils.installResponseCache(context);
+
+        // An empty table needs the languages even if the cached response is still valid,
+        // e.g. after the app data was cleared, but the cache survived.
+        boolean hasStoredLangs = TranslateLangDbUtils.hasLangs(context);
+        List<TranslateLangItem> langs = Webservice.load(
+                YandexTranslateApi.getSupportedLanguages(hasStoredLangs));
+
+        // Empty when the languages are not modified since the last sync, nothing to write.
+        if (ArrayUtils.isEmpty(langs)) return;
+
         TranslateLangDbUtils.persistLangs(context, langs);
     }
 }
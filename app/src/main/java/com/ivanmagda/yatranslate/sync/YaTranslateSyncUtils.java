@@ -24,8 +24,6 @@ package com.ivanmagda.yatranslate.sync;
 
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
-import android.net.Uri;
 import android.support.annotation.NonNull;
 
 import com.firebase.jobdispatcher.Constraint;
@@ -35,8 +33,12 @@ import com.firebase.jobdispatcher.GooglePlayDriver;
 import com.firebase.jobdispatcher.Job;
 import com.firebase.jobdispatcher.Lifetime;
 import com.firebase.jobdispatcher.Trigger;
-import com.ivanmagda.yatranslate.data.TranslateContract.LanguageEntry;
+import com.ivanmagda.network.core.ResponseCache;
+import com.ivanmagda.network.core.Webservice;
+import com.ivanmagda.yatranslate.utilities.database.TranslateLangDbUtils;
+import com.ivanmagda.yatranslate.utilities.database.TranslateLangNameIndex;
 
+import java.io.File;
 import java.util.concurrent.TimeUnit;
 
 public final class YaTranslateSyncUtils {
@@ -59,6 +61,11 @@ public final class YaTranslateSyncUtils {
      */
     private static final String YA_TRANSLATE_SYNC_TAG = "ya-translate-sync";
 
+    /**
+     * Name of the responses cache directory, inside the application cache directory.
+     */
+    private static final String RESPONSE_CACHE_DIR_NAME = "http";
+
     /**
      * Schedules a repeating sync of YaTranslate's languages data using FirebaseJobDispatcher.
      *
@@ -102,6 +109,8 @@ public final class YaTranslateSyncUtils {
      * @param context Context that will be passed to other methods.
      */
     synchronized public static void initialize(@NonNull final Context context) {
+        installResponseCache(context);
+
         /*
           Only perform initialization once per app lifetime. If initialization has already been
           performed, we have nothing to do in this method.
@@ -123,22 +132,33 @@ public final class YaTranslateSyncUtils {
         Thread checkForEmpty = new Thread(new Runnable() {
             @Override
             public void run() {
-                Uri uri = LanguageEntry.CONTENT_URI;
-                Cursor cursor = context.getContentResolver().query(uri, null, null, null, null);
-
-                if (cursor == null || cursor.getCount() == 0) {
+                if (!TranslateLangDbUtils.hasLangs(context)) {
                     startImmediateSync(context);
                 }
 
-                if (cursor != null) {
-                    cursor.close();
-                }
+                // Warm up lang names index, so history lists don't have to load it.
+                TranslateLangNameIndex.getInstance(context);
             }
         });
 
         checkForEmpty.start();
     }
 
+    /**
+     * Installs the Webservice response cache, if it isn't installed yet.
+     * Sync services may run without the activity, so each entry point should call it.
+     *
+     * @param context Context used to get the cache directory.
+     */
+    public static void installResponseCache(@NonNull final Context context) {
+        synchronized (Webservice.class) {
+            if (Webservice.getResponseCache() != null) return;
+
+            File directory = new File(context.getCacheDir(), RESPONSE_CACHE_DIR_NAME);
+            Webservice.setResponseCache(new ResponseCache(directory));
+        }
+    }
+
     /**
      * Helper method to perform a sync immediately using an IntentService for asynchronous execution.
      *
@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.yatranslate.utilities;
+
+import android.graphics.Typeface;
+import android.support.annotation.NonNull;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
+
+import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry.SNIPPET_MATCH_END;
+import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry.SNIPPET_MATCH_START;
+
+public final class SnippetUtils {
+
+    private SnippetUtils() {
+    }
+
+    /**
+     * Converts search snippet into styled text: matched terms become bold,
+     * match markers are removed.
+     *
+     * @param snippet Snippet returned by the history search.
+     * @return Text to display.
+     */
+    public static CharSequence highlight(@NonNull final String snippet) {
+        SpannableStringBuilder builder = new SpannableStringBuilder();
+
+        int position = 0;
+        while (position < snippet.length()) {
+            int start = snippet.indexOf(SNIPPET_MATCH_START, position);
+            if (start == -1) break;
+
+            int end = snippet.indexOf(SNIPPET_MATCH_END, start);
+            if (end == -1) break;
+
+            builder.append(snippet, position, start);
+
+            int spanStart = builder.length();
+            builder.append(snippet, start + SNIPPET_MATCH_START.length(), end);
+            builder.setSpan(new StyleSpan(Typeface.BOLD), spanStart, builder.length(),
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+
+            position = end + SNIPPET_MATCH_END.length();
+        }
+
+        if (position < snippet.length()) {
+            builder.append(snippet, position, snippet.length());
+        }
+
+        return builder;
+    }
+}
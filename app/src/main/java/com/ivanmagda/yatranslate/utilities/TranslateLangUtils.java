@@ -34,19 +34,16 @@ import java.util.List;
 
 public final class TranslateLangUtils {
 
-    private static final int FROM_LANG_TRANSLATE_INDEX = 0;
-    private static final int TO_LANG_TRANSLATE_INDEX = 1;
+    private static final char LANG_DIR_SEPARATOR = '-';
 
     public static String getFromLangName(@NonNull final String lang) {
-        return splitLang(lang)[FROM_LANG_TRANSLATE_INDEX];
+        int separatorIndex = lang.indexOf(LANG_DIR_SEPARATOR);
+        return separatorIndex < 0 ? lang : lang.substring(0, separatorIndex);
     }
 
     public static String getToLangName(@NonNull final String lang) {
-        return splitLang(lang)[TO_LANG_TRANSLATE_INDEX];
-    }
-
-    private static String[] splitLang(@NonNull final String lang) {
-        return lang.split("-");
+        int separatorIndex = lang.indexOf(LANG_DIR_SEPARATOR);
+        return separatorIndex < 0 ? "" : lang.substring(separatorIndex + 1);
     }
 
     public static HashMap<String, String> getLangNames(@NonNull final List<TranslateLangItem> langItems) {
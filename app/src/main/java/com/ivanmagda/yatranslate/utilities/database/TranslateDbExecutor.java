@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.yatranslate.utilities.database;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the database work of the UI off the main thread.
+ * <p>
+ * Tasks run one at a time in the submission order, so a task sees the writes of every task
+ * submitted before it, e.g. a favorite toggle always runs after the insert of its item.
+ * Results are delivered on the main thread.
+ */
+public final class TranslateDbExecutor {
+
+    private static final String LOG_TAG = TranslateDbExecutor.class.getSimpleName();
+
+    public interface Task<Result> {
+        @WorkerThread
+        Result run();
+    }
+
+    public interface Callback<Result> {
+
+        /**
+         * @param result Result of the task or null if the task has failed.
+         */
+        @MainThread
+        void onResult(@Nullable Result result);
+    }
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, LOG_TAG);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private TranslateDbExecutor() {
+    }
+
+    public static void execute(@NonNull final Runnable runnable) {
+        execute(new Task<Void>() {
+            @Override
+            public Void run() {
+                runnable.run();
+                return null;
+            }
+        }, null);
+    }
+
+    /**
+     * @param callback Receives the result on the main thread, the owner checks itself whether
+     *                 it's still interested in the result.
+     */
+    public static <Result> void execute(@NonNull final Task<Result> task,
+                                        @Nullable final Callback<Result> callback) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Result result = null;
+                try {
+                    result = task.run();
+                } catch (RuntimeException e) {
+                    Log.e(LOG_TAG, "Database task has failed", e);
+                }
+
+                if (callback == null) return;
+
+                final Result finalResult = result;
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onResult(finalResult);
+                    }
+                });
+            }
+        });
+    }
+}
@@ -21,18 +21,23 @@
  */
 package com.ivanmagda.yatranslate.utilities.database;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.RemoteException;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
+import android.util.Log;
 
+import com.ivanmagda.yatranslate.data.TranslateContract;
 import com.ivanmagda.yatranslate.model.core.TranslateItem;
 import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
-import com.ivanmagda.yatranslate.utilities.ArrayUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -42,29 +47,68 @@ import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry.COLU
 import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry.COLUMN_LANG_TRANSLATE_TO;
 import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry.COLUMN_TEXT_TO_TRANSLATE;
 import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry.COLUMN_TEXT_TRANSLATED;
-import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry.buildUriWithText;
+import static com.ivanmagda.yatranslate.data.TranslateContract.HistoryEntry.buildTranslationUri;
 
 public final class TranslateItemDbUtils {
 
+    private static final String LOG_TAG = TranslateItemDbUtils.class.getSimpleName();
+
     private TranslateItemDbUtils() {
     }
 
     // Public.
 
+    /**
+     * Upserts all of the items in a single transaction with a single change notification.
+     * Items that are already in the history get their translation updated.
+     *
+     * @return Copy of the items list, every item has the id of its history row set.
+     */
     public static List<TranslateItem> addToHistory(@NonNull final Context context,
                                                    @NonNull final List<TranslateItem> items) {
         List<TranslateItem> itemsToInsert = new ArrayList<>(items);
+        if (itemsToInsert.isEmpty()) return itemsToInsert;
 
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(itemsToInsert.size());
         for (TranslateItem anTranslateItem : itemsToInsert) {
-            long insertedId = addToHistory(context, anTranslateItem);
-            if (insertedId != TranslateItem.ID_NOT_FOUND) {
-                anTranslateItem.setId(insertedId);
+            operations.add(ContentProviderOperation.newInsert(HistoryEntry.CONTENT_URI)
+                    .withValues(toContentValues(anTranslateItem))
+                    .build());
+        }
+
+        try {
+            ContentProviderResult[] results = context.getContentResolver()
+                    .applyBatch(TranslateContract.CONTENT_AUTHORITY, operations);
+
+            for (int i = 0; i < results.length; i++) {
+                if (results[i].uri != null) {
+                    itemsToInsert.get(i).setId(ContentUris.parseId(results[i].uri));
+                }
             }
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.e(LOG_TAG, "Failed to add items to history", e);
         }
 
         return itemsToInsert;
     }
 
+    /**
+     * Upserts all of the items with a single transactional insert. Item ids are not updated.
+     *
+     * @return Number of the inserted or updated items.
+     */
+    public static int bulkAddToHistory(@NonNull final Context context,
+                                       @NonNull final List<TranslateItem> items) {
+        if (items.isEmpty()) return 0;
+
+        ContentValues[] valuesArray = new ContentValues[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            valuesArray[i] = toContentValues(items.get(i));
+        }
+
+        return context.getContentResolver().bulkInsert(HistoryEntry.CONTENT_URI, valuesArray);
+    }
+
     public static void toggleFavorite(@NonNull final Context context,
                                       @NonNull final TranslateItem translateItem) {
         final long id = translateItem.getId();
@@ -80,6 +124,7 @@ public final class TranslateItemDbUtils {
 
     /**
      * Build TranslateItem from the current position of the Cursor.
+     * Language names are resolved from the in-memory {@link TranslateLangNameIndex}.
      *
      * @param cursor The cursor from which data will be extracted.
      * @return Created TranslateItem from the cursor value.
@@ -103,45 +148,32 @@ public final class TranslateItemDbUtils {
                 cursor.getColumnIndexOrThrow(COLUMN_LANG_TRANSLATE_FROM));
         String toLang = cursor.getString(
                 cursor.getColumnIndexOrThrow(COLUMN_LANG_TRANSLATE_TO));
-        TranslateLangItem langItem = getTranslateLangItemFromKeys(context, fromLang, toLang);
+        TranslateLangItem langItem = TranslateLangNameIndex.getInstance(context)
+                .buildLangItem(fromLang, toLang);
 
         return new TranslateItem(id, isFavorite, textToTranslate, translatedText, langItem);
     }
 
-    private static long addToHistory(@NonNull final Context context,
-                                     @NonNull final TranslateItem translateItem) {
-        if (!isExist(context, translateItem)) {
-            Uri uri = context.getContentResolver()
-                    .insert(HistoryEntry.CONTENT_URI, toContentValues(translateItem));
-            return ContentUris.parseId(uri);
-        }
-
-        return TranslateItem.ID_NOT_FOUND;
-    }
-
+    /**
+     * Looks up history for exactly the same text and translate direction.
+     * Served by the unique translation index, so it's a single index probe.
+     *
+     * @return Found item or null.
+     */
     public static TranslateItem searchForTranslation(@NonNull final Context context,
                                                      String text,
                                                      TranslateLangItem langItem) {
-        if (TextUtils.isEmpty(text) || langItem == null) return null;
+        if (TextUtils.isEmpty(text) || langItem == null || !langItem.isValid()) return null;
 
-        Uri searchUri = buildUriWithText(text);
+        Uri searchUri = buildTranslationUri(text, langItem.getFromLang(), langItem.getToLang());
         Cursor cursor = context.getContentResolver().query(searchUri, null, null, null, null);
         if (cursor == null) return null;
 
-        List<TranslateItem> list = buildTranslateItems(context, cursor);
-        if (ArrayUtils.isEmpty(list)) return null;
-
-        for (TranslateItem anItem : list) {
-            if (anItem.getTextToTranslate().equals(text) &&
-                    anItem.getTranslateLangItem().getToLang().equals(langItem.getToLang()) &&
-                    anItem.getTranslateLangItem().getFromLang().equals(langItem.getFromLang())) {
-                return anItem;
-            }
+        try {
+            return cursor.moveToFirst() ? buildFromCursor(context, cursor) : null;
+        } finally {
+            cursor.close();
         }
-
-        cursor.close();
-
-        return null;
     }
 
     public static void clearHistory(@NonNull final Context context) {
@@ -167,81 +199,4 @@ public final class TranslateItemDbUtils {
 
         return contentValues;
     }
-
-    private static List<TranslateItem> buildTranslateItems(@NonNull final Context context,
-                                                           Cursor cursor) {
-        if (cursor == null || cursor.getCount() == 0) {
-            return null;
-        }
-
-        List<TranslateItem> items = new ArrayList<>(cursor.getCount());
-
-        while (cursor.moveToNext()) {
-            TranslateItem translateItem = buildFromCursor(context, cursor);
-            if (translateItem != null) {
-                items.add(translateItem);
-            }
-        }
-
-        return items;
-    }
-
-    private static boolean isExist(@NonNull final Context context,
-                                   @NonNull final TranslateItem translateItem) {
-        Uri searchUri = buildUriWithText(translateItem.getTextToTranslate());
-        Cursor cursor = context.getContentResolver().query(searchUri, null, null, null, null);
-
-        List<TranslateItem> list = buildTranslateItems(context, cursor);
-        if (ArrayUtils.isEmpty(list)) return false;
-
-        for (TranslateItem anItem : list) {
-            if (anItem.equals(translateItem)) return true;
-        }
-
-        cursor.close();
-
-        return false;
-    }
-
-    @SuppressWarnings("ConstantConditions")
-    private static TranslateLangItem getTranslateLangItemFromKeys(@NonNull final Context context,
-                                                                  @NonNull final String fromKey,
-                                                                  @NonNull final String toKey) {
-        List<TranslateLangItem> items = TranslateLangDbUtils.searchForLangWithKey(context, fromKey);
-        List<TranslateLangItem> fromLangItems = TranslateLangDbUtils.searchForLangWithKey(context, toKey);
-
-        if (ArrayUtils.isEmpty(items) || ArrayUtils.isEmpty(fromLangItems)) {
-            return null;
-        }
-
-        if (!ArrayUtils.isEmpty(fromLangItems)) {
-            items.addAll(fromLangItems);
-        }
-
-        String fromLangName = null;
-        String toLangName = null;
-
-        for (TranslateLangItem anItem : items) {
-            if (!TextUtils.isEmpty(fromLangName) && !TextUtils.isEmpty(toLangName)) break;
-
-            if (anItem.getFromLang().equals(fromKey)) {
-                fromLangName = anItem.getFromLangName();
-            } else if (anItem.getToLang().equals(fromKey)) {
-                fromLangName = anItem.getToLangName();
-            }
-
-            if (anItem.getFromLang().equals(toKey)) {
-                toLangName = anItem.getToLangName();
-            } else if (anItem.getToLang().equals(toKey)) {
-                toLangName = anItem.getToLangName();
-            }
-        }
-
-        /* This probably could happen if we doesn't fetch supported languages yet. */
-        if (TextUtils.isEmpty(fromLangName) || TextUtils.isEmpty(toLangName)) {
-            return new TranslateLangItem(fromKey, toKey, null, null);
-        }
-
-        return new TranslateLangItem(fromKey, toKey, fromLangName, toLangName);
-    }
 }
@@ -22,52 +22,179 @@
 
 package com.ivanmagda.yatranslate.utilities.database;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.RemoteException;
 import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
 
+import com.ivanmagda.yatranslate.data.TranslateContract;
 import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
 import com.ivanmagda.yatranslate.utilities.ArrayUtils;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 import static com.ivanmagda.yatranslate.data.TranslateContract.LanguageEntry;
 
 public final class TranslateLangDbUtils {
 
+    private static final String LOG_TAG = TranslateLangDbUtils.class.getSimpleName();
+
+    /* Projection and column indices of the rows compared on sync. */
+    private static final String[] STORED_ROW_PROJECTION = {
+            LanguageEntry._ID,
+            LanguageEntry.COLUMN_TRANSLATE_FROM_KEY,
+            LanguageEntry.COLUMN_TRANSLATE_TO_KEY,
+            LanguageEntry.COLUMN_TRANSLATE_FROM_NAME,
+            LanguageEntry.COLUMN_TRANSLATE_TO_NAME
+    };
+    private static final int INDEX_ID = 0;
+    private static final int INDEX_FROM_KEY = 1;
+    private static final int INDEX_TO_KEY = 2;
+    private static final int INDEX_FROM_NAME = 3;
+    private static final int INDEX_TO_NAME = 4;
+
+    private static final char ROW_KEY_SEPARATOR = '\u0000';
+
     private TranslateLangDbUtils() {
     }
 
     /**
-     * Inserts the new languages data into the database.
+     * Synchronizes the languages table with the new languages data.
+     * <p>
+     * Only the difference against the stored directions is written: new directions are inserted
+     * and missing ones are deleted, in a single transaction with a single change notification.
+     * A direction with changed names is replaced. The stored rows are read before the
+     * transaction, so the provider replaces a direction, that a concurrent sync has inserted
+     * meanwhile, instead of duplicating it.
      *
      * @param langItems List of languages to be persist.
      */
     public static void persistLangs(@NonNull final Context context, List<TranslateLangItem> langItems) {
         if (ArrayUtils.isEmpty(langItems)) return;
 
-        List<ContentValues> valuesList = new ArrayList<>(langItems.size());
+        ContentResolver contentResolver = context.getContentResolver();
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+        HashMap<String, Long> storedRows = queryStoredRows(contentResolver);
 
+        HashSet<String> newRowKeys = new HashSet<>(langItems.size());
+        ArrayList<ContentProviderOperation> insertOperations = new ArrayList<>();
         for (TranslateLangItem anItem : langItems) {
-            ContentValues contentValues = new ContentValues(4);
+            String rowKey = buildRowKey(anItem.getFromLang(), anItem.getToLang(),
+                    anItem.getFromLangName(), anItem.getToLangName());
+            if (!newRowKeys.add(rowKey)) continue;
+
+            if (storedRows.remove(rowKey) == null) {
+                insertOperations.add(ContentProviderOperation
+                        .newInsert(LanguageEntry.CONTENT_URI)
+                        .withValues(toContentValues(anItem))
+                        .build());
+            }
+        }
+
+        for (Long anId : storedRows.values()) {
+            operations.add(ContentProviderOperation
+                    .newDelete(LanguageEntry.buildLanguageUri(anId))
+                    .build());
+        }
+        operations.addAll(insertOperations);
+
+        if (!operations.isEmpty()) {
+            try {
+                contentResolver.applyBatch(TranslateContract.CONTENT_AUTHORITY, operations);
+            } catch (RemoteException | OperationApplicationException e) {
+                Log.e(LOG_TAG, "Failed to persist languages", e);
+                return;
+            }
+        }
 
-            contentValues.put(LanguageEntry.COLUMN_TRANSLATE_FROM_KEY, anItem.getFromLang());
-            contentValues.put(LanguageEntry.COLUMN_TRANSLATE_TO_KEY, anItem.getToLang());
-            contentValues.put(LanguageEntry.COLUMN_TRANSLATE_FROM_NAME, anItem.getFromLangName());
-            contentValues.put(LanguageEntry.COLUMN_TRANSLATE_TO_NAME, anItem.getToLangName());
+        Log.d(LOG_TAG, "Languages synced, inserted: " + insertOperations.size()
+                + ", deleted: " + (operations.size() - insertOperations.size()));
 
-            valuesList.add(contentValues);
+        TranslateLangNameIndex.update(langItems);
+    }
+
+    /**
+     * @return Stored row ids by the row key.
+     */
+    private static HashMap<String, Long> queryStoredRows(
+            @NonNull final ContentResolver contentResolver) {
+        Cursor cursor = contentResolver.query(LanguageEntry.CONTENT_URI, STORED_ROW_PROJECTION,
+                null, null, null);
+        if (cursor == null) return new HashMap<>(0);
+
+        try {
+            HashMap<String, Long> storedRows = new HashMap<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                String rowKey = buildRowKey(cursor.getString(INDEX_FROM_KEY),
+                        cursor.getString(INDEX_TO_KEY), cursor.getString(INDEX_FROM_NAME),
+                        cursor.getString(INDEX_TO_NAME));
+                storedRows.put(rowKey, cursor.getLong(INDEX_ID));
+            }
+
+            return storedRows;
+        } finally {
+            cursor.close();
         }
+    }
+
+    private static String buildRowKey(String fromKey, String toKey, String fromName, String toName) {
+        return fromKey + ROW_KEY_SEPARATOR + toKey + ROW_KEY_SEPARATOR + fromName
+                + ROW_KEY_SEPARATOR + toName;
+    }
+
+    private static ContentValues toContentValues(@NonNull final TranslateLangItem langItem) {
+        ContentValues contentValues = new ContentValues(4);
 
-        ContentValues[] cvArray = new ContentValues[valuesList.size()];
-        valuesList.toArray(cvArray);
+        contentValues.put(LanguageEntry.COLUMN_TRANSLATE_FROM_KEY, langItem.getFromLang());
+        contentValues.put(LanguageEntry.COLUMN_TRANSLATE_TO_KEY, langItem.getToLang());
+        contentValues.put(LanguageEntry.COLUMN_TRANSLATE_FROM_NAME, langItem.getFromLangName());
+        contentValues.put(LanguageEntry.COLUMN_TRANSLATE_TO_NAME, langItem.getToLangName());
+
+        return contentValues;
+    }
 
-        // Delete old data and insert the new one.
-        context.getContentResolver().delete(LanguageEntry.CONTENT_URI, null, null);
-        context.getContentResolver().bulkInsert(LanguageEntry.CONTENT_URI, cvArray);
+    /**
+     * @return Whether there is at least one persisted language.
+     */
+    @WorkerThread
+    public static boolean hasLangs(@NonNull final Context context) {
+        Cursor cursor = context.getContentResolver().query(LanguageEntry.CONTENT_URI,
+                new String[]{LanguageEntry._ID}, null, null, null);
+        if (cursor == null) return false;
+
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Queries all of the persisted languages.
+     *
+     * @return List of languages, empty if there are no languages yet.
+     */
+    public static List<TranslateLangItem> queryLangs(@NonNull final Context context) {
+        Cursor cursor = context.getContentResolver()
+                .query(LanguageEntry.CONTENT_URI, null, null, null, null);
+        if (cursor == null) return new ArrayList<>(0);
+
+        try {
+            return buildItemsFromCursor(cursor);
+        } finally {
+            cursor.close();
+        }
     }
 
     public static List<TranslateLangItem> buildItemsFromCursor(@NonNull final Cursor cursor) {
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.yatranslate.utilities.database;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
+import android.text.TextUtils;
+
+import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
+import com.ivanmagda.yatranslate.utilities.ArrayUtils;
+import com.ivanmagda.yatranslate.utilities.TranslateLangUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Process-wide, immutable lang key => lang name index.
+ * <p>
+ * Built once from the languages table and atomically replaced every time new languages
+ * are persisted, so building history items from a cursor doesn't touch the database.
+ * The main thread never loads the index itself: it should be warmed with {@link #warmUp},
+ * until then {@link #getLoaded} gives an empty index and items show the lang keys.
+ */
+public final class TranslateLangNameIndex {
+
+    private static final AtomicReference<TranslateLangNameIndex> sIndex = new AtomicReference<>();
+
+    private static final TranslateLangNameIndex EMPTY =
+            new TranslateLangNameIndex(new HashMap<String, String>(0));
+
+    private final Map<String, String> mLangNames;
+
+    private TranslateLangNameIndex(@NonNull final Map<String, String> langNames) {
+        this.mLangNames = Collections.unmodifiableMap(langNames);
+    }
+
+    /**
+     * Returns the current index, loading it from the languages table on the first call.
+     *
+     * @param context Used to access the ContentResolver.
+     * @return The lang names index.
+     */
+    @WorkerThread
+    public static TranslateLangNameIndex getInstance(@NonNull final Context context) {
+        TranslateLangNameIndex index = sIndex.get();
+        if (index != null) return index;
+
+        index = build(TranslateLangDbUtils.queryLangs(context));
+
+        // Someone could publish a fresher index while we were querying, prefer it.
+        if (sIndex.compareAndSet(null, index)) {
+            return index;
+        }
+
+        return sIndex.get();
+    }
+
+    /**
+     * Returns the index without touching the database, loads it in the background
+     * if it isn't loaded yet.
+     *
+     * @return The lang names index or an empty one, while it's loading.
+     */
+    @NonNull
+    public static TranslateLangNameIndex getLoaded(@NonNull final Context context) {
+        TranslateLangNameIndex index = sIndex.get();
+        if (index != null) return index;
+
+        warmUp(context);
+        return EMPTY;
+    }
+
+    /**
+     * Loads the index on the database executor, if it isn't loaded yet.
+     */
+    public static void warmUp(@NonNull final Context context) {
+        if (sIndex.get() != null) return;
+
+        final Context applicationContext = context.getApplicationContext();
+        TranslateDbExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                getInstance(applicationContext);
+            }
+        });
+    }
+
+    public static boolean isLoaded() {
+        return sIndex.get() != null;
+    }
+
+    @VisibleForTesting
+    static void clear() {
+        sIndex.set(null);
+    }
+
+    /**
+     * Replaces the current index with the one built from the given languages.
+     *
+     * @param langItems Supported languages that were just persisted.
+     */
+    public static void update(@Nullable final List<TranslateLangItem> langItems) {
+        sIndex.set(build(langItems));
+    }
+
+    @Nullable
+    public String getLangName(@NonNull final String langKey) {
+        return mLangNames.get(langKey);
+    }
+
+    /**
+     * Builds TranslateLangItem for the given lang keys.
+     * If one of the names is unknown (e.g. languages were not fetched yet) names are omitted.
+     */
+    public TranslateLangItem buildLangItem(@NonNull final String fromKey,
+                                          @NonNull final String toKey) {
+        String fromLangName = getLangName(fromKey);
+        String toLangName = getLangName(toKey);
+
+        if (TextUtils.isEmpty(fromLangName) || TextUtils.isEmpty(toLangName)) {
+            return new TranslateLangItem(fromKey, toKey, null, null);
+        }
+
+        return new TranslateLangItem(fromKey, toKey, fromLangName, toLangName);
+    }
+
+    private static TranslateLangNameIndex build(@Nullable final List<TranslateLangItem> langItems) {
+        if (ArrayUtils.isEmpty(langItems)) {
+            return EMPTY;
+        }
+
+        return new TranslateLangNameIndex(TranslateLangUtils.getLangNames(langItems));
+    }
+}
@@ -0,0 +1,341 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.yatranslate.utilities.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.annotation.AnyThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.ivanmagda.yatranslate.model.core.TranslateItem;
+import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.ivanmagda.yatranslate.data.TranslateContract.TranslationCacheEntry;
+
+/**
+ * Two-tier cache of the received translations: a small LRU in memory in front of
+ * the translation cache table.
+ * <p>
+ * Translations are keyed by the direction and the normalized text: leading, trailing and
+ * repeated whitespace is ignored, the case is not, as it may change the translation.
+ * Entries expire after the TTL, the table is trimmed to the least recently read entries.
+ */
+public final class TranslationCache {
+
+    private static final String LOG_TAG = TranslationCache.class.getSimpleName();
+
+    private static final long TTL_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    private static final int MAX_MEMORY_ENTRIES = 128;
+    private static final int MAX_DISK_ENTRIES = 2000;
+
+    /* The table is trimmed once per that many writes. */
+    private static final int TRIM_EVERY_PUTS = 32;
+
+    private static final String[] CACHE_PROJECTION = {
+            TranslationCacheEntry._ID,
+            TranslationCacheEntry.COLUMN_TRANSLATIONS,
+            TranslationCacheEntry.COLUMN_CREATED_AT
+    };
+
+    private static final int INDEX_ID = 0;
+    private static final int INDEX_TRANSLATIONS = 1;
+    private static final int INDEX_CREATED_AT = 2;
+
+    private static final String SELECTION_KEY = TranslationCacheEntry.COLUMN_TEXT_KEY + "=? AND " +
+            TranslationCacheEntry.COLUMN_LANG_TRANSLATE_FROM + "=? AND " +
+            TranslationCacheEntry.COLUMN_LANG_TRANSLATE_TO + "=?";
+
+    private static final String SELECTION_EXPIRED =
+            TranslationCacheEntry.COLUMN_CREATED_AT + "<?";
+
+    private static final String SELECTION_LEAST_RECENTLY_USED = TranslationCacheEntry._ID +
+            " IN (SELECT " + TranslationCacheEntry._ID + " FROM " +
+            TranslationCacheEntry.TABLE_NAME + " ORDER BY " +
+            TranslationCacheEntry.COLUMN_ACCESSED_AT + " DESC LIMIT -1 OFFSET " +
+            MAX_DISK_ENTRIES + ")";
+
+    private static volatile TranslationCache sInstance;
+
+    private static final class Entry {
+        final String[] translations;
+        final long createdAt;
+
+        Entry(String[] translations, long createdAt) {
+            this.translations = translations;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private final Context mContext;
+    private final LruCache<String, Entry> mMemoryCache = new LruCache<>(MAX_MEMORY_ENTRIES);
+
+    private final AtomicLong mMemoryHitCount = new AtomicLong();
+    private final AtomicLong mDiskHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mExpiredCount = new AtomicLong();
+    private final AtomicInteger mPutsSinceTrim = new AtomicInteger();
+
+    private TranslationCache(@NonNull final Context context) {
+        this.mContext = context.getApplicationContext();
+    }
+
+    public static TranslationCache getInstance(@NonNull final Context context) {
+        if (sInstance == null) {
+            synchronized (TranslationCache.class) {
+                if (sInstance == null) {
+                    sInstance = new TranslationCache(context);
+                }
+            }
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Looks up the memory only, cheap enough for the main thread.
+     *
+     * @return Translations or null if they aren't in memory.
+     */
+    @AnyThread
+    @Nullable
+    public List<TranslateItem> getFromMemory(@Nullable final String text,
+                                             @Nullable final TranslateLangItem langItem) {
+        String key = keyOf(text, langItem);
+        if (key == null) return null;
+
+        Entry entry = mMemoryCache.get(key);
+        if (entry == null) return null;
+
+        if (isExpired(entry.createdAt, System.currentTimeMillis())) {
+            mMemoryCache.remove(key);
+            return null;
+        }
+
+        mMemoryHitCount.incrementAndGet();
+        return buildItems(text, langItem, entry.translations);
+    }
+
+    /**
+     * Looks up the memory and then the cache table.
+     *
+     * @return Translations or null if they aren't cached, have expired or an argument is null.
+     */
+    @WorkerThread
+    @Nullable
+    public List<TranslateItem> get(@NonNull final String text,
+                                   @NonNull final TranslateLangItem langItem) {
+        //noinspection ConstantConditions
+        if (text == null || langItem == null) return null;
+
+        String key = keyOf(text, langItem);
+        if (key == null) return null;
+
+        List<TranslateItem> items = getFromMemory(text, langItem);
+        if (items != null) return items;
+
+        String[] selectionArgs = {
+                normalize(text), langItem.getFromLang(), langItem.getToLang()
+        };
+        Cursor cursor = mContext.getContentResolver().query(TranslationCacheEntry.CONTENT_URI,
+                CACHE_PROJECTION, SELECTION_KEY, selectionArgs, null);
+        if (cursor == null) {
+            mMissCount.incrementAndGet();
+            return null;
+        }
+
+        long id;
+        Entry entry;
+        try {
+            if (!cursor.moveToFirst()) {
+                mMissCount.incrementAndGet();
+                return null;
+            }
+
+            id = cursor.getLong(INDEX_ID);
+            entry = new Entry(TextUtils.split(cursor.getString(INDEX_TRANSLATIONS),
+                    TranslationCacheEntry.TRANSLATIONS_SEPARATOR),
+                    cursor.getLong(INDEX_CREATED_AT));
+        } finally {
+            cursor.close();
+        }
+
+        long now = System.currentTimeMillis();
+        String[] idArgs = {String.valueOf(id)};
+
+        if (isExpired(entry.createdAt, now)) {
+            mContext.getContentResolver().delete(TranslationCacheEntry.CONTENT_URI,
+                    TranslationCacheEntry._ID + "=?", idArgs);
+            mExpiredCount.incrementAndGet();
+            mMissCount.incrementAndGet();
+            return null;
+        }
+
+        ContentValues values = new ContentValues(1);
+        values.put(TranslationCacheEntry.COLUMN_ACCESSED_AT, now);
+        mContext.getContentResolver().update(TranslationCacheEntry.CONTENT_URI, values,
+                TranslationCacheEntry._ID + "=?", idArgs);
+
+        mMemoryCache.put(key, entry);
+        mDiskHitCount.incrementAndGet();
+
+        return buildItems(text, langItem, entry.translations);
+    }
+
+    /**
+     * Caches the translations of the text in memory and in the table.
+     */
+    @WorkerThread
+    public void put(@NonNull final String text, @NonNull final TranslateLangItem langItem,
+                    @Nullable final List<TranslateItem> translateItems) {
+        //noinspection ConstantConditions
+        if (text == null || langItem == null) return;
+
+        String key = keyOf(text, langItem);
+        if (key == null || translateItems == null || translateItems.isEmpty()) return;
+
+        String[] translations = new String[translateItems.size()];
+        for (int i = 0; i < translations.length; i++) {
+            translations[i] = translateItems.get(i).getTranslatedText();
+        }
+
+        long now = System.currentTimeMillis();
+        mMemoryCache.put(key, new Entry(translations, now));
+
+        ContentValues values = new ContentValues(6);
+        values.put(TranslationCacheEntry.COLUMN_LANG_TRANSLATE_FROM, langItem.getFromLang());
+        values.put(TranslationCacheEntry.COLUMN_LANG_TRANSLATE_TO, langItem.getToLang());
+        values.put(TranslationCacheEntry.COLUMN_TEXT_KEY, normalize(text));
+        values.put(TranslationCacheEntry.COLUMN_TRANSLATIONS,
+                TextUtils.join(TranslationCacheEntry.TRANSLATIONS_SEPARATOR, translations));
+        values.put(TranslationCacheEntry.COLUMN_CREATED_AT, now);
+        values.put(TranslationCacheEntry.COLUMN_ACCESSED_AT, now);
+        mContext.getContentResolver().insert(TranslationCacheEntry.CONTENT_URI, values);
+
+        if (mPutsSinceTrim.incrementAndGet() >= TRIM_EVERY_PUTS) {
+            mPutsSinceTrim.set(0);
+            trim(now);
+        }
+    }
+
+    /**
+     * Deletes the expired entries and the least recently read ones above the limit.
+     */
+    @WorkerThread
+    private void trim(long now) {
+        int expired = mContext.getContentResolver().delete(TranslationCacheEntry.CONTENT_URI,
+                SELECTION_EXPIRED, new String[]{String.valueOf(now - TTL_MILLIS)});
+        int evicted = mContext.getContentResolver().delete(TranslationCacheEntry.CONTENT_URI,
+                SELECTION_LEAST_RECENTLY_USED, null);
+
+        mExpiredCount.addAndGet(expired);
+        Log.d(LOG_TAG, "Trimmed: expired " + expired + ", evicted " + evicted + ". " + this);
+    }
+
+    public long getMemoryHitCount() {
+        return mMemoryHitCount.get();
+    }
+
+    public long getDiskHitCount() {
+        return mDiskHitCount.get();
+    }
+
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    public long getExpiredCount() {
+        return mExpiredCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "TranslationCache{" +
+                "memoryHits=" + mMemoryHitCount.get() +
+                ", diskHits=" + mDiskHitCount.get() +
+                ", misses=" + mMissCount.get() +
+                ", expired=" + mExpiredCount.get() +
+                ", memoryEvictions=" + mMemoryCache.evictionCount() +
+                '}';
+    }
+
+    private static boolean isExpired(long createdAt, long now) {
+        return now - createdAt > TTL_MILLIS;
+    }
+
+    @Nullable
+    private static String keyOf(@Nullable String text, @Nullable TranslateLangItem langItem) {
+        if (TextUtils.isEmpty(text) || langItem == null || !langItem.isValid()) return null;
+
+        String normalizedText = normalize(text);
+        if (normalizedText.isEmpty()) return null;
+
+        return langItem.getFromLang() + '\u0000' + langItem.getToLang() + '\u0000' +
+                normalizedText;
+    }
+
+    /**
+     * Trims the text and collapses the whitespace runs into single spaces.
+     */
+    @NonNull
+    private static String normalize(@NonNull String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = builder.length() > 0;
+            } else {
+                if (pendingSpace) builder.append(' ');
+                builder.append(c);
+                pendingSpace = false;
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static List<TranslateItem> buildItems(String text, TranslateLangItem langItem,
+                                                  String[] translations) {
+        List<TranslateItem> items = new ArrayList<>(translations.length);
+        for (String aTranslation : translations) {
+            items.add(new TranslateItem(text, aTranslation, langItem));
+        }
+
+        return items;
+    }
+}
@@ -23,16 +23,15 @@
 package com.ivanmagda.yatranslate.utilities.json;
 
 import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
-import android.text.TextUtils;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
 
 import com.ivanmagda.yatranslate.model.core.TranslateItem;
 import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.IOException;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.List;
@@ -42,50 +41,119 @@ import java.util.List;
  */
 public final class TranslateItemJsonUtils {
 
+    private static final String LOG_TAG = TranslateItemJsonUtils.class.getSimpleName();
+
     /* Response keys. */
     private static final String RESPONSE_CODE_KEY = "code";
-    private static final String LANG_RESPONSE_KEY = "lang";
     private static final String TEXT_RESPONSE_KEY = "text";
 
+    private static final int NO_RESPONSE_CODE = -1;
+
     private TranslateItemJsonUtils() {
     }
 
+    /**
+     * Pull-parses the translate response into the items.
+     *
+     * @param textToTranslate   Source text of the query.
+     * @param translateLangItem Translate direction of the query.
+     * @param reader            Response body reader.
+     * @return Translated items or null if the response can't be parsed or contains no text.
+     */
     public static List<TranslateItem> buildItems(
             @NonNull final String textToTranslate,
             @NonNull final TranslateLangItem translateLangItem,
-            @Nullable String response) {
-        if (TextUtils.isEmpty(response)) {
+            @NonNull final Reader reader) throws IOException {
+        List<String> translatedTexts = readTranslatedTexts(reader);
+        if (translatedTexts == null || translatedTexts.isEmpty()) return null;
+
+        List<TranslateItem> translatedItems = new ArrayList<>(translatedTexts.size());
+        for (String aTranslatedText : translatedTexts) {
+            translatedItems.add(new TranslateItem(textToTranslate, aTranslatedText,
+                    translateLangItem));
+        }
+
+        return translatedItems;
+    }
+
+    /**
+     * Pull-parses the batch translate response, the n-th translated text belongs to
+     * the n-th source text.
+     *
+     * @param textsToTranslate  Source texts of the query, in the request order.
+     * @param translateLangItem Translate direction of the query.
+     * @param reader            Response body reader.
+     * @return Translated item per source text or null if the response can't be parsed
+     * or doesn't match the source texts.
+     */
+    public static List<TranslateItem> buildBatchItems(
+            @NonNull final List<String> textsToTranslate,
+            @NonNull final TranslateLangItem translateLangItem,
+            @NonNull final Reader reader) throws IOException {
+        List<String> translatedTexts = readTranslatedTexts(reader);
+        if (translatedTexts == null) return null;
+
+        if (translatedTexts.size() != textsToTranslate.size()) {
+            Log.e(LOG_TAG, "Expected " + textsToTranslate.size() + " translations, received "
+                    + translatedTexts.size());
             return null;
         }
 
-        try {
-            JSONObject json = new JSONObject(response);
+        List<TranslateItem> translatedItems = new ArrayList<>(translatedTexts.size());
+        for (int i = 0; i < translatedTexts.size(); i++) {
+            translatedItems.add(new TranslateItem(textsToTranslate.get(i), translatedTexts.get(i),
+                    translateLangItem));
+        }
 
-            int responseCode = json.getInt(RESPONSE_CODE_KEY);
-            if (responseCode >= HttpURLConnection.HTTP_OK || responseCode <= 299) {
-                return parseTranslatedWords(textToTranslate, translateLangItem,
-                        json.getJSONArray(TEXT_RESPONSE_KEY));
+        return translatedItems;
+    }
+
+    /**
+     * @return Translated texts or null if the response can't be parsed or has non 2XX code.
+     */
+    private static List<String> readTranslatedTexts(@NonNull final Reader reader)
+            throws IOException {
+        int responseCode = NO_RESPONSE_CODE;
+        List<String> translatedTexts = null;
+
+        JsonReader jsonReader = new JsonReader(reader);
+        try {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                String name = jsonReader.nextName();
+                if (RESPONSE_CODE_KEY.equals(name)) {
+                    responseCode = jsonReader.nextInt();
+                } else if (TEXT_RESPONSE_KEY.equals(name)
+                        && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                    translatedTexts = readStringArray(jsonReader);
+                } else {
+                    jsonReader.skipValue();
+                }
             }
-        } catch (JSONException e) {
-            e.printStackTrace();
+            jsonReader.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            Log.e(LOG_TAG, "Unexpected translate response", e);
+            return null;
         }
 
-        return null;
+        if (responseCode < HttpURLConnection.HTTP_OK || responseCode > 299) {
+            return null;
+        }
+
+        return translatedTexts;
     }
 
-    private static List<TranslateItem> parseTranslatedWords(
-            @NonNull final String textToTranslate,
-            @NonNull final TranslateLangItem langItem,
-            @Nullable final JSONArray translatedWords) throws JSONException {
-        if (translatedWords == null || translatedWords.length() == 0) return null;
-
-        List<TranslateItem> translatedItems = new ArrayList<>(translatedWords.length());
-        for (int i = 0; i < translatedWords.length(); i++) {
-            String translateText = translatedWords.getString(i);
-            translatedItems.add(new TranslateItem(textToTranslate, translateText, langItem));
+    private static List<String> readStringArray(@NonNull final JsonReader jsonReader)
+            throws IOException {
+        List<String> strings = new ArrayList<>(1);
+
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            strings.add(jsonReader.nextString());
         }
+        jsonReader.endArray();
 
-        return translatedItems;
+        return strings;
     }
 
 }
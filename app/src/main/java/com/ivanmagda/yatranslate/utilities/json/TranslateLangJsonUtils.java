@@ -22,17 +22,17 @@
 
 package com.ivanmagda.yatranslate.utilities.json;
 
-import android.support.annotation.Nullable;
-import android.text.TextUtils;
+import android.support.annotation.NonNull;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
 
 import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
-import com.ivanmagda.yatranslate.utilities.TranslateLangUtils;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -40,43 +40,105 @@ import java.util.List;
  */
 public final class TranslateLangJsonUtils {
 
+    private static final String LOG_TAG = TranslateLangJsonUtils.class.getSimpleName();
+
     /* Response keys. */
     private static final String DIRS_RESPONSE_KEY = "dirs";
     private static final String LANGS_RESPONSE_KEY = "langs";
 
+    /* Yandex Translate API returns about six hundred directions and about ninety languages. */
+    private static final int EXPECTED_DIRS_COUNT = 640;
+    private static final int EXPECTED_LANGS_COUNT = 128;
+
+    private static final char LANG_DIR_SEPARATOR = '-';
+
     private TranslateLangJsonUtils() {
     }
 
-    public static List<TranslateLangItem> buildFromResponse(@Nullable String response) {
-        if (TextUtils.isEmpty(response)) {
+    /**
+     * Pull-parses the getLangs response, the keys may come in any order, so the directions
+     * are kept as pairs of language keys until the names are known.
+     *
+     * @param reader Response body reader.
+     * @return Supported translate directions or null if the response can't be parsed.
+     */
+    public static List<TranslateLangItem> buildFromResponse(@NonNull Reader reader)
+            throws IOException {
+        List<String> fromLangs = null;
+        List<String> toLangs = null;
+        HashMap<String, String> langNames = null;
+
+        JsonReader jsonReader = new JsonReader(reader);
+        try {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                String name = jsonReader.nextName();
+                if (DIRS_RESPONSE_KEY.equals(name) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                    fromLangs = new ArrayList<>(EXPECTED_DIRS_COUNT);
+                    toLangs = new ArrayList<>(EXPECTED_DIRS_COUNT);
+                    readDirs(jsonReader, fromLangs, toLangs);
+                } else if (LANGS_RESPONSE_KEY.equals(name)
+                        && jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                    langNames = readLangNames(jsonReader);
+                } else {
+                    jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            Log.e(LOG_TAG, "Unexpected getLangs response", e);
             return null;
         }
 
-        try {
-            JSONObject json = new JSONObject(response);
-            JSONArray dirs = json.getJSONArray(DIRS_RESPONSE_KEY);
-            JSONObject langs = json.getJSONObject(LANGS_RESPONSE_KEY);
+        if (fromLangs == null || langNames == null) return null;
 
-            if (dirs == null || langs == null) return null;
+        return buildItems(fromLangs, toLangs, langNames);
+    }
+
+    private static void readDirs(JsonReader jsonReader, List<String> fromLangs,
+                                 List<String> toLangs) throws IOException {
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            String langDir = jsonReader.nextString();
+            int separatorIndex = langDir.indexOf(LANG_DIR_SEPARATOR);
+            if (separatorIndex <= 0 || separatorIndex == langDir.length() - 1) {
+                Log.w(LOG_TAG, "Skipping malformed translate direction: " + langDir);
+                continue;
+            }
+
+            fromLangs.add(langDir.substring(0, separatorIndex));
+            toLangs.add(langDir.substring(separatorIndex + 1));
+        }
+        jsonReader.endArray();
+    }
+
+    private static HashMap<String, String> readLangNames(JsonReader jsonReader)
+            throws IOException {
+        HashMap<String, String> langNames = new HashMap<>(EXPECTED_LANGS_COUNT);
 
-            return parse(dirs, langs);
-        } catch (JSONException e) {
-            e.printStackTrace();
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            langNames.put(jsonReader.nextName(), jsonReader.nextString());
         }
+        jsonReader.endObject();
 
-        return null;
+        return langNames;
     }
 
-    private static List<TranslateLangItem> parse(JSONArray dirs, JSONObject langs) throws JSONException {
-        ArrayList<TranslateLangItem> parsedItems = new ArrayList<>(dirs.length());
+    private static List<TranslateLangItem> buildItems(List<String> fromLangs, List<String> toLangs,
+                                                      HashMap<String, String> langNames) {
+        ArrayList<TranslateLangItem> parsedItems = new ArrayList<>(fromLangs.size());
 
-        for (int i = 0; i < dirs.length(); i++) {
-            String langDir = dirs.getString(i);
+        for (int i = 0; i < fromLangs.size(); i++) {
+            String fromLang = fromLangs.get(i);
+            String toLang = toLangs.get(i);
+            String fromName = langNames.get(fromLang);
+            String toName = langNames.get(toLang);
 
-            String fromLang = TranslateLangUtils.getFromLangName(langDir);
-            String toLang = TranslateLangUtils.getToLangName(langDir);
-            String fromName = langs.getString(fromLang);
-            String toName = langs.getString(toLang);
+            if (fromName == null || toName == null) {
+                Log.w(LOG_TAG, "No language names for direction: " + fromLang + "-" + toLang);
+                continue;
+            }
 
             parsedItems.add(new TranslateLangItem(fromLang, toLang, fromName, toName));
         }
@@ -85,4 +147,3 @@ public final class TranslateLangJsonUtils {
     }
 
 }
-
@@ -44,13 +44,7 @@ public final class TranslateItemViewModel {
     // Public Methods.
 
     public int getFavoriteColor() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            return getFavoriteColorMarshmallow();
-        } else {
-            return mTranslateItem.isFavorite()
-                    ? mContext.getResources().getColor(R.color.colorAccent)
-                    : mContext.getResources().getColor(R.color.black);
-        }
+        return getFavoriteColor(mContext, mTranslateItem.isFavorite());
     }
 
     public String getFormattedLangKeys() {
@@ -58,12 +52,25 @@ public final class TranslateItemViewModel {
         return langItem.getFromLang() + " - " + langItem.getToLang();
     }
 
+    /**
+     * Color of the favorite toggle, lists resolve both colors once and reuse them.
+     */
+    public static int getFavoriteColor(@NonNull final Context context, boolean isFavorite) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return getFavoriteColorMarshmallow(context, isFavorite);
+        } else {
+            return isFavorite
+                    ? context.getResources().getColor(R.color.colorAccent)
+                    : context.getResources().getColor(R.color.black);
+        }
+    }
+
     // Private Methods.
 
     @RequiresApi(api = Build.VERSION_CODES.M)
-    private int getFavoriteColorMarshmallow() {
-        return mTranslateItem.isFavorite()
-                ? mContext.getColor(R.color.colorAccent)
-                : mContext.getColor(R.color.black);
+    private static int getFavoriteColorMarshmallow(Context context, boolean isFavorite) {
+        return isFavorite
+                ? context.getColor(R.color.colorAccent)
+                : context.getColor(R.color.black);
     }
 }
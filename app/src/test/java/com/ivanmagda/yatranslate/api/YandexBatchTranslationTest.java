@@ -0,0 +1,144 @@
+package com.ivanmagda.yatranslate.api;
+
+import com.ivanmagda.network.core.LocalServer;
+import com.ivanmagda.network.core.Resource;
+import com.ivanmagda.network.core.Result;
+import com.ivanmagda.network.core.Webservice;
+import com.ivanmagda.yatranslate.model.core.TranslateItem;
+import com.ivanmagda.yatranslate.model.core.TranslateLangItem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Batch translation requests, loaded from a local server standing in for the API.
+ * Robolectric provides the framework JSON reader and URI builder, the network is real.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class YandexBatchTranslationTest {
+
+    private static final TranslateLangItem EN_RU =
+            new TranslateLangItem("en", "ru", "English", "Russian");
+
+    private LocalServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = LocalServer.start();
+        URL url = mServer.url("/");
+        YandexTranslateApi.setApiEndpoint(url.getProtocol(), url.getAuthority());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        YandexTranslateApi.setApiEndpoint(null, null);
+        mServer.close();
+    }
+
+    @Test
+    public void textsArePackedUpToLengthLimit() throws Exception {
+        String first = repeat('a', YandexTranslateApi.MAX_TEXT_LENGTH / 2);
+        String second = repeat('b', YandexTranslateApi.MAX_TEXT_LENGTH / 2);
+        String third = repeat('c', 10);
+        List<String> texts = Arrays.asList(first, second, third, "cat");
+
+        List<Resource<List<TranslateItem>>> resources =
+                YandexTranslateApi.getBatchTranslation(texts, EN_RU);
+
+        assertEquals(2, resources.size());
+
+        mServer.enqueue(LocalServer.Response.ok(translateResponse("А", "Б")));
+        mServer.enqueue(LocalServer.Response.ok(translateResponse("В", "кот")));
+        List<TranslateItem> items = new ArrayList<>();
+        for (Resource<List<TranslateItem>> aResource : resources) {
+            items.addAll(Webservice.loadResult(aResource, null).getValue());
+        }
+
+        // The texts are sent as repeated parameters, in order.
+        assertEquals("text=" + first + "&text=" + second, mServer.takeRequestBody());
+        assertEquals("text=" + third + "&text=cat", mServer.takeRequestBody());
+
+        // Translations are mapped back to the texts across the requests.
+        assertEquals(texts.size(), items.size());
+        for (int i = 0; i < texts.size(); i++) {
+            assertEquals(texts.get(i), items.get(i).getTextToTranslate());
+            assertEquals(EN_RU, items.get(i).getTranslateLangItem());
+        }
+        assertEquals("Б", items.get(1).getTranslatedText());
+        assertEquals("кот", items.get(3).getTranslatedText());
+    }
+
+    @Test
+    public void oversizedTextIsSentAlone() {
+        String oversized = repeat('x', YandexTranslateApi.MAX_TEXT_LENGTH + 1);
+
+        List<Resource<List<TranslateItem>>> resources = YandexTranslateApi.getBatchTranslation(
+                Arrays.asList("cat", oversized, "dog"), EN_RU);
+
+        assertEquals(3, resources.size());
+    }
+
+    @Test
+    public void noTexts_noRequests() {
+        assertEquals(0, YandexTranslateApi.getBatchTranslation(
+                Collections.<String>emptyList(), EN_RU).size());
+    }
+
+    @Test
+    public void shortTextArray_failsBatch() throws Exception {
+        Resource<List<TranslateItem>> resource = getSingleResource(
+                Arrays.asList("cat", "dog", "house"));
+        mServer.enqueue(LocalServer.Response.ok(translateResponse("кот", "собака")));
+
+        Result<List<TranslateItem>> result = Webservice.loadResult(resource, null);
+
+        // The translations can't be matched to the texts, so none of them are used.
+        assertEquals(Result.Status.SUCCESS, result.getStatus());
+        assertNull(result.getValue());
+    }
+
+    @Test
+    public void missingTextArray_failsBatch() throws Exception {
+        Resource<List<TranslateItem>> resource = getSingleResource(Arrays.asList("cat", "dog"));
+        mServer.enqueue(LocalServer.Response.ok("{\"code\":200,\"lang\":\"en-ru\"}"));
+
+        assertNull(Webservice.loadResult(resource, null).getValue());
+    }
+
+    private static Resource<List<TranslateItem>> getSingleResource(List<String> texts) {
+        List<Resource<List<TranslateItem>>> resources =
+                YandexTranslateApi.getBatchTranslation(texts, EN_RU);
+        assertEquals(1, resources.size());
+        return resources.get(0);
+    }
+
+    private static String translateResponse(String... translatedTexts) {
+        StringBuilder builder = new StringBuilder("{\"code\":200,\"lang\":\"en-ru\",\"text\":[");
+        for (int i = 0; i < translatedTexts.length; i++) {
+            if (i > 0) builder.append(',');
+            builder.append('"').append(translatedTexts[i]).append('"');
+        }
+        return builder.append("]}").toString();
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
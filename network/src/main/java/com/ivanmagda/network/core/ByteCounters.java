@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.network.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes of the request and response bodies sent and received by the
+ * {@link Webservice}, before and after the compression.
+ */
+public final class ByteCounters {
+
+    /**
+     * Statistics snapshot.
+     */
+    public static final class Stats {
+        /* Request bodies before compression and as sent. */
+        public final long requestBytes;
+        public final long requestWireBytes;
+
+        /* Response bodies after decompression and as received. */
+        public final long responseBytes;
+        public final long responseWireBytes;
+
+        Stats(long requestBytes, long requestWireBytes, long responseBytes,
+              long responseWireBytes) {
+            this.requestBytes = requestBytes;
+            this.requestWireBytes = requestWireBytes;
+            this.responseBytes = responseBytes;
+            this.responseWireBytes = responseWireBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "requestBytes=" + requestBytes +
+                    ", requestWireBytes=" + requestWireBytes +
+                    ", responseBytes=" + responseBytes +
+                    ", responseWireBytes=" + responseWireBytes +
+                    '}';
+        }
+    }
+
+    private final AtomicLong mRequestBytes = new AtomicLong();
+    private final AtomicLong mRequestWireBytes = new AtomicLong();
+    private final AtomicLong mResponseBytes = new AtomicLong();
+    private final AtomicLong mResponseWireBytes = new AtomicLong();
+
+    void addRequest(long bytes, long wireBytes) {
+        mRequestBytes.addAndGet(bytes);
+        mRequestWireBytes.addAndGet(wireBytes);
+    }
+
+    void addResponse(long bytes, long wireBytes) {
+        mResponseBytes.addAndGet(bytes);
+        mResponseWireBytes.addAndGet(wireBytes);
+    }
+
+    public Stats getStats() {
+        return new Stats(mRequestBytes.get(), mRequestWireBytes.get(), mResponseBytes.get(),
+                mResponseWireBytes.get());
+    }
+}
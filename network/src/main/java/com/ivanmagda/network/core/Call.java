@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.ivanmagda.network.core;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A load of a resource, that was enqueued to the {@link WebserviceClient}.
+ * <p>
+ * It's a future of the load result, {@link #cancel()} drops the call from the queue or
+ * disconnects the connection of the call in progress.
+ */
+public final class Call<A> extends FutureTask<Result<A>> implements Comparable<Call<?>> {
+
+    /**
+     * Receives the result on the main thread, it's not called for the canceled calls.
+     */
+    public interface Callback<Value> {
+        void onResult(@NonNull Call<Value> call, @NonNull Result<Value> result);
+    }
+
+    /* Calls of the same priority are executed in the enqueue order. */
+    private static final AtomicLong sSequence = new AtomicLong();
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final Resource<A> mResource;
+    private final WebserviceClient.Priority mPriority;
+    private final long mSequence;
+    private final CancellationToken mCancellationToken;
+    private final Callback<A> mCallback;
+
+    private Call(@NonNull final Resource<A> resource,
+                 @NonNull final WebserviceClient.Priority priority,
+                 @NonNull final CancellationToken cancellationToken,
+                 @Nullable final Callback<A> callback) {
+        super(new Callable<Result<A>>() {
+            @Override
+            public Result<A> call() {
+                return Webservice.loadResult(resource, cancellationToken);
+            }
+        });
+        this.mResource = resource;
+        this.mPriority = priority;
+        this.mSequence = sSequence.getAndIncrement();
+        this.mCancellationToken = cancellationToken;
+        this.mCallback = callback;
+    }
+
+    static <A> Call<A> create(@NonNull final Resource<A> resource,
+                              @NonNull final WebserviceClient.Priority priority,
+                              @Nullable final Callback<A> callback) {
+        return new Call<>(resource, priority, new CancellationToken(), callback);
+    }
+
+    @NonNull
+    public Resource<A> getResource() {
+        return mResource;
+    }
+
+    @NonNull
+    public WebserviceClient.Priority getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * Cancels the call, the callback isn't called.
+     */
+    public void cancel() {
+        cancel(true);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean canceled = super.cancel(mayInterruptIfRunning);
+        mCancellationToken.cancel();
+        return canceled;
+    }
+
+    @Override
+    protected void done() {
+        if (mCallback == null || isCancelled()) return;
+
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Could be canceled while the result was on its way.
+                if (isCancelled() || mCancellationToken.isCanceled()) return;
+                mCallback.onResult(Call.this, getResult());
+            }
+        });
+    }
+
+    @Override
+    public int compareTo(@NonNull final Call<?> other) {
+        int result = mPriority.compareTo(other.mPriority);
+        if (result != 0) return result;
+
+        return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+    }
+
+    /**
+     * Called when the call is done, so the result is available without blocking.
+     */
+    @NonNull
+    private Result<A> getResult() {
+        try {
+            return get();
+        } catch (InterruptedException | CancellationException e) {
+            return Result.canceled();
+        } catch (ExecutionException e) {
+            // Thrown by a parse block, same as the loaders do.
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.ivanmagda.network.core;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Cancels a load that is in progress: the connection of the load is disconnected,
+ * so a blocked connect, write or read fails immediately.
+ */
+public final class CancellationToken {
+
+    private boolean mCanceled;
+    private Runnable mOnCancelListener;
+
+    public void cancel() {
+        Runnable listener;
+        synchronized (this) {
+            if (mCanceled) return;
+            mCanceled = true;
+            listener = mOnCancelListener;
+            mOnCancelListener = null;
+        }
+
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    public synchronized boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * Sets the listener, that is run on cancel. Runs it right away, if already canceled.
+     */
+    void setOnCancelListener(@Nullable final Runnable listener) {
+        synchronized (this) {
+            if (!mCanceled) {
+                mOnCancelListener = listener;
+                return;
+            }
+        }
+
+        if (listener != null) {
+            listener.run();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.network.core;
+
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stops sending requests to a host that keeps failing, so callers fail fast during an outage
+ * instead of waiting for the timeouts.
+ * <p>
+ * After the threshold of consecutive failures the circuit of the host opens and requests are
+ * rejected. When the open time has passed, a single trial request is let through: its success
+ * closes the circuit, its failure opens it again.
+ */
+public final class CircuitBreaker {
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    public static final long DEFAULT_OPEN_MILLIS = 15000;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        /* The trial request is allowed. */
+        HALF_OPEN
+    }
+
+    private static final class HostCircuit {
+        State state = State.CLOSED;
+        int failureCount;
+        long openedAt;
+        boolean isTrialInFlight;
+    }
+
+    private final int mFailureThreshold;
+    private final long mOpenMillis;
+    private final Map<String, HostCircuit> mCircuits = new HashMap<>();
+
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS);
+    }
+
+    /**
+     * @param failureThreshold Consecutive failures, that open the circuit.
+     * @param openMillis       Time the requests are rejected before the trial request.
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold <= 0: " + failureThreshold);
+        }
+
+        this.mFailureThreshold = failureThreshold;
+        this.mOpenMillis = openMillis;
+    }
+
+    /**
+     * @return Whether a request to the host could be sent now. In the half-open state only
+     * the first caller is allowed, it must report the outcome.
+     */
+    public synchronized boolean allowRequest(@NonNull final String host) {
+        HostCircuit circuit = mCircuits.get(host);
+        if (circuit == null) return true;
+
+        switch (updateState(circuit, System.currentTimeMillis())) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (circuit.isTrialInFlight) return false;
+                circuit.isTrialInFlight = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public synchronized void recordSuccess(@NonNull final String host) {
+        mCircuits.remove(host);
+    }
+
+    public synchronized void recordFailure(@NonNull final String host) {
+        HostCircuit circuit = mCircuits.get(host);
+        if (circuit == null) {
+            circuit = new HostCircuit();
+            mCircuits.put(host, circuit);
+        }
+
+        circuit.failureCount++;
+        if (circuit.state == State.HALF_OPEN || circuit.failureCount >= mFailureThreshold) {
+            circuit.state = State.OPEN;
+            circuit.openedAt = System.currentTimeMillis();
+        }
+        circuit.isTrialInFlight = false;
+    }
+
+    /**
+     * Lets another trial request through, when the allowed one was canceled.
+     */
+    public synchronized void recordCanceled(@NonNull final String host) {
+        HostCircuit circuit = mCircuits.get(host);
+        if (circuit != null) {
+            circuit.isTrialInFlight = false;
+        }
+    }
+
+    @NonNull
+    public synchronized State getState(@NonNull final String host) {
+        HostCircuit circuit = mCircuits.get(host);
+        return circuit == null ? State.CLOSED : updateState(circuit, System.currentTimeMillis());
+    }
+
+    /**
+     * @return Time until the trial request to the host is allowed, 0 if not open.
+     */
+    public synchronized long getRemainingOpenMillis(@NonNull final String host) {
+        HostCircuit circuit = mCircuits.get(host);
+        if (circuit == null || circuit.state != State.OPEN) return 0;
+
+        return Math.max(0, circuit.openedAt + mOpenMillis - System.currentTimeMillis());
+    }
+
+    private State updateState(HostCircuit circuit, long now) {
+        if (circuit.state == State.OPEN && now - circuit.openedAt >= mOpenMillis) {
+            circuit.state = State.HALF_OPEN;
+        }
+
+        return circuit.state;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.network.core;
+
+/**
+ * Keep-alive configuration of the platform connection pool used by the {@link Webservice}.
+ * <p>
+ * HttpURLConnection keeps idle connections in the platform pool and reuses them for the same
+ * host, as long as the response is fully read and the connection isn't disconnected.
+ * The pool itself can't be replaced or inspected, this class sets its limits and counts
+ * the connections the Webservice observed as new or reused, see {@link #getStats()}.
+ * <p>
+ * The platform reads pool configuration once, so a pool must be installed with
+ * {@link Webservice#setConnectionPool(ConnectionPool)} before the first request.
+ */
+public final class ConnectionPool {
+
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+    public static final long DEFAULT_KEEP_ALIVE_DURATION_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * Connection statistics snapshot.
+     * <p>
+     * Only HTTPS connections are counted: a connection is new when it performed a TLS
+     * handshake. Plain HTTP connections give no sign of reuse.
+     * <p>
+     * There is no eviction count. The platform keep-alive cache closes the idle connections
+     * on its own and doesn't expose it, a miss after an eviction looks like any other miss.
+     */
+    public static final class Stats {
+        public final long hitCount;
+        public final long missCount;
+
+        Stats(long hitCount, long missCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "hitCount=" + hitCount +
+                    ", missCount=" + missCount +
+                    '}';
+        }
+    }
+
+    private final int mMaxIdleConnections;
+    private final long mKeepAliveDurationMillis;
+
+    private long mHitCount;
+    private long mMissCount;
+
+    public ConnectionPool() {
+        this(DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_DURATION_MILLIS);
+    }
+
+    /**
+     * @param maxIdleConnections     Maximum number of idle connections to keep.
+     * @param keepAliveDurationMillis Time to keep an idle connection alive.
+     */
+    public ConnectionPool(int maxIdleConnections, long keepAliveDurationMillis) {
+        if (maxIdleConnections < 0) {
+            throw new IllegalArgumentException("maxIdleConnections < 0: " + maxIdleConnections);
+        }
+        if (keepAliveDurationMillis <= 0) {
+            throw new IllegalArgumentException("keepAliveDurationMillis <= 0: " + keepAliveDurationMillis);
+        }
+
+        this.mMaxIdleConnections = maxIdleConnections;
+        this.mKeepAliveDurationMillis = keepAliveDurationMillis;
+    }
+
+    public int getMaxIdleConnections() {
+        return mMaxIdleConnections;
+    }
+
+    public long getKeepAliveDurationMillis() {
+        return mKeepAliveDurationMillis;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(mHitCount, mMissCount);
+    }
+
+    /**
+     * Applies this pool configuration to the platform HttpURLConnection.
+     */
+    void install() {
+        System.setProperty("http.keepAlive", mMaxIdleConnections > 0 ? "true" : "false");
+        System.setProperty("http.maxConnections", String.valueOf(mMaxIdleConnections));
+        System.setProperty("http.keepAliveDuration", String.valueOf(mKeepAliveDurationMillis));
+    }
+
+    /**
+     * Called once an HTTPS connection is established.
+     *
+     * @param isReused Whether an idle connection was reused, i.e. there was no handshake.
+     */
+    synchronized void recordConnection(boolean isReused) {
+        if (isReused) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.network.core;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Receives the timings, sizes and outcome of the {@link Webservice} loads, e.g. to find out
+ * whether a slow load waits on the network, TLS or parsing.
+ * <p>
+ * Events are reported on the loading thread, so the methods should return quickly.
+ * A load reports a call start and end, and the phase events for each of its attempts.
+ * Phases, that didn't happen, e.g. DNS and connect of a reused connection, aren't reported.
+ * Connection phases are reported only for HTTPS, where a new connection is told from a reused
+ * one by its TLS handshake. Durations are in nanoseconds.
+ */
+public abstract class EventListener {
+
+    /**
+     * Ignores all of the events.
+     */
+    public static final EventListener NONE = new EventListener() {
+    };
+
+    public void callStart(@NonNull Resource<?> resource) {
+    }
+
+    public void dnsEnd(@NonNull Resource<?> resource, long durationNanos) {
+    }
+
+    /**
+     * @param durationNanos TCP connect time, excluding the TLS handshake.
+     */
+    public void connectEnd(@NonNull Resource<?> resource, long durationNanos) {
+    }
+
+    public void secureConnectEnd(@NonNull Resource<?> resource, long durationNanos) {
+    }
+
+    /**
+     * @param bytes     Body size before compression.
+     * @param wireBytes Body size as sent.
+     */
+    public void requestBodyEnd(@NonNull Resource<?> resource, long bytes, long wireBytes) {
+    }
+
+    /**
+     * @param timeToFirstByteNanos Time from sending the request to the status line.
+     */
+    public void responseHeadersEnd(@NonNull Resource<?> resource, int statusCode,
+                                   long timeToFirstByteNanos) {
+    }
+
+    /**
+     * @param durationNanos Time spent waiting on and decompressing the body.
+     * @param bytes         Body size after decompression.
+     * @param wireBytes     Body size as received.
+     */
+    public void responseBodyEnd(@NonNull Resource<?> resource, long durationNanos, long bytes,
+                                long wireBytes) {
+    }
+
+    /**
+     * @param durationNanos Time spent in the parse block, excluding waiting on the body.
+     */
+    public void parseEnd(@NonNull Resource<?> resource, long durationNanos) {
+    }
+
+    /**
+     * @param result        Outcome of the load, after all of the attempts.
+     * @param durationNanos Time of the whole load, including retries.
+     */
+    public void callEnd(@NonNull Resource<?> resource, @NonNull Result<?> result,
+                        int attemptCount, long durationNanos) {
+    }
+}
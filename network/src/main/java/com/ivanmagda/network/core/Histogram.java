@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.network.core;
+
+import java.util.Arrays;
+
+/**
+ * Distribution of durations in exponential buckets: each bucket is twice as wide as
+ * the previous one, from a microsecond to half a minute. So percentiles are approximate,
+ * within a factor of two, at a fixed memory cost.
+ */
+public final class Histogram {
+
+    /* Bucket i counts the values up to 2^i microseconds, the last one counts the rest. */
+    private static final int BUCKET_COUNT = 27;
+
+    /**
+     * Histogram snapshot, durations are in microseconds.
+     */
+    public static final class Snapshot {
+        public final long count;
+        public final long sumMicros;
+        public final long minMicros;
+        public final long maxMicros;
+        private final long[] mBucketCounts;
+
+        Snapshot(long count, long sumMicros, long minMicros, long maxMicros, long[] bucketCounts) {
+            this.count = count;
+            this.sumMicros = sumMicros;
+            this.minMicros = minMicros;
+            this.maxMicros = maxMicros;
+            this.mBucketCounts = bucketCounts;
+        }
+
+        public long getMeanMicros() {
+            return count == 0 ? 0 : sumMicros / count;
+        }
+
+        /**
+         * @param percentile In the range from 0 to 100.
+         * @return Upper bound of the bucket with the percentile, 0 if there are no values.
+         */
+        public long getPercentileMicros(double percentile) {
+            if (count == 0) return 0;
+
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            long seen = 0;
+            for (int i = 0; i < mBucketCounts.length; i++) {
+                seen += mBucketCounts[i];
+                if (seen >= rank) {
+                    return Math.min(maxMicros, upperBoundOf(i));
+                }
+            }
+
+            return maxMicros;
+        }
+
+        /**
+         * @return Count of the values in each bucket, bucket i is up to 2^i microseconds.
+         */
+        public long[] getBucketCounts() {
+            return mBucketCounts.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{" +
+                    "count=" + count +
+                    ", meanMicros=" + getMeanMicros() +
+                    ", p50Micros=" + getPercentileMicros(50) +
+                    ", p90Micros=" + getPercentileMicros(90) +
+                    ", p99Micros=" + getPercentileMicros(99) +
+                    ", maxMicros=" + maxMicros +
+                    '}';
+        }
+    }
+
+    private final long[] mBucketCounts = new long[BUCKET_COUNT];
+    private long mCount;
+    private long mSumMicros;
+    private long mMinMicros = Long.MAX_VALUE;
+    private long mMaxMicros;
+
+    public synchronized void record(long durationNanos) {
+        long micros = Math.max(0, durationNanos / 1000);
+
+        mBucketCounts[bucketOf(micros)]++;
+        mCount++;
+        mSumMicros += micros;
+        mMinMicros = Math.min(mMinMicros, micros);
+        mMaxMicros = Math.max(mMaxMicros, micros);
+    }
+
+    public synchronized Snapshot getSnapshot() {
+        return new Snapshot(mCount, mSumMicros, mCount == 0 ? 0 : mMinMicros, mMaxMicros,
+                mBucketCounts.clone());
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(mBucketCounts, 0);
+        mCount = 0;
+        mSumMicros = 0;
+        mMinMicros = Long.MAX_VALUE;
+        mMaxMicros = 0;
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros <= 1) return 0;
+
+        // Index of the smallest power of two, that is not less than the value.
+        int bucket = 64 - Long.numberOfLeadingZeros(micros - 1);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    private static long upperBoundOf(int bucket) {
+        return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.network.core;
+
+import android.support.annotation.NonNull;
+
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tracks the connect and response latency per endpoint and derives the timeouts from it.
+ * <p>
+ * Latency is smoothed as in the TCP retransmission timer: an exponentially weighted moving
+ * average of the samples and of their deviation, the timeout is the average plus four
+ * deviations. So slow networks get more time, while a hung socket on a fast network is
+ * abandoned quickly. Timeouts are kept between the floor and the ceiling, the defaults are
+ * used until enough samples are collected.
+ */
+public final class LatencyTracker {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 15000;
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 10000;
+    public static final int DEFAULT_TIMEOUT_FLOOR_MILLIS = 2000;
+    public static final int DEFAULT_TIMEOUT_CEILING_MILLIS = 30000;
+
+    /* Samples, that are required before the timeouts adapt. */
+    private static final int MIN_SAMPLE_COUNT = 3;
+
+    /* Gains of the average and the deviation, and the deviations in the timeout. */
+    private static final double MEAN_GAIN = 0.125;
+    private static final double DEVIATION_GAIN = 0.25;
+    private static final int DEVIATION_FACTOR = 4;
+
+    private static final int MAX_ENDPOINTS = 32;
+
+    /**
+     * Estimate snapshot.
+     */
+    public static final class Stats {
+        public final int sampleCount;
+        public final long meanMillis;
+        public final long deviationMillis;
+
+        Stats(int sampleCount, long meanMillis, long deviationMillis) {
+            this.sampleCount = sampleCount;
+            this.meanMillis = meanMillis;
+            this.deviationMillis = deviationMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "sampleCount=" + sampleCount +
+                    ", meanMillis=" + meanMillis +
+                    ", deviationMillis=" + deviationMillis +
+                    '}';
+        }
+    }
+
+    private static final class Estimate {
+        int sampleCount;
+        double mean;
+        double deviation;
+
+        void add(long sample) {
+            if (sampleCount == 0) {
+                mean = sample;
+                deviation = sample / 2.0;
+            } else {
+                deviation += DEVIATION_GAIN * (Math.abs(sample - mean) - deviation);
+                mean += MEAN_GAIN * (sample - mean);
+            }
+            sampleCount++;
+        }
+
+        int getTimeout(int defaultTimeout) {
+            if (sampleCount < MIN_SAMPLE_COUNT) return defaultTimeout;
+            double timeout = Math.ceil(mean + DEVIATION_FACTOR * deviation);
+            return (int) Math.min(Integer.MAX_VALUE, timeout);
+        }
+
+        Stats getStats() {
+            return new Stats(sampleCount, Math.round(mean), Math.round(deviation));
+        }
+    }
+
+    private static final class Endpoint {
+        final Estimate connect = new Estimate();
+        final Estimate response = new Estimate();
+    }
+
+    private final int mTimeoutFloorMillis;
+    private final int mTimeoutCeilingMillis;
+
+    /* The least recently used endpoints are dropped. */
+    private final Map<String, Endpoint> mEndpoints =
+            new LinkedHashMap<String, Endpoint>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Endpoint> eldest) {
+                    return size() > MAX_ENDPOINTS;
+                }
+            };
+
+    public LatencyTracker() {
+        this(DEFAULT_TIMEOUT_FLOOR_MILLIS, DEFAULT_TIMEOUT_CEILING_MILLIS);
+    }
+
+    /**
+     * @param timeoutFloorMillis   Shortest timeout, unless the resource overrides it.
+     * @param timeoutCeilingMillis Longest timeout, unless the resource overrides it.
+     */
+    public LatencyTracker(int timeoutFloorMillis, int timeoutCeilingMillis) {
+        if (timeoutFloorMillis <= 0 || timeoutFloorMillis > timeoutCeilingMillis) {
+            throw new IllegalArgumentException("Invalid timeout bounds: "
+                    + timeoutFloorMillis + ", " + timeoutCeilingMillis);
+        }
+
+        this.mTimeoutFloorMillis = timeoutFloorMillis;
+        this.mTimeoutCeilingMillis = timeoutCeilingMillis;
+    }
+
+    /**
+     * @return Timeout for establishing a new connection to the endpoint of the resource.
+     */
+    public synchronized int getConnectTimeoutMillis(@NonNull final Resource<?> resource) {
+        return bound(resource, endpointFor(resource).connect
+                .getTimeout(DEFAULT_CONNECT_TIMEOUT_MILLIS));
+    }
+
+    /**
+     * @return Timeout for waiting on the response of the endpoint of the resource.
+     */
+    public synchronized int getReadTimeoutMillis(@NonNull final Resource<?> resource) {
+        return bound(resource, endpointFor(resource).response
+                .getTimeout(DEFAULT_READ_TIMEOUT_MILLIS));
+    }
+
+    /**
+     * Records the time it took to establish a new connection, reused ones aren't recorded.
+     * A timed out connect is recorded with the timeout, so the next one waits longer.
+     */
+    public synchronized void recordConnect(@NonNull final Resource<?> resource, long millis) {
+        endpointFor(resource).connect.add(millis);
+    }
+
+    /**
+     * Records the time from sending the request to the first byte of the response.
+     * A timed out read is recorded with the timeout, so the next one waits longer.
+     */
+    public synchronized void recordResponse(@NonNull final Resource<?> resource, long millis) {
+        endpointFor(resource).response.add(millis);
+    }
+
+    @NonNull
+    public synchronized Stats getConnectStats(@NonNull final Resource<?> resource) {
+        return endpointFor(resource).connect.getStats();
+    }
+
+    @NonNull
+    public synchronized Stats getResponseStats(@NonNull final Resource<?> resource) {
+        return endpointFor(resource).response.getStats();
+    }
+
+    private int bound(Resource<?> resource, int timeout) {
+        int floor = resource.timeoutFloorMillis > 0
+                ? resource.timeoutFloorMillis : mTimeoutFloorMillis;
+        int ceiling = resource.timeoutCeilingMillis > 0
+                ? resource.timeoutCeilingMillis : mTimeoutCeilingMillis;
+
+        return Math.max(floor, Math.min(ceiling, timeout));
+    }
+
+    private Endpoint endpointFor(Resource<?> resource) {
+        String key = keyFor(resource);
+        Endpoint endpoint = mEndpoints.get(key);
+        if (endpoint == null) {
+            endpoint = new Endpoint();
+            mEndpoints.put(key, endpoint);
+        }
+
+        return endpoint;
+    }
+
+    /**
+     * The query is ignored, the requests of an endpoint differ only by parameters.
+     */
+    private static String keyFor(Resource<?> resource) {
+        URL url = resource.url;
+        return resource.httpMethodName + ' ' + url.getProtocol() + "://" + url.getAuthority()
+                + url.getPath();
+    }
+}
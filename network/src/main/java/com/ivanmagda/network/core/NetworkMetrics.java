@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.network.core;
+
+import android.support.annotation.NonNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Aggregates the {@link Webservice} events into histograms of the load phases, byte totals
+ * and outcome counts of all requests, install it with
+ * {@link Webservice#setEventListener(EventListener)}.
+ */
+public final class NetworkMetrics extends EventListener {
+
+    /**
+     * Metrics snapshot.
+     */
+    public static final class Snapshot {
+        public final Histogram.Snapshot dns;
+        public final Histogram.Snapshot connect;
+        public final Histogram.Snapshot secureConnect;
+        public final Histogram.Snapshot timeToFirstByte;
+        public final Histogram.Snapshot responseBody;
+        public final Histogram.Snapshot parse;
+        public final Histogram.Snapshot call;
+
+        public final long requestBytes;
+        public final long requestWireBytes;
+        public final long responseBytes;
+        public final long responseWireBytes;
+
+        private final Map<Result.Status, Long> mOutcomeCounts;
+
+        Snapshot(NetworkMetrics metrics) {
+            this.dns = metrics.mDns.getSnapshot();
+            this.connect = metrics.mConnect.getSnapshot();
+            this.secureConnect = metrics.mSecureConnect.getSnapshot();
+            this.timeToFirstByte = metrics.mTimeToFirstByte.getSnapshot();
+            this.responseBody = metrics.mResponseBody.getSnapshot();
+            this.parse = metrics.mParse.getSnapshot();
+            this.call = metrics.mCall.getSnapshot();
+            this.requestBytes = metrics.mRequestBytes;
+            this.requestWireBytes = metrics.mRequestWireBytes;
+            this.responseBytes = metrics.mResponseBytes;
+            this.responseWireBytes = metrics.mResponseWireBytes;
+            this.mOutcomeCounts = new EnumMap<>(metrics.mOutcomeCounts);
+        }
+
+        /**
+         * @return Number of the loads, that have finished with the status.
+         */
+        public long getOutcomeCount(@NonNull final Result.Status status) {
+            Long count = mOutcomeCounts.get(status);
+            return count != null ? count : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{" +
+                    "dns=" + dns +
+                    ", connect=" + connect +
+                    ", secureConnect=" + secureConnect +
+                    ", timeToFirstByte=" + timeToFirstByte +
+                    ", responseBody=" + responseBody +
+                    ", parse=" + parse +
+                    ", call=" + call +
+                    ", requestBytes=" + requestBytes +
+                    ", requestWireBytes=" + requestWireBytes +
+                    ", responseBytes=" + responseBytes +
+                    ", responseWireBytes=" + responseWireBytes +
+                    ", outcomeCounts=" + mOutcomeCounts +
+                    '}';
+        }
+    }
+
+    private final Histogram mDns = new Histogram();
+    private final Histogram mConnect = new Histogram();
+    private final Histogram mSecureConnect = new Histogram();
+    private final Histogram mTimeToFirstByte = new Histogram();
+    private final Histogram mResponseBody = new Histogram();
+    private final Histogram mParse = new Histogram();
+    private final Histogram mCall = new Histogram();
+
+    /* Guarded by this. */
+    private long mRequestBytes;
+    private long mRequestWireBytes;
+    private long mResponseBytes;
+    private long mResponseWireBytes;
+    private final Map<Result.Status, Long> mOutcomeCounts = new EnumMap<>(Result.Status.class);
+
+    @Override
+    public void dnsEnd(@NonNull Resource<?> resource, long durationNanos) {
+        mDns.record(durationNanos);
+    }
+
+    @Override
+    public void connectEnd(@NonNull Resource<?> resource, long durationNanos) {
+        mConnect.record(durationNanos);
+    }
+
+    @Override
+    public void secureConnectEnd(@NonNull Resource<?> resource, long durationNanos) {
+        mSecureConnect.record(durationNanos);
+    }
+
+    @Override
+    public synchronized void requestBodyEnd(@NonNull Resource<?> resource, long bytes,
+                                            long wireBytes) {
+        mRequestBytes += bytes;
+        mRequestWireBytes += wireBytes;
+    }
+
+    @Override
+    public void responseHeadersEnd(@NonNull Resource<?> resource, int statusCode,
+                                   long timeToFirstByteNanos) {
+        mTimeToFirstByte.record(timeToFirstByteNanos);
+    }
+
+    @Override
+    public void responseBodyEnd(@NonNull Resource<?> resource, long durationNanos, long bytes,
+                                long wireBytes) {
+        mResponseBody.record(durationNanos);
+        synchronized (this) {
+            mResponseBytes += bytes;
+            mResponseWireBytes += wireBytes;
+        }
+    }
+
+    @Override
+    public void parseEnd(@NonNull Resource<?> resource, long durationNanos) {
+        mParse.record(durationNanos);
+    }
+
+    @Override
+    public void callEnd(@NonNull Resource<?> resource, @NonNull Result<?> result,
+                        int attemptCount, long durationNanos) {
+        mCall.record(durationNanos);
+        synchronized (this) {
+            Long count = mOutcomeCounts.get(result.getStatus());
+            mOutcomeCounts.put(result.getStatus(), count != null ? count + 1 : 1);
+        }
+    }
+
+    @NonNull
+    public synchronized Snapshot getSnapshot() {
+        return new Snapshot(this);
+    }
+
+    public synchronized void reset() {
+        mDns.reset();
+        mConnect.reset();
+        mSecureConnect.reset();
+        mTimeToFirstByte.reset();
+        mResponseBody.reset();
+        mParse.reset();
+        mCall.reset();
+        mRequestBytes = 0;
+        mRequestWireBytes = 0;
+        mResponseBytes = 0;
+        mResponseWireBytes = 0;
+        mOutcomeCounts.clear();
+    }
+}
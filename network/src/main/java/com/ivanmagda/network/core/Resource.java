@@ -25,6 +25,8 @@ package com.ivanmagda.network.core;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.net.URL;
 
 /**
@@ -38,18 +40,119 @@ public final class Resource<A> {
         Result parse(@Nullable String response);
     }
 
+    /**
+     * Parses the response body directly from the stream, without copying it into a String.
+     * The reader decodes the body as UTF-8 and is closed by the {@link Webservice}.
+     */
+    public interface StreamParse<Result> {
+        Result parse(@NonNull Reader reader) throws IOException;
+    }
+
+    /**
+     * Provides the result, when the cached response is still valid.
+     */
+    public interface NotModified<Result> {
+        Result notModified();
+    }
+
     public final URL url;
     public String httpMethodName = "GET";
+
+    /**
+     * Request body and its content type, optional. The body is sent with a fixed length,
+     * so the httpMethodName should allow a body, e.g. "POST".
+     */
+    public byte[] body;
+    public String contentType;
+
+    /**
+     * Whether a large request body is sent gzip compressed. Only for the servers, that accept
+     * the Content-Encoding of the requests.
+     */
+    public boolean gzipBody = false;
+
+    /**
+     * Whether the response could be stored in and revalidated against the
+     * {@link Webservice} response cache.
+     */
+    public boolean cacheable = false;
+
+    /**
+     * Whether identical concurrent loads of the resource share a single request, see
+     * {@link SingleFlight}. Only for requests that are safe to share, e.g. idempotent ones.
+     */
+    public boolean coalesced = false;
+
+    /**
+     * Whether sending the request again has the same effect as sending it once, so a failed
+     * load could be retried, see {@link RetryPolicy}. GET, HEAD, PUT, DELETE and OPTIONS
+     * requests are idempotent regardless of the flag.
+     */
+    public boolean idempotent = false;
+
+    /**
+     * Bounds of the adaptive connect and read timeouts, see {@link LatencyTracker}.
+     * Zero uses the bounds of the tracker.
+     */
+    public int timeoutFloorMillis = 0;
+    public int timeoutCeilingMillis = 0;
+
+    /**
+     * Called on a 304 response instead of parsing the cached body again, optional.
+     */
+    public NotModified<A> notModifiedBlock;
+
+    /**
+     * Exactly one of the parse blocks is not null.
+     */
     public final Parse<A> parseBlock;
+    public final StreamParse<A> streamParseBlock;
 
     public Resource(@NonNull URL url, @NonNull Parse<A> parse) {
         this.url = url;
         this.parseBlock = parse;
+        this.streamParseBlock = null;
     }
 
     public Resource(@NonNull URL url, @NonNull String httpMethodName, @NonNull Parse<A> parse) {
         this.url = url;
         this.httpMethodName = httpMethodName;
         this.parseBlock = parse;
+        this.streamParseBlock = null;
+    }
+
+    public Resource(@NonNull URL url, @NonNull StreamParse<A> parse) {
+        this.url = url;
+        this.parseBlock = null;
+        this.streamParseBlock = parse;
+    }
+
+    public Resource(@NonNull URL url, @NonNull String httpMethodName,
+                    @NonNull StreamParse<A> parse) {
+        this.url = url;
+        this.httpMethodName = httpMethodName;
+        this.parseBlock = null;
+        this.streamParseBlock = parse;
+    }
+
+    public boolean hasBody() {
+        return body != null;
+    }
+
+    public boolean isStreaming() {
+        return streamParseBlock != null;
+    }
+
+    public boolean isIdempotent() {
+        switch (httpMethodName) {
+            case "GET":
+            case "HEAD":
+            case "PUT":
+            case "DELETE":
+            case "OPTIONS":
+                return true;
+            default:
+                return idempotent;
+        }
     }
 }
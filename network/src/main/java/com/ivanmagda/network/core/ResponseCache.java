@@ -0,0 +1,283 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.network.core;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Disk cache of the response bodies, that are stored with their validators (ETag and
+ * Last-Modified), so an unchanged resource could be revalidated with a conditional request.
+ * <p>
+ * Each entry is a pair of files named after the MD5 of the URL: the validators and the body.
+ */
+public final class ResponseCache {
+
+    /* Log tag for debug statements. */
+    private static final String LOG_TAG = ResponseCache.class.getSimpleName();
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private static final String META_FILE_EXTENSION = ".meta";
+    private static final String BODY_FILE_EXTENSION = ".body";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * Cached response validators.
+     */
+    public static final class Entry {
+        public final String etag;
+        public final String lastModified;
+        final File bodyFile;
+
+        Entry(String etag, String lastModified, File bodyFile) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.bodyFile = bodyFile;
+        }
+    }
+
+    private final File mDirectory;
+
+    private long mHitCount;
+    private long mMissCount;
+
+    /**
+     * @param directory Directory to store the responses in, usually a sub directory of the
+     *                  application cache dir. Created on the first write.
+     */
+    public ResponseCache(@NonNull final File directory) {
+        this.mDirectory = directory;
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return Cached entry for the URL or null if there is no one.
+     */
+    @Nullable
+    public synchronized Entry get(@NonNull final URL url) {
+        String key = keyFor(url);
+        File metaFile = new File(mDirectory, key + META_FILE_EXTENSION);
+        File bodyFile = new File(mDirectory, key + BODY_FILE_EXTENSION);
+        if (!metaFile.exists() || !bodyFile.exists()) {
+            return null;
+        }
+
+        DataInputStream inputStream = null;
+        try {
+            inputStream = new DataInputStream(new FileInputStream(metaFile));
+            String etag = inputStream.readUTF();
+            String lastModified = inputStream.readUTF();
+
+            return new Entry(TextUtils.isEmpty(etag) ? null : etag,
+                    TextUtils.isEmpty(lastModified) ? null : lastModified, bodyFile);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed to read cache entry for URL: " + url, e);
+            remove(url);
+            return null;
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Adds conditional request headers for the cached entry.
+     */
+    void applyValidators(@NonNull final HttpURLConnection connection, @Nullable final Entry entry) {
+        if (entry == null) {
+            return;
+        }
+
+        if (entry.etag != null) {
+            connection.setRequestProperty(HEADER_IF_NONE_MATCH, entry.etag);
+        }
+        if (entry.lastModified != null) {
+            connection.setRequestProperty(HEADER_IF_MODIFIED_SINCE, entry.lastModified);
+        }
+    }
+
+    /**
+     * Records the revalidation result, for the statistics.
+     */
+    synchronized void trackRevalidation(boolean notModified) {
+        if (notModified) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+    }
+
+    /**
+     * @return Stream of the cached body.
+     */
+    InputStream openBody(@NonNull final Entry entry) throws IOException {
+        return new FileInputStream(entry.bodyFile);
+    }
+
+    /**
+     * Stores the response body, if the response has any validators. A stored body is read
+     * from the network stream, which is closed then, also when storing fails.
+     *
+     * @return Stream of the stored body or null if the response isn't cacheable. The network
+     * stream isn't touched then, the caller still owns it and reads the body from it.
+     */
+    @Nullable
+    InputStream put(@NonNull final URL url, @NonNull final HttpURLConnection connection,
+                    @NonNull final InputStream networkStream) throws IOException {
+        String etag = connection.getHeaderField(HEADER_ETAG);
+        String lastModified = connection.getHeaderField(HEADER_LAST_MODIFIED);
+        if (etag == null && lastModified == null) {
+            remove(url);
+            return null;
+        }
+
+        String key = keyFor(url);
+        File tempBodyFile;
+        try {
+            synchronized (this) {
+                if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+                    throw new IOException("Failed to create cache directory: " + mDirectory);
+                }
+            }
+            tempBodyFile = File.createTempFile(key, TEMP_FILE_EXTENSION, mDirectory);
+        } catch (IOException e) {
+            closeQuietly(networkStream);
+            throw e;
+        }
+
+        // The network read happens outside of the lock, so other entries stay available.
+        OutputStream bodyStream = new FileOutputStream(tempBodyFile);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = networkStream.read(buffer)) != -1) {
+                bodyStream.write(buffer, 0, count);
+            }
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            tempBodyFile.delete();
+            throw e;
+        } finally {
+            closeQuietly(bodyStream);
+            closeQuietly(networkStream);
+        }
+
+        synchronized (this) {
+            File metaFile = new File(mDirectory, key + META_FILE_EXTENSION);
+            File bodyFile = new File(mDirectory, key + BODY_FILE_EXTENSION);
+            File tempMetaFile = new File(mDirectory, key + META_FILE_EXTENSION + TEMP_FILE_EXTENSION);
+
+            DataOutputStream metaStream = new DataOutputStream(new FileOutputStream(tempMetaFile));
+            try {
+                metaStream.writeUTF(etag == null ? "" : etag);
+                metaStream.writeUTF(lastModified == null ? "" : lastModified);
+            } finally {
+                closeQuietly(metaStream);
+            }
+
+            // Meta file is the commit mark, a body without it is never read.
+            //noinspection ResultOfMethodCallIgnored
+            metaFile.delete();
+            if (!tempBodyFile.renameTo(bodyFile) || !tempMetaFile.renameTo(metaFile)) {
+                //noinspection ResultOfMethodCallIgnored
+                tempBodyFile.delete();
+                throw new IOException("Failed to commit cache entry for URL: " + url);
+            }
+
+            return new FileInputStream(bodyFile);
+        }
+    }
+
+    /**
+     * Removes the cached entry for the URL.
+     */
+    public synchronized void remove(@NonNull final URL url) {
+        String key = keyFor(url);
+        //noinspection ResultOfMethodCallIgnored
+        new File(mDirectory, key + META_FILE_EXTENSION).delete();
+        //noinspection ResultOfMethodCallIgnored
+        new File(mDirectory, key + BODY_FILE_EXTENSION).delete();
+    }
+
+    private static String keyFor(@NonNull final URL url) {
+        String urlString = url.toString();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(urlString.getBytes("UTF-8"));
+
+            StringBuilder builder = new StringBuilder(hash.length * 2);
+            for (byte aByte : hash) {
+                builder.append(Character.forDigit((aByte >> 4) & 0xF, 16))
+                        .append(Character.forDigit(aByte & 0xF, 16));
+            }
+
+            return builder.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return Integer.toHexString(urlString.hashCode());
+        }
+    }
+
+    private static void closeQuietly(@Nullable final Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
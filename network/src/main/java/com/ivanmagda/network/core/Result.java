@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.network.core;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+
+/**
+ * Outcome of a resource load: the parsed value or the reason the load has failed.
+ *
+ * @param <A> The parsed value type.
+ */
+public final class Result<A> {
+
+    public enum Status {
+        SUCCESS,
+        /* Connecting or reading the response took too long. */
+        TIMEOUT,
+        /* The connection has failed, e.g. unknown host or connection reset. */
+        NETWORK_ERROR,
+        /* The server responded with a status code other then 2XX. */
+        HTTP_ERROR,
+        /* The response body is malformed or truncated, the parser has failed to read it. */
+        PARSE_ERROR,
+        /* The host is failing, the request wasn't sent, see {@link CircuitBreaker}. */
+        CIRCUIT_OPEN,
+        CANCELED
+    }
+
+    /* Too Many Requests, not declared by HttpURLConnection. */
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final Status mStatus;
+    private final A mValue;
+    private final int mHttpStatusCode;
+    private final IOException mException;
+    private final long mRetryAfterMillis;
+
+    private Result(Status status, A value, int httpStatusCode, IOException exception,
+                   long retryAfterMillis) {
+        this.mStatus = status;
+        this.mValue = value;
+        this.mHttpStatusCode = httpStatusCode;
+        this.mException = exception;
+        this.mRetryAfterMillis = retryAfterMillis;
+    }
+
+    static <A> Result<A> success(@Nullable A value, int httpStatusCode) {
+        return new Result<>(Status.SUCCESS, value, httpStatusCode, null, -1);
+    }
+
+    /**
+     * @param retryAfterMillis Delay requested by the Retry-After header, -1 if none.
+     */
+    static <A> Result<A> httpError(int httpStatusCode, long retryAfterMillis) {
+        return new Result<>(Status.HTTP_ERROR, null, httpStatusCode, null, retryAfterMillis);
+    }
+
+    /**
+     * @param exception Failure of the parser, not of the connection.
+     */
+    static <A> Result<A> parseError(@NonNull IOException exception) {
+        return new Result<>(Status.PARSE_ERROR, null, 0, exception, -1);
+    }
+
+    static <A> Result<A> failure(@NonNull IOException exception) {
+        Status status = exception instanceof SocketTimeoutException
+                ? Status.TIMEOUT : Status.NETWORK_ERROR;
+        return new Result<>(status, null, 0, exception, -1);
+    }
+
+    /**
+     * @param retryAfterMillis Time until the host is tried again.
+     */
+    static <A> Result<A> circuitOpen(long retryAfterMillis) {
+        return new Result<>(Status.CIRCUIT_OPEN, null, 0, null, retryAfterMillis);
+    }
+
+    static <A> Result<A> canceled() {
+        return new Result<>(Status.CANCELED, null, 0, null, -1);
+    }
+
+    @NonNull
+    public Status getStatus() {
+        return mStatus;
+    }
+
+    public boolean isSuccess() {
+        return mStatus == Status.SUCCESS;
+    }
+
+    /**
+     * @return Parsed value, null unless the load has succeeded.
+     */
+    @Nullable
+    public A getValue() {
+        return mValue;
+    }
+
+    /**
+     * @return Response status code, 0 if there is no response.
+     */
+    public int getHttpStatusCode() {
+        return mHttpStatusCode;
+    }
+
+    /**
+     * @return Cause of the timeout, the network or the parse error.
+     */
+    @Nullable
+    public IOException getException() {
+        return mException;
+    }
+
+    /**
+     * @return Delay the server or the circuit breaker asks to wait before the next request,
+     * -1 if not specified.
+     */
+    public long getRetryAfterMillis() {
+        return mRetryAfterMillis;
+    }
+
+    /**
+     * @return Whether the failure is transient, so the same request could succeed later.
+     */
+    public boolean isTransientFailure() {
+        switch (mStatus) {
+            case TIMEOUT:
+            case NETWORK_ERROR:
+                return true;
+            case HTTP_ERROR:
+                return mHttpStatusCode == HttpURLConnection.HTTP_CLIENT_TIMEOUT
+                        || mHttpStatusCode == HTTP_TOO_MANY_REQUESTS
+                        || isTransientServerError();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return Whether the server has failed to handle the request for the time being.
+     * Other 5XX statuses, e.g. 501 Not Implemented, are answers about the request itself.
+     */
+    boolean isTransientServerError() {
+        return mStatus == Status.HTTP_ERROR
+                && (mHttpStatusCode == HttpURLConnection.HTTP_INTERNAL_ERROR
+                || mHttpStatusCode == HttpURLConnection.HTTP_BAD_GATEWAY
+                || mHttpStatusCode == HttpURLConnection.HTTP_UNAVAILABLE
+                || mHttpStatusCode == HttpURLConnection.HTTP_GATEWAY_TIMEOUT);
+    }
+
+    @Override
+    public String toString() {
+        return "Result{" +
+                "status=" + mStatus +
+                ", httpStatusCode=" + mHttpStatusCode +
+                ", exception=" + mException +
+                ", retryAfterMillis=" + mRetryAfterMillis +
+                '}';
+    }
+}
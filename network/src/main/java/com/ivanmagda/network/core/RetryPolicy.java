@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.network.core;
+
+import android.support.annotation.NonNull;
+
+import java.util.Random;
+
+/**
+ * Decides whether and when a failed load of an idempotent resource is retried.
+ * <p>
+ * Delays grow exponentially with full jitter, so clients that failed together don't retry
+ * together. A Retry-After of the response is honoured instead, unless it's longer than the
+ * maximum delay. Retries stop once the attempts or the total time budget are exhausted.
+ */
+public final class RetryPolicy {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 500;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 4000;
+    public static final long DEFAULT_MAX_ELAPSED_MILLIS = 20000;
+
+    /**
+     * Performs a single attempt.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0, 0);
+
+    /* Keeps the shift in range, the delay is capped long before. */
+    private static final int MAX_BACKOFF_SHIFT = 20;
+
+    private final int mMaxAttempts;
+    private final long mInitialDelayMillis;
+    private final long mMaxDelayMillis;
+    private final long mMaxElapsedMillis;
+    private final Random mRandom = new Random();
+
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS,
+                DEFAULT_MAX_ELAPSED_MILLIS);
+    }
+
+    /**
+     * @param maxAttempts        Attempts including the first one.
+     * @param initialDelayMillis Upper bound of the delay before the first retry.
+     * @param maxDelayMillis     Upper bound of any delay, longer Retry-After stops retrying.
+     * @param maxElapsedMillis   No retry starts after this time since the first attempt.
+     */
+    public RetryPolicy(int maxAttempts, long initialDelayMillis, long maxDelayMillis,
+                       long maxElapsedMillis) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts <= 0: " + maxAttempts);
+        }
+
+        this.mMaxAttempts = maxAttempts;
+        this.mInitialDelayMillis = initialDelayMillis;
+        this.mMaxDelayMillis = maxDelayMillis;
+        this.mMaxElapsedMillis = maxElapsedMillis;
+    }
+
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     * @param attemptCount  Attempts performed so far.
+     * @param elapsedMillis Time since the first attempt has started.
+     * @param result        Result of the last attempt.
+     * @return Delay before the next attempt, -1 if the load shouldn't be retried.
+     */
+    public long getRetryDelayMillis(int attemptCount, long elapsedMillis,
+                                    @NonNull final Result<?> result) {
+        if (attemptCount >= mMaxAttempts || !result.isTransientFailure()) {
+            return -1;
+        }
+
+        long delay;
+        if (result.getRetryAfterMillis() >= 0) {
+            delay = result.getRetryAfterMillis();
+            if (delay > mMaxDelayMillis) {
+                return -1;
+            }
+        } else {
+            int shift = Math.min(attemptCount - 1, MAX_BACKOFF_SHIFT);
+            long bound = Math.min(mMaxDelayMillis, mInitialDelayMillis << shift);
+            delay = (long) (mRandom.nextDouble() * bound);
+        }
+
+        return elapsedMillis + delay > mMaxElapsedMillis ? -1 : delay;
+    }
+}
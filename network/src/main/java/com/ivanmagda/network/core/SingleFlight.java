@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.ivanmagda.network.core;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Coalesces identical in-flight requests: the first caller performs the request, callers
+ * that come while it's in flight wait for it and receive the same result.
+ * <p>
+ * Requests are identical when they have the same method, URL and body, and are parsed by
+ * the same parse code. The result object is shared between the callers, so it should be
+ * treated as read-only.
+ */
+public final class SingleFlight {
+
+    /**
+     * Statistics snapshot.
+     */
+    public static final class Stats {
+        public final long callCount;
+        public final long joinedCount;
+
+        Stats(long callCount, long joinedCount) {
+            this.callCount = callCount;
+            this.joinedCount = joinedCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "callCount=" + callCount +
+                    ", joinedCount=" + joinedCount +
+                    '}';
+        }
+    }
+
+    /**
+     * Identity of a request. URL is compared as a string, URL.equals may resolve hosts.
+     */
+    private static final class Key {
+        private final String method;
+        private final String url;
+        private final byte[] body;
+        private final Class<?> parseClass;
+        private final Class<?> notModifiedClass;
+        private final boolean cacheable;
+        private final int hashCode;
+
+        Key(Resource<?> resource) {
+            this.method = resource.httpMethodName;
+            this.url = resource.url.toString();
+            this.body = resource.body;
+            this.parseClass = resource.isStreaming()
+                    ? resource.streamParseBlock.getClass()
+                    : resource.parseBlock.getClass();
+            this.notModifiedClass = resource.notModifiedBlock == null
+                    ? null
+                    : resource.notModifiedBlock.getClass();
+            this.cacheable = resource.cacheable;
+
+            int result = method.hashCode();
+            result = 31 * result + url.hashCode();
+            result = 31 * result + Arrays.hashCode(body);
+            result = 31 * result + parseClass.hashCode();
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+
+            Key other = (Key) obj;
+            return hashCode == other.hashCode &&
+                    cacheable == other.cacheable &&
+                    method.equals(other.method) &&
+                    url.equals(other.url) &&
+                    parseClass == other.parseClass &&
+                    notModifiedClass == other.notModifiedClass &&
+                    Arrays.equals(body, other.body);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private final Map<Key, FutureTask<?>> mInFlight = new HashMap<>();
+
+    private long mCallCount;
+    private long mJoinedCount;
+
+    /**
+     * Performs the call or waits for the identical one, that is already in flight.
+     *
+     * @param resource Identifies the request.
+     * @param call     Performs the request, on the calling thread.
+     * @return Result of the call, null if the waiting thread was interrupted.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R execute(@NonNull final Resource<?> resource, @NonNull final Callable<R> call) {
+        Key key = new Key(resource);
+        FutureTask<R> task;
+        boolean isOwner = false;
+
+        synchronized (mInFlight) {
+            task = (FutureTask<R>) mInFlight.get(key);
+            if (task == null) {
+                task = new FutureTask<>(call);
+                mInFlight.put(key, task);
+                isOwner = true;
+                mCallCount++;
+            } else {
+                mJoinedCount++;
+            }
+        }
+
+        if (isOwner) {
+            try {
+                task.run();
+            } finally {
+                synchronized (mInFlight) {
+                    mInFlight.remove(key);
+                }
+            }
+        }
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (mInFlight) {
+            return new Stats(mCallCount, mJoinedCount);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.network.core;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Marks the start of the TLS handshake. A connect without the mark has reused an idle
+ * connection, a connect with it could be split into TCP connect and TLS handshake.
+ * <p>
+ * HttpURLConnection layers TLS over the connected socket, that's when the handshake starts.
+ * The connection is established on the loading thread, so the mark is kept per thread.
+ * Sockets are created by the platform factory, so TLS extensions are configured as usual.
+ * Unconnected sockets aren't supported, as by default, so the connection is always layered.
+ */
+final class TimingSSLSocketFactory extends SSLSocketFactory {
+
+    private static final ThreadLocal<Long> sHandshakeStart = new ThreadLocal<>();
+
+    private static TimingSSLSocketFactory sInstance;
+
+    private final SSLSocketFactory mDelegate;
+
+    private TimingSSLSocketFactory(SSLSocketFactory delegate) {
+        this.mDelegate = delegate;
+    }
+
+    /**
+     * The same instance is used for all connections, HttpURLConnection pools connections
+     * per socket factory.
+     */
+    static synchronized TimingSSLSocketFactory getInstance() {
+        if (sInstance == null) {
+            sInstance = new TimingSSLSocketFactory(HttpsURLConnection.getDefaultSSLSocketFactory());
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * @return System.nanoTime() of the handshake start on this thread, -1 if there wasn't
+     * one since the last call.
+     */
+    static long takeHandshakeStart() {
+        Long start = sHandshakeStart.get();
+        sHandshakeStart.remove();
+        return start != null ? start : -1;
+    }
+
+    @Override
+    public Socket createSocket(Socket socket, String host, int port, boolean autoClose)
+            throws IOException {
+        sHandshakeStart.set(System.nanoTime());
+        return mDelegate.createSocket(socket, host, port, autoClose);
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return mDelegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return mDelegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return mDelegate.createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort)
+            throws IOException {
+        return mDelegate.createSocket(host, port, localHost, localPort);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return mDelegate.createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress,
+                               int localPort) throws IOException {
+        return mDelegate.createSocket(address, port, localAddress, localPort);
+    }
+}
@@ -22,14 +22,33 @@
 
 package com.ivanmagda.network.core;
 
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
+import android.util.MalformedJsonException;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.net.ssl.HttpsURLConnection;
 
 /**
  * Provide an abstraction over the webservice.
@@ -40,86 +59,673 @@ public final class Webservice {
     /* Log tag for debug statements. */
     private static final String LOG_TAG = Webservice.class.getSimpleName();
 
-    /* HttpURLConnection configuration constants */
-    private static final int READ_TIME_OUT = 10000;
-    private static final int CONNECTION_TIME_OUT = 15000;
+    private static final String HEADER_CONTENT_TYPE = "Content-Type";
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+
+    /*
+     * Compressed responses are requested explicitly, so the bodies are decompressed here and
+     * both of their sizes are known. The platform doesn't decompress, once the header is set.
+     */
+    private static final String ENCODING_GZIP = "gzip";
+    private static final String ENCODING_DEFLATE = "deflate";
+    private static final String ACCEPT_ENCODING = ENCODING_GZIP + ", " + ENCODING_DEFLATE;
+
+    /* Smaller request bodies don't fill a packet, compressing them gains nothing. */
+    private static final int MIN_GZIP_BODY_LENGTH = 1024;
+
+    /* Responses are always decoded as UTF-8, regardless of the platform default charset. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /* Per thread read buffers, reused between the requests. */
+    private static final int BUFFER_SIZE = 4096;
+    private static final ThreadLocal<char[]> sCharBuffer = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[BUFFER_SIZE];
+        }
+    };
+    private static final ThreadLocal<byte[]> sByteBuffer = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    /* Keep-alive connections bookkeeping. */
+    private static ConnectionPool sConnectionPool;
+
+    /* Validators and bodies of the cacheable responses, optional. */
+    private static ResponseCache sResponseCache;
+
+    /* In-flight loads of the coalesced resources. */
+    private static final SingleFlight sSingleFlight = new SingleFlight();
+
+    /* Retries of the idempotent resources. */
+    private static RetryPolicy sRetryPolicy = new RetryPolicy();
+
+    /* Fails fast the requests to the failing hosts. */
+    private static CircuitBreaker sCircuitBreaker = new CircuitBreaker();
+
+    /* Connect and read timeouts of the endpoints. */
+    private static LatencyTracker sLatencyTracker = new LatencyTracker();
+
+    /* Sizes of the bodies before and after compression. */
+    private static final ByteCounters sByteCounters = new ByteCounters();
+
+    /* Timings, sizes and outcomes of the loads. */
+    private static EventListener sEventListener = EventListener.NONE;
+
+    static {
+        setConnectionPool(new ConnectionPool());
+    }
+
+    /**
+     * Parser failure on the received body. Thrown only to tell it from the connection failures,
+     * the cause is the parser exception.
+     */
+    private static final class ParseFailure extends IOException {
+        ParseFailure(IOException cause) {
+            super(cause);
+        }
+    }
 
     private Webservice() {
     }
 
+    /**
+     * Replaces the connection pool configuration.
+     * Should be called before the first request, the platform reads pool limits once.
+     *
+     * @param connectionPool The pool to use.
+     */
+    public static synchronized void setConnectionPool(@NonNull final ConnectionPool connectionPool) {
+        connectionPool.install();
+        sConnectionPool = connectionPool;
+    }
+
+    public static synchronized ConnectionPool getConnectionPool() {
+        return sConnectionPool;
+    }
+
+    /**
+     * Sets the cache used by the cacheable resources, null disables caching.
+     */
+    public static synchronized void setResponseCache(@Nullable final ResponseCache responseCache) {
+        sResponseCache = responseCache;
+    }
+
+    public static synchronized ResponseCache getResponseCache() {
+        return sResponseCache;
+    }
+
+    public static SingleFlight getSingleFlight() {
+        return sSingleFlight;
+    }
+
+    /**
+     * Sets the retry policy of the idempotent resources, {@link RetryPolicy#NONE} disables
+     * retries.
+     */
+    public static synchronized void setRetryPolicy(@NonNull final RetryPolicy retryPolicy) {
+        sRetryPolicy = retryPolicy;
+    }
+
+    public static synchronized RetryPolicy getRetryPolicy() {
+        return sRetryPolicy;
+    }
+
+    public static synchronized void setCircuitBreaker(@NonNull final CircuitBreaker circuitBreaker) {
+        sCircuitBreaker = circuitBreaker;
+    }
+
+    public static synchronized CircuitBreaker getCircuitBreaker() {
+        return sCircuitBreaker;
+    }
+
+    public static synchronized void setLatencyTracker(@NonNull final LatencyTracker latencyTracker) {
+        sLatencyTracker = latencyTracker;
+    }
+
+    public static synchronized LatencyTracker getLatencyTracker() {
+        return sLatencyTracker;
+    }
+
+    public static ByteCounters getByteCounters() {
+        return sByteCounters;
+    }
+
+    /**
+     * Sets the listener of the load events, {@link EventListener#NONE} disables them.
+     * New connections are resolved ahead and use a timing TLS socket factory, while
+     * a listener is set.
+     */
+    public static synchronized void setEventListener(@NonNull final EventListener eventListener) {
+        sEventListener = eventListener;
+    }
+
+    public static synchronized EventListener getEventListener() {
+        return sEventListener;
+    }
+
     /**
      * @param resource The resource to be loaded using HttpUrlConnection.
-     * @param <A>      The generic return parameter, that will return resource.parseBlock.parse function.
+     * @param <A>      The generic return parameter, that will return the resource parse block.
      * @return Result after parsing.
      */
-    public static <A> A load(Resource<A> resource) {
+    public static <A> A load(final Resource<A> resource) {
+        return load(resource, null);
+    }
+
+    /**
+     * Loads the resource on the calling thread.
+     * <p>
+     * A coalesced load is shared with the other callers, so cancellation doesn't abort it,
+     * the canceled caller only stops waiting when its thread is interrupted.
+     *
+     * @param cancellationToken Disconnects the connection of the load on cancel, optional.
+     * @return Result after parsing or null if the load has failed or was canceled.
+     */
+    public static <A> A load(final Resource<A> resource,
+                             @Nullable final CancellationToken cancellationToken) {
+        return loadResult(resource, cancellationToken).getValue();
+    }
+
+    /**
+     * Loads the resource on the calling thread, retrying the transient failures of
+     * the idempotent resources. Interrupting the thread cancels the retries.
+     *
+     * @param cancellationToken Disconnects the connection of the load on cancel, optional.
+     * @return The parsed value or the reason of the failure.
+     */
+    @NonNull
+    public static <A> Result<A> loadResult(final Resource<A> resource,
+                                           @Nullable final CancellationToken cancellationToken) {
+        if (!resource.coalesced) {
+            return loadWithRetries(resource, cancellationToken);
+        }
+
+        Result<A> result = sSingleFlight.execute(resource, new Callable<Result<A>>() {
+            @Override
+            public Result<A> call() {
+                return loadWithRetries(resource, null);
+            }
+        });
+
+        return result != null ? result : Result.<A>canceled();
+    }
+
+    private static <A> Result<A> loadWithRetries(Resource<A> resource,
+                                                 CancellationToken cancellationToken) {
+        String host = resource.url.getHost();
+        RetryPolicy retryPolicy = resource.isIdempotent() ? getRetryPolicy() : RetryPolicy.NONE;
+        CircuitBreaker circuitBreaker = getCircuitBreaker();
+        EventListener eventListener = getEventListener();
+        long startTime = System.currentTimeMillis();
+        long callStart = System.nanoTime();
+        int attemptCount = 0;
+        Result<A> result = null;
+
+        eventListener.callStart(resource);
+        while (true) {
+            if (!circuitBreaker.allowRequest(host)) {
+                // A retry keeps the failure of the last attempt, that's the actual reason.
+                if (result == null) {
+                    Log.w(LOG_TAG, "Circuit is open, skipped load of URL: " + resource.url);
+                    result = Result.circuitOpen(circuitBreaker.getRemainingOpenMillis(host));
+                }
+                break;
+            }
+
+            attemptCount++;
+            result = performLoad(resource, cancellationToken, eventListener);
+
+            if (result.getStatus() == Result.Status.CANCELED) {
+                circuitBreaker.recordCanceled(host);
+                break;
+            } else if (isHostFailure(result)) {
+                circuitBreaker.recordFailure(host);
+            } else {
+                circuitBreaker.recordSuccess(host);
+            }
+
+            long delay = retryPolicy.getRetryDelayMillis(attemptCount,
+                    System.currentTimeMillis() - startTime, result);
+            if (delay < 0) {
+                break;
+            }
+
+            // The retry would be rejected, no point in waiting for it.
+            if (circuitBreaker.getState(host) == CircuitBreaker.State.OPEN) {
+                Log.d(LOG_TAG, "Circuit is open, not retrying " + result.getStatus()
+                        + " of URL: " + resource.url);
+                break;
+            }
+
+            Log.d(LOG_TAG, "Retrying in " + delay + "ms after " + result.getStatus()
+                    + ", attempt " + attemptCount + " of URL: " + resource.url);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result = Result.canceled();
+                break;
+            }
+        }
+
+        eventListener.callEnd(resource, result, attemptCount, System.nanoTime() - callStart);
+        return result;
+    }
+
+    /**
+     * Client errors, malformed bodies and the server answers like 501 Not Implemented mean
+     * the host is up, only the connection failures and transient server errors count towards
+     * opening the circuit.
+     */
+    private static boolean isHostFailure(Result<?> result) {
+        switch (result.getStatus()) {
+            case TIMEOUT:
+            case NETWORK_ERROR:
+                return true;
+            case HTTP_ERROR:
+                return result.isTransientServerError();
+            default:
+                return false;
+        }
+    }
+
+    private static <A> Result<A> performLoad(Resource<A> resource,
+                                             CancellationToken cancellationToken,
+                                             EventListener eventListener) {
+        if (cancellationToken != null && cancellationToken.isCanceled()) {
+            return Result.canceled();
+        }
+
         // Getting a connection to the resource referred to by this URL
         // and trying to connect.
         HttpURLConnection connection = null;
         URL url = resource.url;
+        ConnectionPool connectionPool = getConnectionPool();
+        ResponseCache responseCache = resource.cacheable ? getResponseCache() : null;
+        ResponseCache.Entry cacheEntry = responseCache != null ? responseCache.get(url) : null;
+        LatencyTracker latencyTracker = getLatencyTracker();
+        int connectTimeout = latencyTracker.getConnectTimeoutMillis(resource);
+        int readTimeout = latencyTracker.getReadTimeoutMillis(resource);
+        boolean isConnected = false;
+        byte[] body = resource.hasBody() ? encodeBody(resource) : null;
+        boolean isInstrumented = eventListener != EventListener.NONE;
 
         try {
+            // Whether a new connection is made is known only after connecting.
+            long dnsNanos = isInstrumented ? lookUpHost(url) : -1;
+
             connection = (HttpURLConnection) url.openConnection();
-            connection.setReadTimeout(READ_TIME_OUT);
-            connection.setConnectTimeout(CONNECTION_TIME_OUT);
+            boolean isSecure = connection instanceof HttpsURLConnection;
+            if (isSecure) {
+                // Marks the handshakes, that tells the new connections from the reused ones.
+                ((HttpsURLConnection) connection)
+                        .setSSLSocketFactory(TimingSSLSocketFactory.getInstance());
+            }
+            if (cancellationToken != null) {
+                final HttpURLConnection cancelableConnection = connection;
+                cancellationToken.setOnCancelListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        cancelableConnection.disconnect();
+                    }
+                });
+            }
+            connection.setReadTimeout(readTimeout);
+            connection.setConnectTimeout(connectTimeout);
             connection.setRequestMethod(resource.httpMethodName);
             connection.setDoInput(true);
+            connection.setRequestProperty(HEADER_ACCEPT_ENCODING, ACCEPT_ENCODING);
+            if (responseCache != null) {
+                responseCache.applyValidators(connection, cacheEntry);
+            }
+            if (body != null) {
+                prepareBody(connection, resource, body);
+            }
+            TimingSSLSocketFactory.takeHandshakeStart();
+            long connectStart = System.nanoTime();
             connection.connect();
+            long connectEnd = System.nanoTime();
+            isConnected = true;
+
+            // A reused connection is established already, its connect time tells nothing.
+            // Plain HTTP connections give no sign of reuse, so they aren't sampled.
+            long handshakeStart = TimingSSLSocketFactory.takeHandshakeStart();
+            if (isSecure) {
+                boolean isReused = handshakeStart < 0;
+                connectionPool.recordConnection(isReused);
 
-            String response = processResponse(connection);
+                if (!isReused) {
+                    latencyTracker.recordConnect(resource,
+                            TimeUnit.NANOSECONDS.toMillis(connectEnd - connectStart));
+                    if (isInstrumented) {
+                        eventListener.dnsEnd(resource, dnsNanos);
+                        eventListener.connectEnd(resource, handshakeStart - connectStart);
+                        eventListener.secureConnectEnd(resource, connectEnd - handshakeStart);
+                    }
+                }
+            }
+
+            if (body != null) {
+                writeBody(connection, body);
+                sByteCounters.addRequest(resource.body.length, body.length);
+                eventListener.requestBodyEnd(resource, resource.body.length, body.length);
+            }
 
-            return resource.parseBlock.parse(response);
+            long requestSent = System.nanoTime();
+            int responseCode = connection.getResponseCode();
+            long timeToFirstByte = System.nanoTime() - requestSent;
+            latencyTracker.recordResponse(resource,
+                    TimeUnit.NANOSECONDS.toMillis(timeToFirstByte));
+            eventListener.responseHeadersEnd(resource, responseCode, timeToFirstByte);
+
+            Result<A> result = processResponse(connection, resource, responseCache, cacheEntry,
+                    eventListener);
+
+            // The response is fully consumed and the connection isn't disconnected,
+            // so it goes back to the pool.
+            return result;
         } catch (IOException exception) {
-            Log.e(LOG_TAG, "Failed to download raw data", exception);
-        } finally {
+            // The connection state is unknown, don't let it be reused.
             if (connection != null) {
                 connection.disconnect();
             }
+
+            if (cancellationToken != null && cancellationToken.isCanceled()) {
+                Log.d(LOG_TAG, "Canceled load of URL: " + url);
+                return Result.canceled();
+            }
+
+            if (exception instanceof ParseFailure) {
+                Log.e(LOG_TAG, "Failed to parse response of URL: " + url, exception.getCause());
+                return Result.parseError((IOException) exception.getCause());
+            }
+
+            if (exception instanceof SocketTimeoutException) {
+                if (isConnected) {
+                    latencyTracker.recordResponse(resource, readTimeout);
+                } else {
+                    latencyTracker.recordConnect(resource, connectTimeout);
+                }
+            }
+
+            Log.e(LOG_TAG, "Failed to download raw data", exception);
+            return Result.failure(exception);
+        } finally {
+            if (cancellationToken != null) {
+                cancellationToken.setOnCancelListener(null);
+            }
         }
+    }
 
-        return null;
+    /**
+     * Resolves the host ahead of the connection to time the lookup, a new connection then
+     * gets the addresses from the platform cache.
+     *
+     * @return Duration of the lookup.
+     */
+    private static long lookUpHost(URL url) throws UnknownHostException {
+        long dnsStart = System.nanoTime();
+        InetAddress.getAllByName(url.getHost());
+        return System.nanoTime() - dnsStart;
     }
 
-    private static String processResponse(HttpURLConnection connection) {
+    /**
+     * @return The gzip compressed body, if the resource asks for it and the body is large
+     * enough, otherwise the body itself.
+     */
+    private static byte[] encodeBody(Resource<?> resource) {
+        if (!resource.gzipBody || resource.body.length < MIN_GZIP_BODY_LENGTH) {
+            return resource.body;
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(resource.body.length / 2);
         try {
-            // Did we receive a successful 2XX status code.
-            int responseCode = connection.getResponseCode();
-            if (responseCode < HttpURLConnection.HTTP_OK || responseCode > 299) {
-                Log.w(LOG_TAG, "Received status code other then 2XX, status code: " + responseCode);
-                return null;
+            GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream);
+            gzipStream.write(resource.body);
+            gzipStream.close();
+        } catch (IOException e) {
+            // Not thrown by the in-memory stream.
+            throw new IllegalStateException(e);
+        }
+
+        byte[] compressed = outputStream.toByteArray();
+        return compressed.length < resource.body.length ? compressed : resource.body;
+    }
+
+    private static void prepareBody(HttpURLConnection connection, Resource<?> resource,
+                                    byte[] body) {
+        connection.setDoOutput(true);
+        // Known length, so the body is streamed without buffering it again.
+        connection.setFixedLengthStreamingMode(body.length);
+        if (resource.contentType != null) {
+            connection.setRequestProperty(HEADER_CONTENT_TYPE, resource.contentType);
+        }
+        if (body != resource.body) {
+            connection.setRequestProperty(HEADER_CONTENT_ENCODING, ENCODING_GZIP);
+        }
+    }
+
+    private static void writeBody(HttpURLConnection connection, byte[] body) throws IOException {
+        OutputStream outputStream = connection.getOutputStream();
+        try {
+            outputStream.write(body);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static <A> Result<A> processResponse(HttpURLConnection connection,
+                                                 Resource<A> resource,
+                                                 ResponseCache responseCache,
+                                                 ResponseCache.Entry cacheEntry,
+                                                 EventListener eventListener)
+            throws IOException {
+        int responseCode = connection.getResponseCode();
+
+        // The cached response is still valid.
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cacheEntry != null) {
+            Log.d(LOG_TAG, "Not modified, using cached response for URL: " + connection.getURL());
+            responseCache.trackRevalidation(true);
+            discardInput(connection.getInputStream());
+
+            long parseStart = System.nanoTime();
+            A value = resource.notModifiedBlock != null
+                    ? resource.notModifiedBlock.notModified()
+                    : parseInput(resource, responseCache.openBody(cacheEntry), -1);
+            eventListener.parseEnd(resource, System.nanoTime() - parseStart);
+
+            return Result.success(value, responseCode);
+        }
+
+        // Did we receive a successful 2XX status code.
+        if (responseCode < HttpURLConnection.HTTP_OK || responseCode > 299) {
+            Log.w(LOG_TAG, "Received status code other then 2XX, status code: " + responseCode);
+            long retryAfterMillis = parseRetryAfter(connection);
+            discardInput(connection.getErrorStream());
+            return Result.httpError(responseCode, retryAfterMillis);
+        }
+        Log.d(LOG_TAG, "Response status code: " + responseCode
+                + " for URL: " + connection.getURL());
+
+        // Size of the compressed body isn't a hint for the decompressed one.
+        int contentLength = connection.getContentLength();
+        String contentEncoding = connection.getContentEncoding();
+        boolean isEncoded = contentEncoding != null && contentLength != 0
+                && !"identity".equalsIgnoreCase(contentEncoding);
+
+        CountingInputStream wireStream = new CountingInputStream(connection.getInputStream());
+        CountingInputStream bodyStream = isEncoded
+                ? new CountingInputStream(decode(wireStream, contentEncoding))
+                : wireStream;
+        if (isEncoded) {
+            contentLength = -1;
+        }
+
+        InputStream inputStream = bodyStream;
+        if (responseCache != null) {
+            if (cacheEntry != null) {
+                responseCache.trackRevalidation(false);
             }
-            Log.d(LOG_TAG, "Response status code: " + responseCode
-                    + " for URL: " + connection.getURL());
 
-            return readInput(connection.getInputStream());
-        } catch (IOException exception) {
-            Log.e(LOG_TAG, "Failed to process on http response", exception);
+            InputStream cachedStream = responseCache.put(resource.url, connection, inputStream);
+            if (cachedStream != null) {
+                inputStream = cachedStream;
+            }
         }
 
-        return null;
+        // Streaming parse blocks read the body while parsing, the waiting isn't parse time.
+        long readNanosBeforeParse = bodyStream.getReadNanos();
+        long parseStart = System.nanoTime();
+        A value = parseInput(resource, inputStream, contentLength);
+        long parseNanos = System.nanoTime() - parseStart
+                - (bodyStream.getReadNanos() - readNanosBeforeParse);
+
+        sByteCounters.addResponse(bodyStream.getCount(), wireStream.getCount());
+        eventListener.responseBodyEnd(resource, bodyStream.getReadNanos(), bodyStream.getCount(),
+                wireStream.getCount());
+        eventListener.parseEnd(resource, parseNanos);
+
+        return Result.success(value, responseCode);
     }
 
-    private static String readInput(InputStream inputStream) throws IOException {
+    /**
+     * Wraps the stream to decompress it while it's read.
+     */
+    private static InputStream decode(InputStream inputStream, String contentEncoding)
+            throws IOException {
+        if (ENCODING_GZIP.equalsIgnoreCase(contentEncoding)) {
+            return new GZIPInputStream(inputStream, BUFFER_SIZE);
+        } else if (ENCODING_DEFLATE.equalsIgnoreCase(contentEncoding)) {
+            return inflate(inputStream);
+        }
+
+        inputStream.close();
+        throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+    }
+
+    /**
+     * Deflate should be zlib wrapped, but some servers send the raw deflate data.
+     * The zlib header is checked to tell them apart.
+     */
+    private static InputStream inflate(InputStream inputStream) throws IOException {
+        BufferedInputStream bufferedStream = new BufferedInputStream(inputStream, BUFFER_SIZE);
+        bufferedStream.mark(2);
+        int first = bufferedStream.read();
+        int second = bufferedStream.read();
+        bufferedStream.reset();
+
+        boolean isZlib = first != -1 && second != -1
+                && (first & 0x0F) == 8 && ((first << 8) | second) % 31 == 0;
+
+        final Inflater inflater = new Inflater(!isZlib);
+        return new InflaterInputStream(bufferedStream, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                // The stream doesn't release the native memory of a given inflater.
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * @return Delay of the Retry-After header given in seconds or as a date, -1 if none.
+     */
+    private static long parseRetryAfter(HttpURLConnection connection) {
+        String value = connection.getHeaderField(HEADER_RETRY_AFTER);
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            long date = connection.getHeaderFieldDate(HEADER_RETRY_AFTER, -1);
+            return date < 0 ? -1 : Math.max(0, date - System.currentTimeMillis());
+        }
+    }
+
+    private static <A> A parseInput(Resource<A> resource, InputStream inputStream,
+                                    int contentLength) throws IOException {
+        if (resource.isStreaming()) {
+            return streamInput(inputStream, resource.streamParseBlock);
+        }
+
+        return resource.parseBlock.parse(readInput(inputStream, contentLength));
+    }
+
+    private static <A> A streamInput(InputStream inputStream, Resource.StreamParse<A> parse)
+            throws IOException {
         if (inputStream == null) {
             return null;
         }
 
-        StringBuilder stringBuilder = new StringBuilder();
-        BufferedReader reader = new BufferedReader((new InputStreamReader(inputStream)));
+        Reader reader = new InputStreamReader(inputStream, UTF_8);
+        try {
+            A result;
+            try {
+                result = parse.parse(reader);
+            } catch (MalformedJsonException | EOFException e) {
+                throw new ParseFailure(e);
+            }
+
+            // The parser may stop before the end of the body.
+            discardInput(inputStream);
+
+            return result;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String readInput(InputStream inputStream, int contentLength)
+            throws IOException {
+        if (inputStream == null) {
+            return null;
+        }
+
+        // Content length is in bytes, so it's only an upper bound for the chars count.
+        StringBuilder stringBuilder = new StringBuilder(contentLength > 0
+                ? contentLength : BUFFER_SIZE);
+        Reader reader = new InputStreamReader(inputStream, UTF_8);
+        char[] buffer = sCharBuffer.get();
 
-        // Reading each line of the data.
-        String line;
         try {
-            while ((line = reader.readLine()) != null) {
-                stringBuilder.append(line).append("\n");
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                stringBuilder.append(buffer, 0, count);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         } finally {
             reader.close();
-            inputStream.close();
         }
 
         return stringBuilder.toString();
     }
+
+    /**
+     * Reads the stream to the end, so the connection could be reused.
+     */
+    private static void discardInput(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            return;
+        }
+
+        byte[] buffer = sByteBuffer.get();
+        try {
+            //noinspection StatementWithEmptyBody
+            while (inputStream.read(buffer) != -1) {
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
 }
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.ivanmagda.network.core;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads resources asynchronously on a bounded pool of its own threads.
+ * <p>
+ * Queued calls are executed by priority, so UI requests don't wait behind sync or batch ones,
+ * and in the enqueue order within the same priority. Idle threads are stopped after a while.
+ */
+public final class WebserviceClient {
+
+    public static final int DEFAULT_MAX_THREADS = 4;
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * The order in which the queued calls are executed.
+     */
+    public enum Priority {
+        /* Requests the user is waiting for. */
+        HIGH,
+        NORMAL,
+        /* Background work, e.g. sync and batch translation. */
+        LOW
+    }
+
+    private static WebserviceClient sDefault;
+
+    private final ThreadPoolExecutor mExecutor;
+
+    public WebserviceClient() {
+        this(DEFAULT_MAX_THREADS);
+    }
+
+    /**
+     * @param maxThreads Maximum number of the concurrent calls.
+     */
+    public WebserviceClient(int maxThreads) {
+        if (maxThreads <= 0) {
+            throw new IllegalArgumentException("maxThreads <= 0: " + maxThreads);
+        }
+
+        // The queue is unbounded, so the pool never grows above the core size.
+        mExecutor = new ThreadPoolExecutor(maxThreads, maxThreads,
+                THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ClientThreadFactory());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return The process-wide client, used by the loaders.
+     */
+    public static synchronized WebserviceClient getDefault() {
+        if (sDefault == null) {
+            sDefault = new WebserviceClient();
+        }
+
+        return sDefault;
+    }
+
+    /**
+     * Replaces the process-wide client, e.g. to change the pool size.
+     * Calls of the previous client are not affected.
+     */
+    public static synchronized void setDefault(@NonNull final WebserviceClient client) {
+        sDefault = client;
+    }
+
+    public int getMaxThreads() {
+        return mExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * Enqueues the load of the resource.
+     *
+     * @param callback Receives the result on the main thread, optional.
+     * @return The call, that is also a future of the result.
+     */
+    @NonNull
+    public <A> Call<A> enqueue(@NonNull final Resource<A> resource,
+                               @NonNull final Priority priority,
+                               @Nullable final Call.Callback<A> callback) {
+        Call<A> call = Call.create(resource, priority, callback);
+        mExecutor.execute(call);
+        return call;
+    }
+
+    @NonNull
+    public <A> Call<A> enqueue(@NonNull final Resource<A> resource,
+                               @NonNull final Priority priority) {
+        return enqueue(resource, priority, null);
+    }
+
+    /**
+     * Enqueues the load and waits for it. Interrupting the waiting thread cancels the call.
+     *
+     * @return The parsed value or the reason of the failure.
+     */
+    @NonNull
+    public <A> Result<A> execute(@NonNull final Resource<A> resource,
+                                 @NonNull final Priority priority) {
+        Call<A> call = enqueue(resource, priority);
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            call.cancel();
+            Thread.currentThread().interrupt();
+            return Result.canceled();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (CancellationException e) {
+            return Result.canceled();
+        }
+    }
+
+    private static final class ClientThreadFactory implements ThreadFactory {
+        private final AtomicInteger mThreadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "Webservice #" + mThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
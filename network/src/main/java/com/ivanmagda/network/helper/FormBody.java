@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.network.helper;
+
+import android.support.annotation.NonNull;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Encodes the parameters as an application/x-www-form-urlencoded request body.
+ */
+public final class FormBody {
+
+    public static final String CONTENT_TYPE = "application/x-www-form-urlencoded; charset=UTF-8";
+
+    private static final String UTF8 = "UTF-8";
+
+    private FormBody() {
+    }
+
+    /**
+     * @param parameterList Ordered, possibly repeated, parameters.
+     * @return Body bytes, see {@link ParameterList#encode()}.
+     */
+    public static byte[] encode(@NonNull final ParameterList parameterList) {
+        try {
+            // Encoded form is plain ASCII.
+            return parameterList.encode().getBytes(UTF8);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalArgumentException("Failed to encode", e);
+        }
+    }
+}
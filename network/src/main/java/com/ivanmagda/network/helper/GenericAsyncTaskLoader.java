@@ -24,12 +24,21 @@ package com.ivanmagda.network.helper;
 
 import android.content.Context;
 import android.support.annotation.NonNull;
-import android.support.v4.content.AsyncTaskLoader;
+import android.support.annotation.Nullable;
+import android.support.v4.content.Loader;
 
+import com.ivanmagda.network.core.Call;
 import com.ivanmagda.network.core.Resource;
-import com.ivanmagda.network.core.Webservice;
+import com.ivanmagda.network.core.Result;
+import com.ivanmagda.network.core.WebserviceClient;
 
-public final class GenericAsyncTaskLoader<T> extends AsyncTaskLoader<T> {
+/**
+ * Loads the resource on the {@link WebserviceClient}, instead of the shared AsyncTask executor.
+ * Reloading or resetting the loader cancels the call in progress.
+ * <p>
+ * Delivers the parsed value, null on failure, {@link #getResult()} tells why it has failed.
+ */
+public final class GenericAsyncTaskLoader<T> extends Loader<T> {
 
     /**
      * Helper interface, that controls whether to start loading.
@@ -40,15 +49,35 @@ public final class GenericAsyncTaskLoader<T> extends AsyncTaskLoader<T> {
 
     private final Resource<T> mResource;
     private final OnStartLoadingCondition mLoadingCondition;
+    private final WebserviceClient.Priority mPriority;
+
+    private Call<T> mCall;
+    private Result<T> mResult;
 
     public GenericAsyncTaskLoader(@NonNull final Context context,
                                   @NonNull final Resource<T> resource,
                                   @NonNull final OnStartLoadingCondition loadingCondition) {
+        this(context, resource, WebserviceClient.Priority.HIGH, loadingCondition);
+    }
+
+    public GenericAsyncTaskLoader(@NonNull final Context context,
+                                  @NonNull final Resource<T> resource,
+                                  @NonNull final WebserviceClient.Priority priority,
+                                  @NonNull final OnStartLoadingCondition loadingCondition) {
         super(context);
         this.mResource = resource;
+        this.mPriority = priority;
         this.mLoadingCondition = loadingCondition;
     }
 
+    /**
+     * @return Result of the last delivered load, null if nothing was delivered yet.
+     */
+    @Nullable
+    public Result<T> getResult() {
+        return mResult;
+    }
+
     @Override
     protected void onStartLoading() {
         if (mLoadingCondition.isMeetConditions(mResource)) {
@@ -57,7 +86,45 @@ public final class GenericAsyncTaskLoader<T> extends AsyncTaskLoader<T> {
     }
 
     @Override
-    public T loadInBackground() {
-        return Webservice.load(mResource);
+    protected void onForceLoad() {
+        super.onForceLoad();
+        cancelCall();
+
+        mCall = WebserviceClient.getDefault().enqueue(mResource, mPriority,
+                new Call.Callback<T>() {
+                    @Override
+                    public void onResult(@NonNull Call<T> call, @NonNull Result<T> result) {
+                        // Results of the replaced calls are dropped.
+                        if (call != mCall) return;
+
+                        mCall = null;
+                        if (!isReset()) {
+                            mResult = result;
+                            deliverResult(result.getValue());
+                        }
+                    }
+                });
+    }
+
+    @Override
+    protected boolean onCancelLoad() {
+        if (mCall == null) return false;
+
+        cancelCall();
+        return true;
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        cancelCall();
+        mResult = null;
+    }
+
+    private void cancelCall() {
+        if (mCall != null) {
+            mCall.cancel();
+            mCall = null;
+        }
     }
 }
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2017 Ivan Magda
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.ivanmagda.network.helper;
+
+import android.support.annotation.NonNull;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Ordered list of the method parameters, unlike {@link MethodParameters} it could hold
+ * the same parameter name more than once, e.g. text=a&text=b.
+ */
+public final class ParameterList {
+
+    private static final String UTF8 = "UTF-8";
+
+    private final ArrayList<String> mNames;
+    private final ArrayList<String> mValues;
+
+    public ParameterList() {
+        this(8);
+    }
+
+    public ParameterList(int initialCapacity) {
+        this.mNames = new ArrayList<>(initialCapacity);
+        this.mValues = new ArrayList<>(initialCapacity);
+    }
+
+    public ParameterList add(@NonNull final String name, @NonNull final String value) {
+        mNames.add(name);
+        mValues.add(value);
+        return this;
+    }
+
+    public ParameterList addAll(@NonNull final MethodParameters methodParameters) {
+        for (Map.Entry<String, String> parameter : methodParameters.entrySet()) {
+            add(parameter.getKey(), parameter.getValue());
+        }
+        return this;
+    }
+
+    public int size() {
+        return mNames.size();
+    }
+
+    public boolean isEmpty() {
+        return mNames.isEmpty();
+    }
+
+    public String getName(int index) {
+        return mNames.get(index);
+    }
+
+    public String getValue(int index) {
+        return mValues.get(index);
+    }
+
+    /**
+     * Encodes the parameters as application/x-www-form-urlencoded, that is used by both
+     * the query strings and the form bodies. Each name and value is encoded exactly once,
+     * as UTF-8, e.g. "text=a%26b&text=%D0%BA%D0%BE%D1%82".
+     *
+     * @return Encoded parameters, plain ASCII.
+     */
+    public String encode() {
+        StringBuilder builder = new StringBuilder(estimateLength());
+
+        try {
+            for (int i = 0; i < size(); i++) {
+                if (i > 0) builder.append('&');
+                builder.append(URLEncoder.encode(getName(i), UTF8))
+                        .append('=')
+                        .append(URLEncoder.encode(getValue(i), UTF8));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalArgumentException("Failed to encode", e);
+        }
+
+        return builder.toString();
+    }
+
+    private int estimateLength() {
+        int length = 0;
+        for (int i = 0; i < size(); i++) {
+            length += getName(i).length() + getValue(i).length() + 2;
+        }
+        return length;
+    }
+}
@@ -55,6 +55,43 @@ public final class UrlBuilder {
         return url;
     }
 
+    /**
+     * Builds the URL with the ordered, possibly repeated, method parameters.
+     * The query is encoded by {@link ParameterList#encode()}.
+     *
+     * @see #buildUrl(String, String, String, String, MethodParameters)
+     */
+    public static URL buildUrl(@NonNull final String scheme,
+                               @NonNull final String host,
+                               @NonNull final String baseApiPath,
+                               @Nullable final String apiRequestPath,
+                               @NonNull final ParameterList parameterList) {
+        Uri.Builder builder = new Uri.Builder();
+        builder.scheme(scheme)
+                .authority(host)
+                .appendPath(baseApiPath);
+
+        if (!TextUtils.isEmpty(apiRequestPath)) {
+            builder.appendPath(apiRequestPath);
+        }
+
+        if (!parameterList.isEmpty()) {
+            builder.encodedQuery(parameterList.encode());
+        }
+
+        // The query is encoded already, decoding it back would break the reserved characters
+        // of the values, e.g. "&".
+        URL url = null;
+        try {
+            url = new URL(builder.build().toString());
+        } catch (MalformedURLException e) {
+            e.printStackTrace();
+        }
+        Log.d(LOG_TAG, "URL: " + url);
+
+        return url;
+    }
+
     private static URL urlFromBuilder(Uri.Builder builder) {
         URL url = null;
         try {
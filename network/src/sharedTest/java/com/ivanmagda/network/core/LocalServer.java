@@ -0,0 +1,261 @@
+package com.ivanmagda.network.core;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.KeyStore;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * HTTP/1.1 server on the loopback, that answers with the enqueued responses and keeps
+ * the connections alive. Stands in for the remote hosts to inject the faults.
+ * <p>
+ * Shared with the unit tests of the app, so it's public.
+ */
+public final class LocalServer implements Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static final class Response {
+        final int code;
+        final String body;
+
+        /* Closes the connection instead of answering. */
+        final boolean disconnect;
+
+        /* Delays the status line. */
+        final long delayMillis;
+
+        private Response(int code, String body, boolean disconnect, long delayMillis) {
+            this.code = code;
+            this.body = body;
+            this.disconnect = disconnect;
+            this.delayMillis = delayMillis;
+        }
+
+        public static Response ok(String body) {
+            return new Response(200, body, false, 0);
+        }
+
+        public static Response status(int code) {
+            return new Response(code, "", false, 0);
+        }
+
+        public static Response disconnect() {
+            return new Response(0, "", true, 0);
+        }
+
+        public static Response delayed(long delayMillis, String body) {
+            return new Response(200, body, false, delayMillis);
+        }
+    }
+
+    private final ServerSocket mServerSocket;
+    private final boolean mIsSecure;
+    private final BlockingQueue<Response> mResponses = new LinkedBlockingQueue<>();
+    private final AtomicInteger mConnectionCount = new AtomicInteger();
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final BlockingQueue<String> mRequestBodies = new LinkedBlockingQueue<>();
+
+    private LocalServer(ServerSocket serverSocket, boolean isSecure) {
+        this.mServerSocket = serverSocket;
+        this.mIsSecure = isSecure;
+
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "LocalServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public static LocalServer start() throws IOException {
+        return new LocalServer(new ServerSocket(0, 50, InetAddress.getLoopbackAddress()), false);
+    }
+
+    /**
+     * Starts a server with the self-signed localhost certificate of the test resources.
+     */
+    public static LocalServer startSecure(SSLContext sslContext) throws IOException {
+        return new LocalServer(sslContext.getServerSocketFactory()
+                .createServerSocket(0, 50, InetAddress.getLoopbackAddress()), true);
+    }
+
+    /**
+     * @return Context, that both serves and trusts the localhost certificate.
+     */
+    public static SSLContext newSslContext() throws Exception {
+        char[] password = "password".toCharArray();
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        InputStream inputStream = LocalServer.class.getClassLoader()
+                .getResourceAsStream("localhost.p12");
+        try {
+            keyStore.load(inputStream, password);
+        } finally {
+            inputStream.close();
+        }
+
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(
+                KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, password);
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(
+                TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(),
+                trustManagerFactory.getTrustManagers(), null);
+        return sslContext;
+    }
+
+    public void enqueue(Response response) {
+        mResponses.add(response);
+    }
+
+    public URL url(String path) throws MalformedURLException {
+        return new URL(mIsSecure ? "https" : "http", "localhost", mServerSocket.getLocalPort(),
+                path);
+    }
+
+    public int getConnectionCount() {
+        return mConnectionCount.get();
+    }
+
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * @return Body of the earliest request not taken yet, decoded as UTF-8, null if none
+     * was received in time.
+     */
+    public String takeRequestBody() throws InterruptedException {
+        return mRequestBodies.poll(10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mServerSocket.close();
+    }
+
+    private void acceptConnections() {
+        while (!mServerSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+
+            mConnectionCount.incrementAndGet();
+            Thread connectionThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            }, "LocalServer connection");
+            connectionThread.setDaemon(true);
+            connectionThread.start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+            OutputStream outputStream = socket.getOutputStream();
+
+            String requestBody;
+            while ((requestBody = readRequest(inputStream)) != null) {
+                mRequestCount.incrementAndGet();
+                mRequestBodies.add(requestBody);
+                Response response = mResponses.poll(10, TimeUnit.SECONDS);
+                if (response == null || response.disconnect) {
+                    break;
+                }
+                if (response.delayMillis > 0) {
+                    Thread.sleep(response.delayMillis);
+                }
+
+                byte[] body = response.body.getBytes(UTF_8);
+                String head = "HTTP/1.1 " + response.code + " Status\r\n"
+                        + "Content-Type: application/json; charset=utf-8\r\n"
+                        + "Content-Length: " + body.length + "\r\n"
+                        + "\r\n";
+                outputStream.write(head.getBytes(UTF_8));
+                outputStream.write(body);
+                outputStream.flush();
+            }
+        } catch (IOException | InterruptedException ignored) {
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Reads the head and the body of the request.
+     *
+     * @return The body, null when the client has closed the connection.
+     */
+    private static String readRequest(InputStream inputStream) throws IOException {
+        int contentLength = 0;
+        String line;
+        boolean isFirstLine = true;
+        while (!(line = readLine(inputStream)).isEmpty()) {
+            isFirstLine = false;
+
+            int separator = line.indexOf(':');
+            if (separator > 0 && line.substring(0, separator).trim()
+                    .equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(line.substring(separator + 1).trim());
+            }
+        }
+        if (isFirstLine) {
+            return null;
+        }
+
+        byte[] body = new byte[contentLength];
+        for (int i = 0; i < contentLength; i++) {
+            int b = inputStream.read();
+            if (b < 0) {
+                return null;
+            }
+            body[i] = (byte) b;
+        }
+        return new String(body, UTF_8);
+    }
+
+    /**
+     * @return The line without the line break, empty at the end of the stream.
+     */
+    private static String readLine(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = inputStream.read()) >= 0 && b != '\n') {
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString("UTF-8");
+    }
+}
@@ -0,0 +1,100 @@
+package com.ivanmagda.network.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Circuit states of the hosts and the trial requests.
+ */
+public class CircuitBreakerTest {
+
+    private static final String HOST = "translate.yandex.net";
+    private static final String OTHER_HOST = "dictionary.yandex.net";
+
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long OPEN_MILLIS = 100;
+
+    private final CircuitBreaker mCircuitBreaker = new CircuitBreaker(FAILURE_THRESHOLD,
+            OPEN_MILLIS);
+
+    @Test
+    public void consecutiveFailures_openCircuit() {
+        for (int i = 1; i < FAILURE_THRESHOLD; i++) {
+            mCircuitBreaker.recordFailure(HOST);
+            assertEquals(CircuitBreaker.State.CLOSED, mCircuitBreaker.getState(HOST));
+            assertTrue(mCircuitBreaker.allowRequest(HOST));
+        }
+
+        mCircuitBreaker.recordFailure(HOST);
+
+        assertEquals(CircuitBreaker.State.OPEN, mCircuitBreaker.getState(HOST));
+        assertFalse(mCircuitBreaker.allowRequest(HOST));
+        long remainingMillis = mCircuitBreaker.getRemainingOpenMillis(HOST);
+        assertTrue(remainingMillis > 0 && remainingMillis <= OPEN_MILLIS);
+
+        // Circuits are per host.
+        assertTrue(mCircuitBreaker.allowRequest(OTHER_HOST));
+        assertEquals(0, mCircuitBreaker.getRemainingOpenMillis(OTHER_HOST));
+    }
+
+    @Test
+    public void success_resetsFailures() {
+        for (int i = 1; i < FAILURE_THRESHOLD; i++) {
+            mCircuitBreaker.recordFailure(HOST);
+        }
+        mCircuitBreaker.recordSuccess(HOST);
+        mCircuitBreaker.recordFailure(HOST);
+
+        assertEquals(CircuitBreaker.State.CLOSED, mCircuitBreaker.getState(HOST));
+    }
+
+    @Test
+    public void halfOpen_allowsSingleTrial() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 20);
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, mCircuitBreaker.getState(HOST));
+        assertTrue(mCircuitBreaker.allowRequest(HOST));
+        assertFalse(mCircuitBreaker.allowRequest(HOST));
+
+        mCircuitBreaker.recordSuccess(HOST);
+
+        assertEquals(CircuitBreaker.State.CLOSED, mCircuitBreaker.getState(HOST));
+        assertTrue(mCircuitBreaker.allowRequest(HOST));
+    }
+
+    @Test
+    public void failedTrial_opensCircuitAgain() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(mCircuitBreaker.allowRequest(HOST));
+
+        // A single failure is enough in the half-open state.
+        mCircuitBreaker.recordFailure(HOST);
+
+        assertEquals(CircuitBreaker.State.OPEN, mCircuitBreaker.getState(HOST));
+        assertFalse(mCircuitBreaker.allowRequest(HOST));
+    }
+
+    @Test
+    public void canceledTrial_allowsAnotherOne() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(mCircuitBreaker.allowRequest(HOST));
+
+        mCircuitBreaker.recordCanceled(HOST);
+
+        assertTrue(mCircuitBreaker.allowRequest(HOST));
+        assertFalse(mCircuitBreaker.allowRequest(HOST));
+    }
+
+    private void open() {
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            mCircuitBreaker.recordFailure(HOST);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, mCircuitBreaker.getState(HOST));
+    }
+}
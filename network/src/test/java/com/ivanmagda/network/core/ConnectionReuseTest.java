@@ -0,0 +1,104 @@
+package com.ivanmagda.network.core;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loads over a local TLS server, a reused connection is told by the missing handshake.
+ */
+public class ConnectionReuseTest {
+
+    private static LocalServer sServer;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        SSLContext sslContext = LocalServer.newSslContext();
+        // Wrapped by the TimingSSLSocketFactory on the first HTTPS load.
+        HttpsURLConnection.setDefaultSSLSocketFactory(sslContext.getSocketFactory());
+        sServer = LocalServer.startSecure(sslContext);
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        sServer.close();
+        Webservice.setEventListener(EventListener.NONE);
+    }
+
+    @Test
+    public void secondLoadReusesConnection() throws Exception {
+        ConnectionPool.Stats before = Webservice.getConnectionPool().getStats();
+        sServer.enqueue(LocalServer.Response.ok("first"));
+        sServer.enqueue(LocalServer.Response.ok("second"));
+
+        RecordingListener first = new RecordingListener();
+        Webservice.setEventListener(first);
+        assertEquals("first", Webservice.loadResult(newResource(), null).getValue());
+
+        RecordingListener second = new RecordingListener();
+        Webservice.setEventListener(second);
+        assertEquals("second", Webservice.loadResult(newResource(), null).getValue());
+
+        assertTrue("New connection: " + first, first.connectNanos >= 0);
+        assertTrue("New connection: " + first, first.secureConnectNanos >= 0);
+        assertEquals("Reused connection: " + second, -1, second.connectNanos);
+        assertEquals("Reused connection: " + second, -1, second.secureConnectNanos);
+        assertEquals(1, sServer.getConnectionCount());
+
+        ConnectionPool.Stats after = Webservice.getConnectionPool().getStats();
+        assertEquals(1, after.missCount - before.missCount);
+        assertEquals(1, after.hitCount - before.hitCount);
+    }
+
+    private static Resource<String> newResource() throws Exception {
+        return new Resource<>(sServer.url("/"), new Resource.Parse<String>() {
+            @Override
+            public String parse(@Nullable String response) {
+                return response;
+            }
+        });
+    }
+
+    private static final class RecordingListener extends EventListener {
+        long connectNanos = -1;
+        long secureConnectNanos = -1;
+        long timeToFirstByteNanos = -1;
+
+        @Override
+        public void connectEnd(@NonNull Resource<?> resource, long durationNanos) {
+            connectNanos = durationNanos;
+        }
+
+        @Override
+        public void secureConnectEnd(@NonNull Resource<?> resource, long durationNanos) {
+            secureConnectNanos = durationNanos;
+        }
+
+        @Override
+        public void responseHeadersEnd(@NonNull Resource<?> resource, int statusCode,
+                                       long timeToFirstByteNanos) {
+            this.timeToFirstByteNanos = timeToFirstByteNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "connect " + toMicros(connectNanos) + "us, TLS " + toMicros(secureConnectNanos)
+                    + "us, first byte " + toMicros(timeToFirstByteNanos) + "us";
+        }
+
+        private static long toMicros(long nanos) {
+            return nanos < 0 ? nanos : TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.ivanmagda.network.core;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Retry decisions and the backoff delays of the failed loads.
+ */
+public class RetryPolicyTest {
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long INITIAL_DELAY_MILLIS = 100;
+    private static final long MAX_DELAY_MILLIS = 1000;
+    private static final long MAX_ELAPSED_MILLIS = 10000;
+
+    private static final int SAMPLES = 200;
+
+    private final RetryPolicy mRetryPolicy = new RetryPolicy(MAX_ATTEMPTS, INITIAL_DELAY_MILLIS,
+            MAX_DELAY_MILLIS, MAX_ELAPSED_MILLIS);
+
+    @Test
+    public void transientFailures_areRetried() {
+        assertRetried(Result.failure(new SocketTimeoutException()));
+        assertRetried(Result.failure(new ConnectException()));
+        assertRetried(Result.httpError(HttpURLConnection.HTTP_UNAVAILABLE, -1));
+        assertRetried(Result.httpError(429, -1));
+    }
+
+    @Test
+    public void permanentFailures_areNotRetried() {
+        assertNotRetried(Result.httpError(HttpURLConnection.HTTP_BAD_REQUEST, -1));
+        assertNotRetried(Result.httpError(HttpURLConnection.HTTP_NOT_IMPLEMENTED, -1));
+        assertNotRetried(Result.parseError(new EOFException()));
+        assertNotRetried(Result.circuitOpen(1000));
+        assertNotRetried(Result.canceled());
+        assertNotRetried(Result.success("", HttpURLConnection.HTTP_OK));
+    }
+
+    @Test
+    public void delays_growExponentiallyUpToMaximum() {
+        Result<?> result = Result.httpError(HttpURLConnection.HTTP_UNAVAILABLE, -1);
+
+        for (int attemptCount = 1; attemptCount < MAX_ATTEMPTS; attemptCount++) {
+            long bound = Math.min(MAX_DELAY_MILLIS, INITIAL_DELAY_MILLIS << (attemptCount - 1));
+            long maxDelay = 0;
+            for (int i = 0; i < SAMPLES; i++) {
+                long delay = mRetryPolicy.getRetryDelayMillis(attemptCount, 0, result);
+                assertTrue("Delay " + delay + " of attempt " + attemptCount,
+                        delay >= 0 && delay <= bound);
+                maxDelay = Math.max(maxDelay, delay);
+            }
+
+            // Full jitter spreads the delays over the whole range.
+            assertTrue(maxDelay > bound / 2);
+        }
+    }
+
+    @Test
+    public void attemptsExhausted_stopsRetrying() {
+        Result<?> result = Result.failure(new SocketTimeoutException());
+
+        assertTrue(mRetryPolicy.getRetryDelayMillis(MAX_ATTEMPTS - 1, 0, result) >= 0);
+        assertEquals(-1, mRetryPolicy.getRetryDelayMillis(MAX_ATTEMPTS, 0, result));
+        assertEquals(-1, RetryPolicy.NONE.getRetryDelayMillis(1, 0, result));
+    }
+
+    @Test
+    public void retryAfter_isHonoured() {
+        assertEquals(300, mRetryPolicy.getRetryDelayMillis(1, 0,
+                Result.httpError(HttpURLConnection.HTTP_UNAVAILABLE, 300)));
+        assertEquals(-1, mRetryPolicy.getRetryDelayMillis(1, 0,
+                Result.httpError(HttpURLConnection.HTTP_UNAVAILABLE, MAX_DELAY_MILLIS + 1)));
+    }
+
+    @Test
+    public void elapsedBudget_stopsRetrying() {
+        Result<?> result = Result.httpError(HttpURLConnection.HTTP_UNAVAILABLE, 300);
+
+        assertEquals(300, mRetryPolicy.getRetryDelayMillis(1, MAX_ELAPSED_MILLIS - 300, result));
+        assertEquals(-1, mRetryPolicy.getRetryDelayMillis(1, MAX_ELAPSED_MILLIS - 299, result));
+    }
+
+    private void assertRetried(Result<?> result) {
+        assertTrue(result.toString(), mRetryPolicy.getRetryDelayMillis(1, 0, result) >= 0);
+    }
+
+    private void assertNotRetried(Result<?> result) {
+        assertEquals(result.toString(), -1, mRetryPolicy.getRetryDelayMillis(1, 0, result));
+    }
+}
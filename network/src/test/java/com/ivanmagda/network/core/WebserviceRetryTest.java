@@ -0,0 +1,200 @@
+package com.ivanmagda.network.core;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Retries and the circuit breaker of the loads from a local server, that injects the faults.
+ */
+public class WebserviceRetryTest {
+
+    private static final String HOST = "localhost";
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static LocalServer sServer;
+
+    private CircuitBreaker mCircuitBreaker;
+    private int mRequestCountBefore;
+
+    @BeforeClass
+    public static void setUpServer() throws IOException {
+        sServer = LocalServer.start();
+    }
+
+    @AfterClass
+    public static void tearDownServer() throws IOException {
+        sServer.close();
+    }
+
+    @Before
+    public void setUp() {
+        // Short delays, so the retries don't slow the tests down.
+        Webservice.setRetryPolicy(new RetryPolicy(MAX_ATTEMPTS, 10, 50, 10000));
+        mCircuitBreaker = new CircuitBreaker(MAX_ATTEMPTS, 60000);
+        Webservice.setCircuitBreaker(mCircuitBreaker);
+        mRequestCountBefore = sServer.getRequestCount();
+    }
+
+    @After
+    public void tearDown() {
+        Webservice.setRetryPolicy(new RetryPolicy());
+        Webservice.setCircuitBreaker(new CircuitBreaker());
+    }
+
+    @Test
+    public void serverError_isRetried() throws IOException {
+        sServer.enqueue(LocalServer.Response.status(HttpURLConnection.HTTP_UNAVAILABLE));
+        sServer.enqueue(LocalServer.Response.ok("done"));
+
+        Result<String> result = Webservice.loadResult(newResource(), null);
+
+        assertEquals(Result.Status.SUCCESS, result.getStatus());
+        assertEquals("done", result.getValue());
+        assertEquals(2, getRequestCount());
+        assertEquals(CircuitBreaker.State.CLOSED, mCircuitBreaker.getState(HOST));
+    }
+
+    @Test
+    public void clientError_isNotRetried() throws IOException {
+        sServer.enqueue(LocalServer.Response.status(HttpURLConnection.HTTP_BAD_REQUEST));
+
+        Result<String> result = Webservice.loadResult(newResource(), null);
+
+        assertEquals(Result.Status.HTTP_ERROR, result.getStatus());
+        assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, result.getHttpStatusCode());
+        assertEquals(1, getRequestCount());
+    }
+
+    @Test
+    public void notImplemented_leavesCircuitClosed() throws IOException {
+        // The translate API answers an unsupported direction with 501.
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            sServer.enqueue(LocalServer.Response.status(HttpURLConnection.HTTP_NOT_IMPLEMENTED));
+
+            Result<String> result = Webservice.loadResult(newResource(), null);
+
+            assertEquals(HttpURLConnection.HTTP_NOT_IMPLEMENTED, result.getHttpStatusCode());
+        }
+
+        assertEquals(MAX_ATTEMPTS, getRequestCount());
+        assertEquals(CircuitBreaker.State.CLOSED, mCircuitBreaker.getState(HOST));
+    }
+
+    @Test
+    public void nonIdempotentResource_isNotRetried() throws IOException {
+        sServer.enqueue(LocalServer.Response.status(HttpURLConnection.HTTP_UNAVAILABLE));
+
+        Resource<String> resource = new Resource<>(sServer.url("/"), "POST",
+                new Resource.Parse<String>() {
+                    @Override
+                    public String parse(@Nullable String response) {
+                        return response;
+                    }
+                });
+        resource.body = new byte[]{'a'};
+        Result<String> result = Webservice.loadResult(resource, null);
+
+        assertEquals(HttpURLConnection.HTTP_UNAVAILABLE, result.getHttpStatusCode());
+        assertEquals(1, getRequestCount());
+    }
+
+    @Test
+    public void malformedBody_isParseError() throws IOException {
+        // A single counted failure would open the circuit.
+        mCircuitBreaker = new CircuitBreaker(1, 60000);
+        Webservice.setCircuitBreaker(mCircuitBreaker);
+        sServer.enqueue(LocalServer.Response.ok("{\"code\":200,\"text\":[\"Прив"));
+
+        Result<String> result = Webservice.loadResult(newStreamingResource(), null);
+
+        assertEquals(Result.Status.PARSE_ERROR, result.getStatus());
+        assertTrue(result.getException() instanceof EOFException);
+        assertEquals(1, getRequestCount());
+        // The host has responded, so it isn't failing.
+        assertEquals(CircuitBreaker.State.CLOSED, mCircuitBreaker.getState(HOST));
+    }
+
+    @Test
+    public void circuitOpenedByRetries_keepsActualFailure() throws IOException {
+        mCircuitBreaker = new CircuitBreaker(2, 60000);
+        Webservice.setCircuitBreaker(mCircuitBreaker);
+        sServer.enqueue(LocalServer.Response.status(HttpURLConnection.HTTP_UNAVAILABLE));
+        sServer.enqueue(LocalServer.Response.status(HttpURLConnection.HTTP_UNAVAILABLE));
+
+        Result<String> result = Webservice.loadResult(newResource(), null);
+
+        assertEquals(Result.Status.HTTP_ERROR, result.getStatus());
+        assertEquals(HttpURLConnection.HTTP_UNAVAILABLE, result.getHttpStatusCode());
+        assertEquals(2, getRequestCount());
+        assertEquals(CircuitBreaker.State.OPEN, mCircuitBreaker.getState(HOST));
+
+        // Next load fails fast.
+        result = Webservice.loadResult(newResource(), null);
+
+        assertEquals(Result.Status.CIRCUIT_OPEN, result.getStatus());
+        assertTrue(result.getRetryAfterMillis() > 0);
+        assertEquals(2, getRequestCount());
+    }
+
+    @Test
+    public void attemptsExhausted_returnsLastFailure() throws IOException {
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            sServer.enqueue(LocalServer.Response.status(HttpURLConnection.HTTP_BAD_GATEWAY));
+        }
+
+        Result<String> result = Webservice.loadResult(newResource(), null);
+
+        assertEquals(HttpURLConnection.HTTP_BAD_GATEWAY, result.getHttpStatusCode());
+        assertEquals(MAX_ATTEMPTS, getRequestCount());
+        assertEquals(CircuitBreaker.State.OPEN, mCircuitBreaker.getState(HOST));
+    }
+
+    private int getRequestCount() {
+        return sServer.getRequestCount() - mRequestCountBefore;
+    }
+
+    private static Resource<String> newResource() throws IOException {
+        return new Resource<>(sServer.url("/"), new Resource.Parse<String>() {
+            @Override
+            public String parse(@Nullable String response) {
+                return response;
+            }
+        });
+    }
+
+    /**
+     * Resource, that expects a complete JSON object, as the streaming JSON parser does.
+     */
+    private static Resource<String> newStreamingResource() throws IOException {
+        return new Resource<>(sServer.url("/"), new Resource.StreamParse<String>() {
+            @Override
+            public String parse(@NonNull Reader reader) throws IOException {
+                StringBuilder builder = new StringBuilder();
+                int c;
+                while ((c = reader.read()) != -1) {
+                    builder.append((char) c);
+                }
+
+                if (builder.length() == 0 || builder.charAt(builder.length() - 1) != '}') {
+                    throw new EOFException("End of input");
+                }
+                return builder.toString();
+            }
+        });
+    }
+}
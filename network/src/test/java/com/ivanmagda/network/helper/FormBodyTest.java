@@ -0,0 +1,60 @@
+package com.ivanmagda.network.helper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Form encoded request bodies, compared byte for byte.
+ */
+public class FormBodyTest {
+
+    @Test
+    public void contentType() {
+        assertEquals("application/x-www-form-urlencoded; charset=UTF-8", FormBody.CONTENT_TYPE);
+    }
+
+    @Test
+    public void encode_empty() {
+        assertArrayEquals(new byte[0], FormBody.encode(new ParameterList()));
+    }
+
+    @Test
+    public void encode_repeatedTexts() {
+        byte[] body = FormBody.encode(new ParameterList()
+                .add("text", "Hello, world!")
+                .add("text", "a&b=c+d"));
+
+        assertArrayEquals(ascii("text=Hello%2C+world%21&text=a%26b%3Dc%2Bd"), body);
+    }
+
+    @Test
+    public void encode_nonAsciiAsUtf8() {
+        byte[] body = FormBody.encode(new ParameterList()
+                .add("lang", "ru-en")
+                .add("text", "Привет\nмир"));
+
+        assertArrayEquals(ascii("lang=ru-en"
+                + "&text=%D0%9F%D1%80%D0%B8%D0%B2%D0%B5%D1%82%0A%D0%BC%D0%B8%D1%80"), body);
+    }
+
+    @Test
+    public void encode_matchesQueryString() {
+        ParameterList parameterList = new ParameterList()
+                .add("text", "50% off; ~all~ items")
+                .add("text", "ça va?");
+
+        assertArrayEquals(ascii(parameterList.encode()), FormBody.encode(parameterList));
+    }
+
+    private static byte[] ascii(String string) {
+        byte[] bytes = new byte[string.length()];
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c > 0x7F) throw new IllegalArgumentException("Not ASCII: " + string);
+            bytes[i] = (byte) c;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,79 @@
+package com.ivanmagda.network.helper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Query string encoding of the ordered parameters.
+ */
+public class ParameterListTest {
+
+    @Test
+    public void encode_empty() {
+        ParameterList parameterList = new ParameterList();
+
+        assertTrue(parameterList.isEmpty());
+        assertEquals("", parameterList.encode());
+    }
+
+    @Test
+    public void encode_keepsOrderAndRepeatedNames() {
+        ParameterList parameterList = new ParameterList(3)
+                .add("lang", "en-ru")
+                .add("text", "cat")
+                .add("text", "dog");
+
+        assertFalse(parameterList.isEmpty());
+        assertEquals(3, parameterList.size());
+        assertEquals("text", parameterList.getName(2));
+        assertEquals("dog", parameterList.getValue(2));
+        assertEquals("lang=en-ru&text=cat&text=dog", parameterList.encode());
+    }
+
+    @Test
+    public void encode_reservedCharacters() {
+        ParameterList parameterList = new ParameterList()
+                .add("text", "a&b=c")
+                .add("text", "1+1 / 2?#%")
+                .add("text", "[x];'y',\"z\"@~")
+                .add("a b", "")
+                .add("unreserved", "AZaz09-_.*");
+
+        assertEquals("text=a%26b%3Dc"
+                        + "&text=1%2B1+%2F+2%3F%23%25"
+                        + "&text=%5Bx%5D%3B%27y%27%2C%22z%22%40%7E"
+                        + "&a+b="
+                        + "&unreserved=AZaz09-_.*",
+                parameterList.encode());
+    }
+
+    @Test
+    public void encode_nonAsciiAsUtf8() {
+        ParameterList parameterList = new ParameterList()
+                .add("text", "кот")
+                .add("text", "Grüße")
+                .add("text", "日本")
+                .add("text", "😀");
+
+        assertEquals("text=%D0%BA%D0%BE%D1%82"
+                        + "&text=Gr%C3%BC%C3%9Fe"
+                        + "&text=%E6%97%A5%E6%9C%AC"
+                        + "&text=%F0%9F%98%80",
+                parameterList.encode());
+    }
+
+    @Test
+    public void addAll_methodParameters() {
+        MethodParameters methodParameters = new MethodParameters(1);
+        methodParameters.put("key", "a/b");
+
+        ParameterList parameterList = new ParameterList()
+                .addAll(methodParameters)
+                .add("text", "x");
+
+        assertEquals("key=a%2Fb&text=x", parameterList.encode());
+    }
+}